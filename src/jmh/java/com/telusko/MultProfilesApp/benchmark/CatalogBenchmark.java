@@ -0,0 +1,158 @@
+package com.telusko.MultProfilesApp.benchmark;
+
+import com.telusko.MultProfilesApp.MultiProfilesApplication;
+import com.telusko.MultProfilesApp.dao.CompanyRepo;
+import com.telusko.MultProfilesApp.dto.CategoryDto;
+import com.telusko.MultProfilesApp.dto.CompanyDto;
+import com.telusko.MultProfilesApp.dto.ProductDto;
+import com.telusko.MultProfilesApp.model.Category;
+import com.telusko.MultProfilesApp.model.Company;
+import com.telusko.MultProfilesApp.model.Product;
+import com.telusko.MultProfilesApp.service.impl.CategoryServiceImpl;
+import com.telusko.MultProfilesApp.service.impl.CompanyServiceImpl;
+import com.telusko.MultProfilesApp.service.impl.ProductServiceImpl;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput of the service hot paths against the in-memory H2 database of the test profile.
+ * Run with the gc profiler (the default jmh.args of the benchmark profile) to get the allocation per operation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CatalogBenchmark {
+
+    /** Number of companies, each with one category. */
+    @Param("100")
+    private int companies;
+
+    /** Number of products in the category that is read and written. */
+    @Param("10000")
+    private int products;
+
+    /** Spring cache type, "none" measures the database path and "caffeine" the cached one. */
+    @Param({"none", "caffeine"})
+    private String cache;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private ConfigurableApplicationContext context;
+    private CompanyServiceImpl companyService;
+    private CategoryServiceImpl categoryService;
+    private ProductServiceImpl productService;
+    private Long companyId;
+    private Long categoryId;
+    private long firstProductCode;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(MultiProfilesApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.profiles.active=test",
+                        "--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_ON_EXIT=FALSE",
+                        "--spring.jpa.show-sql=false",
+                        "--spring.cache.type=" + cache,
+                        "--logging.level.root=warn");
+        companyService = context.getBean(CompanyServiceImpl.class);
+        categoryService = context.getBean(CategoryServiceImpl.class);
+        productService = context.getBean(ProductServiceImpl.class);
+        CompanyRepo companyRepo = context.getBean(CompanyRepo.class);
+
+        for (int i = 0; i < companies; i++) {
+            companyService.addCompany(company("Company " + i));
+            Long id = companyRepo.findByName("Company " + i).getId();
+            categoryService.addCategory(category("Category " + i), id);
+        }
+        companyId = companyRepo.findByName("Company 0").getId();
+        categoryId = categoryService.getAllCategories(companyId).get(0).getId();
+
+        List<Product> seed = new ArrayList<>();
+        for (int i = 0; i < products; i++) {
+            seed.add(product("Seed " + i));
+        }
+        productService.addProducts(companyId, categoryId, seed);
+        firstProductCode = productService.getAllProducts(companyId, categoryId).get(0).getCode();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ProductDto getProductById() {
+        long code = firstProductCode + ThreadLocalRandom.current().nextInt(products);
+        return productService.getProductById(companyId, categoryId, code);
+    }
+
+    @Benchmark
+    public List<ProductDto> getAllProducts() {
+        return productService.getAllProducts(companyId, categoryId);
+    }
+
+    @Benchmark
+    public boolean addProduct() {
+        return productService.addProduct(companyId, categoryId, product("Added " + sequence.incrementAndGet()));
+    }
+
+    /**
+     * Adds a product and deletes it again, so the category keeps its size across iterations.
+     */
+    @Benchmark
+    public boolean addAndDeleteProduct() {
+        Product product = product("Churn " + sequence.incrementAndGet());
+        productService.addProduct(companyId, categoryId, product);
+        return productService.deleteProductById(companyId, categoryId, product.getCode(), null);
+    }
+
+    /**
+     * Adds a category to a company and deletes it again, which writes the company's join rows.
+     */
+    @Benchmark
+    public boolean addAndDeleteCategory() {
+        Category category = category("Churn " + sequence.incrementAndGet());
+        categoryService.addCategory(category, companyId);
+        return categoryService.deleteCategoryById(companyId, category.getId(), null);
+    }
+
+    @Benchmark
+    public List<CategoryDto> getAllCategories() {
+        return categoryService.getAllCategories(companyId);
+    }
+
+    @Benchmark
+    public List<CompanyDto> getAllCompanies() {
+        return companyService.getAllCompanies();
+    }
+
+    private static Company company(String name) {
+        Company company = new Company();
+        company.setName(name);
+        company.setCity("Mumbai");
+        company.setState("Maharashtra");
+        return company;
+    }
+
+    private static Category category(String name) {
+        Category category = new Category();
+        category.setName(name);
+        category.setType(name);
+        return category;
+    }
+
+    private static Product product(String name) {
+        return new Product(name, 100.0, LocalDate.parse("2024-01-01"), LocalDate.parse("2026-01-01"), null);
+    }
+}
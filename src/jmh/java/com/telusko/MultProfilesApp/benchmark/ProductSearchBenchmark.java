@@ -0,0 +1,56 @@
+package com.telusko.MultProfilesApp.benchmark;
+
+import com.telusko.MultProfilesApp.search.ProductNameIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of a product name search in the in-memory index, one company holding every product.
+ * The names are drawn from a small vocabulary so that common words match a large share of the products.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ProductSearchBenchmark {
+
+    private static final String[] BRANDS = {"Amul", "Nestle", "Britannia", "Tata", "Dabur", "Parle", "Haldiram",
+            "Mother Dairy", "Patanjali", "Cadbury"};
+    private static final String[] ITEMS = {"Milk", "Butter", "Cheese", "Bread", "Biscuit", "Chocolate", "Tea",
+            "Coffee", "Honey", "Rice", "Flour", "Salt", "Sugar", "Namkeen", "Juice", "Paneer", "Ghee", "Curd"};
+    private static final String[] VARIANTS = {"Classic", "Lite", "Organic", "Family Pack", "Premium", "Spicy",
+            "Sweet", "Fresh", "Whole Wheat", "Toned"};
+
+    /** Number of products of the company. */
+    @Param("1000000")
+    private int products;
+
+    /** The query: a broad word, a word prefix, two words, a word of every name, and a rare word. */
+    @Param({"milk", "choc", "amul butter", "product amul butter", "product 999999"})
+    private String query;
+
+    private ProductNameIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        index = new ProductNameIndex(Long.MAX_VALUE);
+        Random random = new Random(42);
+        for (int code = 0; code < products; code++) {
+            String name = BRANDS[random.nextInt(BRANDS.length)] + " " + VARIANTS[random.nextInt(VARIANTS.length)]
+                    + " " + ITEMS[random.nextInt(ITEMS.length)] + " Product " + code;
+            index.add(1L, code % 100, code, name);
+        }
+        System.out.printf("%n%d products indexed in about %d MB%n", index.getProducts(),
+                index.getEstimatedBytes() >> 20);
+    }
+
+    @Benchmark
+    public List<Long> search() {
+        return index.search(1L, query, 50);
+    }
+}
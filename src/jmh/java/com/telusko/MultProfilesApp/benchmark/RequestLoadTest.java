@@ -0,0 +1,153 @@
+package com.telusko.MultProfilesApp.benchmark;
+
+import com.telusko.MultProfilesApp.MultiProfilesApplication;
+import com.telusko.MultProfilesApp.dao.CompanyRepo;
+import com.telusko.MultProfilesApp.model.Category;
+import com.telusko.MultProfilesApp.model.Company;
+import com.telusko.MultProfilesApp.model.Product;
+import com.telusko.MultProfilesApp.service.impl.CategoryServiceImpl;
+import com.telusko.MultProfilesApp.service.impl.CompanyServiceImpl;
+import com.telusko.MultProfilesApp.service.impl.ProductServiceImpl;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop HTTP load test comparing request handling on platform threads (the default)
+ * with the "virtual" profile. Each client sends its next request as soon as the previous one is answered.
+ * Caching is disabled so that every request goes to the database.
+ *
+ * <p>Arguments: [clients] [seconds] [products], defaults 1000 30 10000.
+ */
+public class RequestLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        // Devtools would restart this main method in a new class loader with the application arguments
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        int products = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+
+        System.out.printf("%-10s %8s %10s %10s %10s %10s %8s%n",
+                "mode", "clients", "requests", "req/s", "p50 ms", "p99 ms", "errors");
+        for (String profiles : List.of("test", "test,virtual")) {
+            run(profiles, clients, seconds, products);
+        }
+    }
+
+    private static void run(String profiles, int clients, int seconds, int products) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(MultiProfilesApplication.class)
+                .run("--spring.profiles.active=" + profiles,
+                        "--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:load;DB_CLOSE_ON_EXIT=FALSE",
+                        "--spring.jpa.show-sql=false",
+                        "--spring.cache.type=none",
+                        "--logging.level.root=warn")) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            String path = seed(context, products);
+            long firstCode = Long.parseLong(path.substring(path.lastIndexOf('/') + 1));
+            String base = "http://localhost:" + port + path.substring(0, path.lastIndexOf('/') + 1);
+
+            HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+            List<long[]> latencies = new ArrayList<>();
+            AtomicLong errors = new AtomicLong();
+            long deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+            CountDownLatch done = new CountDownLatch(clients);
+
+            for (int i = 0; i < clients; i++) {
+                long[] samples = new long[1 << 16];
+                latencies.add(samples);
+                Thread thread = new Thread(() -> {
+                    int n = 1;
+                    try {
+                        while (System.nanoTime() < deadline) {
+                            long code = firstCode + ThreadLocalRandom.current().nextInt(products);
+                            HttpRequest request = HttpRequest.newBuilder(URI.create(base + code))
+                                    .timeout(Duration.ofSeconds(60)).build();
+                            long start = System.nanoTime();
+                            try {
+                                HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                                if (response.statusCode() != 200) {
+                                    errors.incrementAndGet();
+                                }
+                            } catch (Exception e) {
+                                errors.incrementAndGet();
+                            }
+                            if (n < samples.length) {
+                                samples[n++] = System.nanoTime() - start;
+                            }
+                        }
+                    } finally {
+                        // First slot holds the number of samples
+                        samples[0] = n - 1;
+                        done.countDown();
+                    }
+                });
+                thread.setDaemon(true);
+                thread.start();
+            }
+            done.await();
+
+            long[] all = latencies.stream()
+                    .flatMapToLong(samples -> Arrays.stream(samples, 1, (int) samples[0] + 1))
+                    .sorted()
+                    .toArray();
+            System.out.printf("%-10s %8d %10d %10.0f %10.1f %10.1f %8d%n",
+                    profiles.contains("virtual") ? "virtual" : "platform",
+                    clients, all.length, all.length / (double) seconds,
+                    percentile(all, 0.50), percentile(all, 0.99), errors.get());
+        }
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)] / 1_000_000.0;
+    }
+
+    /**
+     * Creates one company with one category of products.
+     *
+     * @return the path of the first product
+     */
+    private static String seed(ConfigurableApplicationContext context, int products) {
+        CompanyServiceImpl companyService = context.getBean(CompanyServiceImpl.class);
+        CategoryServiceImpl categoryService = context.getBean(CategoryServiceImpl.class);
+        ProductServiceImpl productService = context.getBean(ProductServiceImpl.class);
+
+        Company company = new Company();
+        company.setName("Load Company");
+        company.setCity("Mumbai");
+        company.setState("Maharashtra");
+        companyService.addCompany(company);
+        Long companyId = context.getBean(CompanyRepo.class).findByName("Load Company").getId();
+
+        Category category = new Category();
+        category.setName("Load Category");
+        category.setType("Load Category");
+        categoryService.addCategory(category, companyId);
+        Long categoryId = categoryService.getAllCategories(companyId).get(0).getId();
+
+        List<Product> seed = new ArrayList<>();
+        for (int i = 0; i < products; i++) {
+            seed.add(new Product("Load " + i, 100.0, LocalDate.parse("2024-01-01"), LocalDate.parse("2026-01-01"), null));
+        }
+        productService.addProducts(companyId, categoryId, seed);
+        Long firstCode = productService.getAllProducts(companyId, categoryId).get(0).getCode();
+        return "/company/" + companyId + "/category/" + categoryId + "/product/" + firstCode;
+    }
+}
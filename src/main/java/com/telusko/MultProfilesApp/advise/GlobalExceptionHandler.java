@@ -1,15 +1,22 @@
 package com.telusko.MultProfilesApp.advise;
 
+import com.telusko.MultProfilesApp.exceptions.VersionMismatch;
 import com.telusko.MultProfilesApp.exceptions.category.CategoryExists;
 import com.telusko.MultProfilesApp.exceptions.category.CategoryNotFound;
 import com.telusko.MultProfilesApp.exceptions.company.CompanyExists;
+import com.telusko.MultProfilesApp.exceptions.company.CompanyMoving;
 import com.telusko.MultProfilesApp.exceptions.company.CompanyNotFound;
+import com.telusko.MultProfilesApp.exceptions.product.InvalidPriceChange;
 import com.telusko.MultProfilesApp.exceptions.product.ProductNotFound;
 import com.telusko.MultProfilesApp.model.ErrorDetails;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.filter.ServerHttpObservationFilter;
 
 import java.time.LocalDateTime;
 
@@ -21,10 +28,12 @@ public class GlobalExceptionHandler {
      * Returns a ResponseEntity with the ErrorDetails and an HTTP status of INTERNAL_SERVER_ERROR.
      *
      * @param exception the exception to handle
+     * @param request the request being handled
      * @return a ResponseEntity containing the error details and status code
      */
     @ExceptionHandler(Exception.class)
-    private ResponseEntity<ErrorDetails> handleException(Exception exception) {
+    private ResponseEntity<ErrorDetails> handleException(Exception exception, HttpServletRequest request) {
+        reportError(request, exception);
         // Create an ErrorDetails object with the exception message and current timestamp
         ErrorDetails errorDetails = new ErrorDetails(
                 exception.getMessage(),
@@ -39,10 +48,12 @@ public class GlobalExceptionHandler {
      * Handles CompanyNotFound exceptions by returning a ResponseEntity with error details.
      *
      * @param companyNotFound The CompanyNotFound exception to handle
+     * @param request The request being handled
      * @return A ResponseEntity containing error details with HTTP status NOT_FOUND
      */
     @ExceptionHandler(CompanyNotFound.class)
-    private ResponseEntity<ErrorDetails> companyNotFoundException(CompanyNotFound companyNotFound) {
+    private ResponseEntity<ErrorDetails> companyNotFoundException(CompanyNotFound companyNotFound, HttpServletRequest request) {
+        reportError(request, companyNotFound);
         // Create error details object with exception message and current timestamp
         ErrorDetails errorDetails = new ErrorDetails(
                 companyNotFound.getMessage(),
@@ -57,10 +68,12 @@ public class GlobalExceptionHandler {
      * Exception handler for CompanyExists.
      *
      * @param companyExists the exception thrown
+     * @param request the request being handled
      * @return ResponseEntity with ErrorDetails and INTERNAL_SERVER_ERROR status
      */
     @ExceptionHandler(CompanyExists.class)
-    private ResponseEntity<ErrorDetails> companyAlreadyExists(CompanyExists companyExists) {
+    private ResponseEntity<ErrorDetails> companyAlreadyExists(CompanyExists companyExists, HttpServletRequest request) {
+        reportError(request, companyExists);
         // Create ErrorDetails object with exception message and current date time
         ErrorDetails errorDetails = new ErrorDetails(
                 companyExists.getMessage(),
@@ -70,8 +83,28 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(errorDetails, HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
+    /**
+     * Handles writes to a company that is being moved to another shard, the client may retry shortly.
+     *
+     * @param companyMoving the exception thrown
+     * @param request the request being handled
+     * @return a ResponseEntity with the error details and HTTP status SERVICE_UNAVAILABLE
+     */
+    @ExceptionHandler(CompanyMoving.class)
+    private ResponseEntity<ErrorDetails> companyMoving(CompanyMoving companyMoving, HttpServletRequest request) {
+        reportError(request, companyMoving);
+        ErrorDetails errorDetails = new ErrorDetails(
+                companyMoving.getMessage(),
+                LocalDateTime.now()
+        );
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(errorDetails);
+    }
+
     @ExceptionHandler(CategoryNotFound.class)
-    private ResponseEntity<ErrorDetails> categoryNotFound(CategoryNotFound categoryNotFound) {
+    private ResponseEntity<ErrorDetails> categoryNotFound(CategoryNotFound categoryNotFound, HttpServletRequest request) {
+        reportError(request, categoryNotFound);
         ErrorDetails errorDetails = new ErrorDetails(
                 categoryNotFound.getMessage(),
                 LocalDateTime.now()
@@ -80,7 +113,8 @@ public class GlobalExceptionHandler {
     }
 
     @ExceptionHandler(CategoryExists.class)
-    private ResponseEntity<ErrorDetails> categoryExists(CategoryExists categoryExists) {
+    private ResponseEntity<ErrorDetails> categoryExists(CategoryExists categoryExists, HttpServletRequest request) {
+        reportError(request, categoryExists);
         ErrorDetails errorDetails = new ErrorDetails(
                 categoryExists.getMessage(),
                 LocalDateTime.now()
@@ -89,11 +123,69 @@ public class GlobalExceptionHandler {
     }
 
     @ExceptionHandler(ProductNotFound.class)
-    private ResponseEntity<ErrorDetails> productNotFound(ProductNotFound productNotFound) {
+    private ResponseEntity<ErrorDetails> productNotFound(ProductNotFound productNotFound, HttpServletRequest request) {
+        reportError(request, productNotFound);
         ErrorDetails errorDetails = new ErrorDetails(
                 productNotFound.getMessage(),
                 LocalDateTime.now()
         );
         return new ResponseEntity<>(errorDetails, HttpStatus.NOT_FOUND);
     }
+
+    @ExceptionHandler(InvalidPriceChange.class)
+    private ResponseEntity<ErrorDetails> invalidPriceChange(InvalidPriceChange invalidPriceChange, HttpServletRequest request) {
+        reportError(request, invalidPriceChange);
+        ErrorDetails errorDetails = new ErrorDetails(
+                invalidPriceChange.getMessage(),
+                LocalDateTime.now()
+        );
+        return new ResponseEntity<>(errorDetails, HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * Handles a conditional write whose If-Match no longer matches the stored version.
+     *
+     * @param versionMismatch the exception thrown
+     * @param request the request being handled
+     * @return a ResponseEntity with the error details and HTTP status PRECONDITION_FAILED
+     */
+    @ExceptionHandler(VersionMismatch.class)
+    private ResponseEntity<ErrorDetails> versionMismatch(VersionMismatch versionMismatch, HttpServletRequest request) {
+        reportError(request, versionMismatch);
+        ErrorDetails errorDetails = new ErrorDetails(
+                versionMismatch.getMessage(),
+                LocalDateTime.now()
+        );
+        return new ResponseEntity<>(errorDetails, HttpStatus.PRECONDITION_FAILED);
+    }
+
+    /**
+     * Handles a write that lost the race against a concurrent write of the same row, detected by its version column.
+     *
+     * @param conflict the exception thrown
+     * @param request the request being handled
+     * @return a ResponseEntity with the error details and HTTP status CONFLICT
+     */
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    private ResponseEntity<ErrorDetails> concurrentUpdate(ObjectOptimisticLockingFailureException conflict,
+                                                          HttpServletRequest request) {
+        reportError(request, conflict);
+        ErrorDetails errorDetails = new ErrorDetails(
+                "Changed by another request, reload it and try again",
+                LocalDateTime.now()
+        );
+        return new ResponseEntity<>(errorDetails, HttpStatus.CONFLICT);
+    }
+
+    /**
+     * Attaches the handled exception to the request observation, so the http.server.requests
+     * and http.server.sql.statements metrics are tagged with its type instead of "none".
+     *
+     * @param request the request that failed
+     * @param exception the handled exception
+     */
+    private void reportError(HttpServletRequest request, Exception exception) {
+        ServerHttpObservationFilter.findObservationContext(request)
+                .ifPresent(context -> context.setError(exception));
+    }
 }
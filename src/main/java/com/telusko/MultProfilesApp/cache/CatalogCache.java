@@ -0,0 +1,150 @@
+package com.telusko.MultProfilesApp.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.telusko.MultProfilesApp.dto.CompanyDto;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Targeted invalidation of the read-through caches in front of the company, category and product lookups.
+ * Company entries are keyed by company ID, category entries by "companyId:categoryId"
+ * and product entries by "companyId:categoryId:productId".
+ */
+@Component
+public class CatalogCache {
+
+    public static final String COMPANIES = "companies";
+    public static final String CATEGORIES = "categories";
+    public static final String PRODUCTS = "products";
+
+    @Autowired
+    private CacheManager cacheManager;
+    @Autowired
+    private TaskScheduler taskScheduler;
+
+    /** Delay of a second eviction, for reads served by a replica that lags behind the primary; 0 disables it. */
+    @Value("${app.cache.reevict-after-ms:0}")
+    private long reevictAfterMillis;
+
+    /**
+     * Evicts a company together with every category and product cached under it.
+     * @param companyId the ID of the company
+     */
+    public void evictCompany(Long companyId) {
+        afterCommit(() -> {
+            evict(COMPANIES, companyId);
+            evictPrefix(CATEGORIES, companyId + ":");
+            evictPrefix(PRODUCTS, companyId + ":");
+        });
+    }
+
+    /**
+     * Evicts only the company entry, for changes to its own columns or to its list of categories.
+     * @param companyId the ID of the company
+     */
+    public void evictCompanyDetails(Long companyId) {
+        afterCommit(() -> evict(COMPANIES, companyId));
+    }
+
+    /**
+     * Evicts companies by name, for writes that do not read their IDs, leaving their categories and products.
+     * @param names the names of the companies
+     */
+    public void evictCompaniesNamed(Set<String> names) {
+        afterCommit(() -> evictValuesIf(COMPANIES,
+                value -> value instanceof CompanyDto company && names.contains(company.getName())));
+    }
+
+    /**
+     * Evicts a category, the company that lists it and the products that embed it.
+     * @param companyId the ID of the company
+     * @param categoryId the ID of the category
+     */
+    public void evictCategory(Long companyId, Long categoryId) {
+        afterCommit(() -> {
+            evict(COMPANIES, companyId);
+            evict(CATEGORIES, companyId + ":" + categoryId);
+            evictPrefix(PRODUCTS, companyId + ":" + categoryId + ":");
+        });
+    }
+
+    /**
+     * Evicts a single product.
+     * @param companyId the ID of the company
+     * @param categoryId the ID of the category
+     * @param productId the code of the product
+     */
+    public void evictProduct(Long companyId, Long categoryId, Long productId) {
+        afterCommit(() -> evict(PRODUCTS, companyId + ":" + categoryId + ":" + productId));
+    }
+
+    /**
+     * Evicts every product of a category, under each company that lists it, for changes made by a bulk update.
+     * @param categoryId the ID of the category
+     */
+    public void evictCategoryProducts(Long categoryId) {
+        String segment = ":" + categoryId + ":";
+        afterCommit(() -> evictIf(PRODUCTS, key -> key.startsWith(segment, key.indexOf(':'))));
+    }
+
+    private void evict(String cacheName, Object key) {
+        org.springframework.cache.Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.evict(key);
+        }
+    }
+
+    private void evictPrefix(String cacheName, String prefix) {
+        evictIf(cacheName, key -> key.startsWith(prefix));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void evictValuesIf(String cacheName, Predicate<Object> matches) {
+        org.springframework.cache.Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null && cache.getNativeCache() instanceof Cache<?, ?> nativeCache) {
+            ((Cache<Object, Object>) nativeCache).asMap().values().removeIf(matches);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void evictIf(String cacheName, Predicate<String> matches) {
+        org.springframework.cache.Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null && cache.getNativeCache() instanceof Cache<?, ?> nativeCache) {
+            ((Cache<Object, Object>) nativeCache).asMap().keySet()
+                    .removeIf(key -> matches.test(key.toString()));
+        }
+    }
+
+    /**
+     * Runs the eviction once the surrounding transaction commits, so a concurrent read
+     * cannot put the old state back into the cache; runs it right away outside a transaction.
+     */
+    private void afterCommit(Runnable eviction) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictNowAndLater(eviction);
+                }
+            });
+        } else {
+            evictNowAndLater(eviction);
+        }
+    }
+
+    private void evictNowAndLater(Runnable eviction) {
+        eviction.run();
+        if (reevictAfterMillis > 0) {
+            taskScheduler.schedule(eviction, Instant.now().plusMillis(reevictAfterMillis));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.telusko.MultProfilesApp.config;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+/**
+ * Non-blocking R2DBC access to the same database as the JPA DataSource, used by the reactive read API;
+ * to the read replica in the replica profile, as that API only reads.
+ * Only the DatabaseClient is exposed as a bean: a ConnectionFactory bean would make Spring Boot
+ * back off from configuring the JDBC DataSource the rest of the application runs on.
+ * Not in the sharded profile, where one connection pool would only see the companies of one shard.
+ */
+@Configuration
+@Profile("!sharded")
+public class ReactiveDatabaseConfig {
+
+    private ConnectionPool connectionPool;
+
+    @Bean
+    public DatabaseClient reactiveDatabaseClient(@Value("${app.r2dbc.replica.url:${app.r2dbc.url}}") String url,
+                                                 @Value("${app.r2dbc.replica.username:${app.r2dbc.username}}") String username,
+                                                 @Value("${app.r2dbc.replica.password:${app.r2dbc.password}}") String password,
+                                                 @Value("${app.r2dbc.pool.initial-size}") int initialSize,
+                                                 @Value("${app.r2dbc.pool.max-size}") int maxSize) {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(url).mutate()
+                .option(ConnectionFactoryOptions.USER, username)
+                .option(ConnectionFactoryOptions.PASSWORD, password)
+                .build();
+        // Connections are opened on first use, so the application starts without the database
+        connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+                .initialSize(initialSize)
+                .maxSize(maxSize)
+                .build());
+        return DatabaseClient.create(connectionPool);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (connectionPool != null) {
+            connectionPool.dispose();
+        }
+    }
+}
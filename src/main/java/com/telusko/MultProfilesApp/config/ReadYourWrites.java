@@ -0,0 +1,95 @@
+package com.telusko.MultProfilesApp.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Pins a caller's reads to the primary for a while after it wrote, so it never reads its own change
+ * back from a replica that has not caught up yet.
+ * Within a thread the pin is held in memory; across requests it travels in a cookie that expires
+ * with the pin, so the client's next requests are pinned as well.
+ */
+public class ReadYourWrites extends OncePerRequestFilter {
+
+    public static final String COOKIE = "read-primary-until";
+
+    private final ThreadLocal<Long> pinnedUntil = new ThreadLocal<>();
+    private final ThreadLocal<HttpServletResponse> response = new ThreadLocal<>();
+    private final long pinMillis;
+
+    /**
+     * @param pinMillis how long reads stay on the primary after a write, at least the replication lag
+     */
+    public ReadYourWrites(long pinMillis) {
+        this.pinMillis = pinMillis;
+    }
+
+    /**
+     * Pins the current caller to the primary for the configured time from now.
+     */
+    public void pin() {
+        long until = System.currentTimeMillis() + pinMillis;
+        pinnedUntil.set(until);
+
+        HttpServletResponse current = response.get();
+        if (current != null && !current.isCommitted()) {
+            Cookie cookie = new Cookie(COOKIE, Long.toString(until));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) Math.max(1, (pinMillis + 999) / 1000));
+            current.addCookie(cookie);
+            // One cookie per request is enough
+            response.remove();
+        }
+    }
+
+    /**
+     * @return true if the current caller wrote recently and must read from the primary
+     */
+    public boolean isPinned() {
+        Long until = pinnedUntil.get();
+        return until != null && until > System.currentTimeMillis();
+    }
+
+    /**
+     * Forgets the pin of the current thread, for threads that go on to serve another caller.
+     */
+    public void unpin() {
+        pinnedUntil.remove();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        pinnedUntil.set(pinnedUntil(request));
+        this.response.set(response);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            unpin();
+            this.response.remove();
+        }
+    }
+
+    private Long pinnedUntil(HttpServletRequest request) {
+        if (request.getCookies() != null) {
+            for (Cookie cookie : request.getCookies()) {
+                if (COOKIE.equals(cookie.getName())) {
+                    try {
+                        // Never longer than the configured time, whatever the client sends
+                        return Math.min(Long.parseLong(cookie.getValue()), System.currentTimeMillis() + pinMillis);
+                    } catch (NumberFormatException e) {
+                        return null;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,113 @@
+package com.telusko.MultProfilesApp.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+
+/**
+ * Read/write splitting for the opt-in replica profile. Read-only transactions go to the replica configured
+ * under app.datasource.replica, everything else to the primary of spring.datasource, each with its own pool.
+ */
+@Configuration
+@Profile("replica")
+public class ReplicaRoutingConfig {
+
+    /**
+     * The primary pool, sized by spring.datasource.hikari.
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    /**
+     * The replica pool, connection and sizing both under app.datasource.replica.
+     */
+    @Bean
+    @ConfigurationProperties("app.datasource.replica")
+    public HikariDataSource replicaDataSource() {
+        return new HikariDataSource();
+    }
+
+    @Bean
+    public ReadYourWrites readYourWrites(@Value("${app.datasource.routing.pin-after-write-ms}") long pinMillis) {
+        return new ReadYourWrites(pinMillis);
+    }
+
+    /**
+     * Runs before the controllers touch the database.
+     */
+    @Bean
+    public FilterRegistrationBean<ReadYourWrites> readYourWritesRegistration(ReadYourWrites readYourWrites) {
+        FilterRegistrationBean<ReadYourWrites> registration = new FilterRegistrationBean<>(readYourWrites);
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 100);
+        return registration;
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                                             @Qualifier("replicaDataSource") DataSource replica,
+                                                             ReadYourWrites readYourWrites) {
+        return new ReplicaRoutingDataSource(primary, replica, readYourWrites);
+    }
+
+    /**
+     * The DataSource used by JPA and JDBC. The lazy proxy defers taking a connection to the first statement,
+     * when the transaction's read-only flag is known.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    @Bean
+    public ReplicaHealthCheck replicaHealthIndicator(ReplicaRoutingDataSource replicaRoutingDataSource,
+                                                     @Value("${app.datasource.routing.health-check-timeout-seconds}")
+                                                     int timeoutSeconds) {
+        return new ReplicaHealthCheck(replicaRoutingDataSource, timeoutSeconds);
+    }
+
+    /**
+     * Probes the replica on a fixed delay so reads move back to it once it recovers, and reports
+     * where reads go under the replica health component. The application stays UP while reads fall back.
+     */
+    public static class ReplicaHealthCheck implements HealthIndicator {
+
+        private final ReplicaRoutingDataSource routing;
+        private final int timeoutSeconds;
+
+        public ReplicaHealthCheck(ReplicaRoutingDataSource routing, int timeoutSeconds) {
+            this.routing = routing;
+            this.timeoutSeconds = timeoutSeconds;
+        }
+
+        @Scheduled(fixedDelayString = "${app.datasource.routing.health-check-ms}")
+        public void check() {
+            routing.checkReplica(timeoutSeconds);
+        }
+
+        @Override
+        public Health health() {
+            return Health.up()
+                    .withDetail("replica", routing.isReplicaHealthy() ? "UP" : "DOWN")
+                    .withDetail("reads", routing.isReplicaHealthy() ? "replica" : "primary")
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.telusko.MultProfilesApp.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * DataSource that sends read-only transactions to a replica and everything else to the primary.
+ * Reads fall back to the primary while the replica is unhealthy and while the caller is pinned
+ * to the primary after its own write, see {@link ReadYourWrites}.
+ * Must sit behind a LazyConnectionDataSourceProxy, the read-only flag of a transaction is only known
+ * once it has begun, after the transaction manager asked for the connection.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private final DataSource primary;
+    private final DataSource replica;
+    private final ReadYourWrites readYourWrites;
+    private volatile boolean replicaHealthy = true;
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica, ReadYourWrites readYourWrites) {
+        this.primary = primary;
+        this.replica = replica;
+        this.readYourWrites = readYourWrites;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (useReplica()) {
+            try {
+                return replica.getConnection();
+            } catch (SQLException e) {
+                // Serve the read from the primary until the next health check brings the replica back
+                markReplicaDown(e);
+            }
+        }
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        if (useReplica()) {
+            try {
+                return replica.getConnection(username, password);
+            } catch (SQLException e) {
+                markReplicaDown(e);
+            }
+        }
+        return primary.getConnection(username, password);
+    }
+
+    /**
+     * Probes the replica with a fresh connection and updates its health accordingly.
+     * @param timeoutSeconds how long the probe may take
+     * @return true if the replica answered
+     */
+    public boolean checkReplica(int timeoutSeconds) {
+        boolean healthy;
+        try (Connection connection = replica.getConnection()) {
+            healthy = connection.isValid(timeoutSeconds);
+        } catch (SQLException e) {
+            healthy = false;
+        }
+        if (healthy != replicaHealthy) {
+            log.info("Replica is {}, reads go to the {}", healthy ? "up" : "down", healthy ? "replica" : "primary");
+        }
+        replicaHealthy = healthy;
+        return healthy;
+    }
+
+    public boolean isReplicaHealthy() {
+        return replicaHealthy;
+    }
+
+    public void setReplicaHealthy(boolean replicaHealthy) {
+        this.replicaHealthy = replicaHealthy;
+    }
+
+    private boolean useReplica() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                // Reads after this write must see it, the replica may still lag behind
+                readYourWrites.pin();
+            }
+            return false;
+        }
+        return replicaHealthy && !readYourWrites.isPinned();
+    }
+
+    private void markReplicaDown(SQLException e) {
+        if (replicaHealthy) {
+            log.warn("Replica unavailable, reads go to the primary: {}", e.getMessage());
+        }
+        replicaHealthy = false;
+    }
+}
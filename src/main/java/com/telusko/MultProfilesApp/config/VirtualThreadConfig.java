@@ -0,0 +1,26 @@
+package com.telusko.MultProfilesApp.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Settings of the "virtual" profile, which serves requests on virtual threads
+ * (spring.threads.virtual.enabled in application-virtual.yml). Database concurrency is capped by the
+ * connection pool the profile sizes: virtual threads wait in Hikari's queue for a connection, up to its
+ * connection timeout, which parks them without pinning their carrier thread.
+ */
+@Configuration
+@Profile("virtual")
+public class VirtualThreadConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+    public VirtualThreadConfig() {
+        if (Runtime.version().feature() < 21) {
+            log.warn("The virtual profile needs Java 21 to run requests on virtual threads, "
+                    + "running on Java {} with platform threads", Runtime.version().feature());
+        }
+    }
+}
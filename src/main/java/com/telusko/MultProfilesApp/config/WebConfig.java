@@ -0,0 +1,57 @@
+package com.telusko.MultProfilesApp.config;
+
+import com.telusko.MultProfilesApp.metrics.SqlStatementCounter;
+import com.telusko.MultProfilesApp.shard.ShardContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    /**
+     * Async work of a request, such as the export stream or the queries run on every shard, runs on the shard
+     * of the request that started it and adds its SQL statements to the request's count.
+     * The application task executor takes a single decorator, so both are carried here.
+     */
+    @Bean
+    public static TaskDecorator requestContextTaskDecorator() {
+        return task -> {
+            Integer shard = ShardContext.current();
+            AtomicInteger statements = SqlStatementCounter.current();
+            return () -> {
+                ShardContext.set(shard);
+                SqlStatementCounter.bind(statements);
+                try {
+                    task.run();
+                } finally {
+                    ShardContext.set(null);
+                    SqlStatementCounter.bind(null);
+                }
+            };
+        };
+    }
+
+    /**
+     * Lets Jackson write single documents as application/x-ndjson, so that clients of the streaming endpoints
+     * that only accept NDJSON still get the error response as a one-line document.
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        for (HttpMessageConverter<?> converter : converters) {
+            if (converter instanceof MappingJackson2HttpMessageConverter jackson) {
+                List<MediaType> mediaTypes = new ArrayList<>(jackson.getSupportedMediaTypes());
+                mediaTypes.add(MediaType.APPLICATION_NDJSON);
+                jackson.setSupportedMediaTypes(mediaTypes);
+            }
+        }
+    }
+}
@@ -1,14 +1,15 @@
 package com.telusko.MultProfilesApp.controller;
 
+import com.telusko.MultProfilesApp.dto.CategoryDto;
 import com.telusko.MultProfilesApp.model.Category;
+import com.telusko.MultProfilesApp.model.CursorPage;
 import com.telusko.MultProfilesApp.service.impl.CategoryServiceImpl;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
-
 @RestController
 @RequestMapping("/company/{companyId}/category")
 public class CategoryController {
@@ -17,18 +18,22 @@ public class CategoryController {
     private CategoryServiceImpl categoryService;
 
     /**
-     * Retrieves all categories for a given company.
+     * Retrieves the categories of a given company page by page, ordered by ID.
      * @param companyId the ID of the company to retrieve categories for
-     * @return ResponseEntity with a list of categories and HTTP status
+     * @param after the last category ID of the previous page, omitted for the first page
+     * @param limit the maximum number of categories in the page
+     * @return ResponseEntity with a page of categories, the next cursor and HTTP status,
+     *         or NOT_MODIFIED if the page still matches the If-None-Match tag
      */
     @GetMapping
-    private ResponseEntity<List<Category>> getAllCategories(@PathVariable Long companyId) {
-        List<Category> categories = categoryService.getAllCategories(companyId);
-        if (!categories.isEmpty()) {
-            return new ResponseEntity<>(categories, HttpStatus.OK);
-        } else {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
+    private ResponseEntity<CursorPage<CategoryDto>> getAllCategories(@PathVariable Long companyId,
+                                                                     @RequestParam(required = false) Long after,
+                                                                     @RequestParam(defaultValue = "" + CursorPage.DEFAULT_LIMIT) int limit) {
+        CursorPage<CategoryDto> categories = categoryService.getCategories(companyId, after, limit);
+        // A matching If-None-Match is answered with 304 before the page is serialized
+        return ResponseEntity.ok()
+                .eTag(ETags.of(categories, CategoryDto::getId, CategoryDto::getVersion))
+                .body(categories);
     }
 
     /**
@@ -55,18 +60,19 @@ public class CategoryController {
      * Get category by ID
      * @param companyId The ID of the company
      * @param catId The ID of the category
-     * @return ResponseEntity with the category if found, otherwise NOT_FOUND
+     * @return ResponseEntity with the category if found, otherwise NOT_FOUND,
+     *         or NOT_MODIFIED if the client's copy is current
      */
     @GetMapping("/{catId}")
-    private ResponseEntity<Category> getCategoryById(@PathVariable Long companyId,
-                                                     @PathVariable Long catId) {
+    private ResponseEntity<CategoryDto> getCategoryById(@PathVariable Long companyId,
+                                                        @PathVariable Long catId) {
         // Retrieve the category from the service
-        Category category = categoryService.getCategoryById(companyId, catId);
+        CategoryDto category = categoryService.getCategoryById(companyId, catId);
 
         // Check if the category exists
         if(category != null) {
-            // Return the category with HttpStatus OK if found
-            return new ResponseEntity<>(category, HttpStatus.OK);
+            // Return the category with HttpStatus OK if found, tagged with its version
+            return ResponseEntity.ok().eTag(ETags.of(category.getVersion())).body(category);
         } else {
             // Return NOT_FOUND if category not found
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
@@ -78,16 +84,19 @@ public class CategoryController {
      * @param companyId The ID of the company.
      * @param category The updated category object.
      * @param catId The ID of the category to update.
+     * @param ifMatch The entity tag the client read, to update only an unchanged category.
      * @return ResponseEntity with a success message if the category was updated successfully,
-     *         or NOT_FOUND status if the category was not found.
+     *         NOT_FOUND status if the category was not found, or PRECONDITION_FAILED if it changed.
      */
     @PutMapping("/{catId}")
     private ResponseEntity<String> updateCategoryById(@PathVariable Long companyId,
                                                       @RequestBody Category category,
-                                                      @PathVariable Long catId) {
+                                                      @PathVariable Long catId,
+                                                      @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+                                                      String ifMatch) {
 
         // Call the categoryService to update the category
-        boolean isUpdated = categoryService.updateCategory(companyId, category, catId);
+        boolean isUpdated = categoryService.updateCategory(companyId, category, catId, ETags.expectedVersion(ifMatch));
         if (isUpdated) {
             // Return success message if the category was updated successfully
             return new ResponseEntity<>("Category updated successfully!", HttpStatus.OK);
@@ -101,14 +110,17 @@ public class CategoryController {
      * Delete category by its id
      * @param companyId The ID of the company
      * @param catId The ID of category to delete
+     * @param ifMatch The entity tag the client read, to delete only an unchanged category
      * @return ResponseEntity with success message if category was deleted successfully,
-     *         or NOT_FOUND status if the category or company is not found.
+     *         NOT_FOUND status if the category or company is not found, or PRECONDITION_FAILED if it changed.
      **/
     @DeleteMapping("/{catId}")
     private ResponseEntity<String> deleteCategoryById(@PathVariable Long companyId,
-                                                      @PathVariable Long catId) {
+                                                      @PathVariable Long catId,
+                                                      @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+                                                      String ifMatch) {
 
-        boolean isDeleted = categoryService.deleteCategoryById(companyId, catId);
+        boolean isDeleted = categoryService.deleteCategoryById(companyId, catId, ETags.expectedVersion(ifMatch));
         if (isDeleted) {
             return new ResponseEntity<>("Category deleted successfully!", HttpStatus.OK);
         } else {
@@ -1,33 +1,54 @@
 package com.telusko.MultProfilesApp.controller;
 
+import com.telusko.MultProfilesApp.dto.CompanyDto;
+import com.telusko.MultProfilesApp.dto.CompanyStats;
 import com.telusko.MultProfilesApp.model.Company;
-import com.telusko.MultProfilesApp.service.impl.CompanyServiceImpl;
+import com.telusko.MultProfilesApp.model.CursorPage;
+import com.telusko.MultProfilesApp.model.UpsertOutcome;
+import com.telusko.MultProfilesApp.model.UpsertResult;
+import com.telusko.MultProfilesApp.service.CatalogStatsService;
+import com.telusko.MultProfilesApp.service.CompanyService;
+import com.telusko.MultProfilesApp.service.impl.ExportServiceImpl;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
 
 
 @RestController
 @RequestMapping("/company")
 public class CompanyController {
     @Autowired
-    private CompanyServiceImpl companyService;
+    private CompanyService companyService;
+    @Autowired
+    private ExportServiceImpl exportService;
+    @Autowired
+    private CatalogStatsService catalogStatsService;
 
     /**
-     * Endpoint to retrieve all companies
-     * @return   ResponseEntity with a list of companies objects if found with StatusCode(OK -> 200) or (NOT_FOUND -> 400)
+     * Endpoint to retrieve companies page by page, ordered by ID
+     * @param after the last company ID of the previous page, omitted for the first page
+     * @param limit the maximum number of companies in the page
+     * @return   ResponseEntity with a page of companies and the next cursor with StatusCode(OK -> 200) or (NOT_FOUND -> 400),
+     *          or (NOT_MODIFIED -> 304) if the page still matches the If-None-Match tag
     */
     @GetMapping
-    private ResponseEntity<List<Company>> getAllCompanies() {
-
-        List<Company> companies = companyService.getAllCompanies();
-        if (!companies.isEmpty())
-            return new ResponseEntity<>(companies, HttpStatus.OK);
-        else
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    private ResponseEntity<CursorPage<CompanyDto>> getAllCompanies(@RequestParam(required = false) Long after,
+                                                                @RequestParam(defaultValue = "" + CursorPage.DEFAULT_LIMIT) int limit) {
+
+        CursorPage<CompanyDto> companies = companyService.getCompanies(after, limit);
+        // A matching If-None-Match is answered with 304 before the page is serialized
+        return ResponseEntity.ok()
+                .eTag(ETags.of(companies, CompanyDto::getId, CompanyDto::getVersion))
+                .body(companies);
     }
 
     /**
@@ -49,15 +70,22 @@ public class CompanyController {
     /**
      * Endpoint to Get Company object by id
      * @param id to fetch the record of particular id
+     * @param request the request, checked against its If-None-Match tag
      * @return ResponseEntity with Company object and Http Status (OK->200)
-     *      or (NOT_FOUND->400)
+     *      or (NOT_FOUND->400), or (NOT_MODIFIED->304) if the client's copy is current
     **/
     @GetMapping("/{id}")
-    private ResponseEntity<Company> getCompanyById(@PathVariable Long id) {
+    private ResponseEntity<CompanyDto> getCompanyById(@PathVariable Long id, WebRequest request) {
+
+        // Answer an unchanged copy from the version column alone, without loading the company or its categories
+        Optional<Long> version = companyService.getCompanyVersion(id);
+        if(version.isPresent() && request.checkNotModified(ETags.of(version.get()))) {
+            return null;
+        }
 
-        Company company = companyService.getCompanyById(id);
+        CompanyDto company = companyService.getCompanyById(id);
         if(company != null) {
-            return new ResponseEntity<>(company, HttpStatus.OK);
+            return ResponseEntity.ok().eTag(ETags.of(company.getVersion())).body(company);
         } else {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
@@ -67,15 +95,18 @@ public class CompanyController {
      * Endpoint to Update company details by ID
      * @param updatedCompany The updated company details
      * @param id The ID of the company to be updated
+     * @param ifMatch the entity tag the client read, to update only an unchanged company
      * @return ResponseEntity with a success message and StatusCode(200) if the update was successful,
-     *         or NOT_FOUND(400) status if the company was not found
+     *         NOT_FOUND(400) status if the company was not found, or PRECONDITION_FAILED(412) if it changed
      */
     @PutMapping("/{id}")
     private ResponseEntity<String> updateCompanyDetails(@RequestBody Company updatedCompany,
-                                                        @PathVariable Long id) {
+                                                        @PathVariable Long id,
+                                                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+                                                        String ifMatch) {
 
         boolean isUpdated = companyService
-                .updateCompanyDetails(updatedCompany, id);
+                .updateCompanyDetails(updatedCompany, id, ETags.expectedVersion(ifMatch));
 
         if(isUpdated) {
             return new ResponseEntity<>("Information updated successfully!", HttpStatus.OK);
@@ -84,16 +115,96 @@ public class CompanyController {
         }
     }
 
+    /**
+     * Endpoint to create or update a company by its name, safe to repeat
+     * @param name the name of the company
+     * @param company the city and state of the company
+     * @return ResponseEntity with the outcome and StatusCode(CREATED -> 201) for a new company,
+     *          (OK -> 200) if it was updated or already up to date, or (BAD_REQUEST -> 400) if the record is invalid
+     */
+    @PutMapping("/by-name/{name}")
+    private ResponseEntity<UpsertOutcome> upsertCompany(@PathVariable String name, @RequestBody Company company) {
+
+        UpsertOutcome outcome = companyService.upsertCompany(name, company);
+        return switch (outcome.getStatus()) {
+            case CREATED -> new ResponseEntity<>(outcome, HttpStatus.CREATED);
+            case REJECTED -> new ResponseEntity<>(outcome, HttpStatus.BAD_REQUEST);
+            default -> new ResponseEntity<>(outcome, HttpStatus.OK);
+        };
+    }
+
+    /**
+     * Endpoint to create or update many companies by name in one request, safe to repeat
+     * @param companies the companies, each name at most once
+     * @return ResponseEntity with the outcome of each record in request order and their counts, StatusCode(OK -> 200)
+     */
+    @PutMapping("/by-name")
+    private ResponseEntity<UpsertResult> upsertCompanies(@RequestBody List<Company> companies) {
+
+        return ResponseEntity.ok(companyService.upsertCompanies(companies));
+    }
+
+    /**
+     * Endpoint to get the product count, lowest, highest and average price and the number of products
+     * expiring soon of every category of a company, aggregated in the database
+     * @param id the ID of the company
+     * @param expiringWithinDays the size of the expiring-soon window in days from today, app.stats.expiring-soon-days if omitted
+     * @return ResponseEntity with the stats of each category and StatusCode(OK -> 200) or (NOT_FOUND -> 404)
+     */
+    @GetMapping("/{id}/stats")
+    private ResponseEntity<CompanyStats> getCompanyStats(@PathVariable Long id,
+                                                         @RequestParam(required = false) Integer expiringWithinDays) {
+
+        return ResponseEntity.ok(catalogStatsService.getCompanyStats(id, expiringWithinDays));
+    }
+
+    /**
+     * Endpoint to export the full catalog of a company as NDJSON, in the format accepted by POST /import.
+     * The response is streamed, and compressed when the client accepts gzip.
+     * @param id the ID of the company
+     * @param after the code of the last product already received, to resume an interrupted export
+     * @param acceptEncoding the encodings accepted by the client
+     * @return ResponseEntity streaming the catalog with StatusCode(OK -> 200) or (NOT_FOUND -> 404)
+     */
+    @GetMapping(value = "/{id}/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    private ResponseEntity<StreamingResponseBody> exportCatalog(@PathVariable Long id,
+                                                                @RequestParam(required = false) Long after,
+                                                                @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false)
+                                                                String acceptEncoding) {
+        // Check the company before the response is committed, so a missing one is still a 404
+        companyService.getCompanyById(id);
+
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        StreamingResponseBody body = output -> {
+            if (gzip) {
+                GZIPOutputStream compressed = new GZIPOutputStream(output, 64 * 1024);
+                exportService.exportCatalog(id, after, compressed);
+                compressed.finish();
+            } else {
+                exportService.exportCatalog(id, after, output);
+            }
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
     /**
      * Endpoint to Delete Company details by ID
      * @param id The id of the company to delete
-     * @return ResponseEntity with a success message and StatusCode(200) if the record deleted
-     *      or NOT_FOUND(400) if the company not found.
+     * @param ifMatch the entity tag the client read, to delete only an unchanged company
+     * @return ResponseEntity with a success message and StatusCode(200) if the record deleted,
+     *      NOT_FOUND(400) if the company not found, or PRECONDITION_FAILED(412) if it changed.
      **/
     @DeleteMapping("/{id}")
-    private ResponseEntity<String> deleteCompanyById(@PathVariable Long id) {
+    private ResponseEntity<String> deleteCompanyById(@PathVariable Long id,
+                                                     @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+                                                     String ifMatch) {
 
-        boolean isDeleted = companyService.deleteCompanyById(id);
+        boolean isDeleted = companyService.deleteCompanyById(id, ETags.expectedVersion(ifMatch));
         if (isDeleted) {
             return new ResponseEntity<>("Record deleted!", HttpStatus.OK);
         } else {
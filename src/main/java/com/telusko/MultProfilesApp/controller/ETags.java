@@ -0,0 +1,63 @@
+package com.telusko.MultProfilesApp.controller;
+
+import com.telusko.MultProfilesApp.model.CursorPage;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Strong entity tags of the catalog resources, derived from their version columns.
+ * A single resource is tagged with its version; a page with a digest of the IDs and versions of its items,
+ * which changes whenever an item is added, removed or modified.
+ */
+final class ETags {
+
+    private ETags() {
+    }
+
+    /**
+     * @param version the version of the resource
+     * @return the quoted entity tag
+     */
+    static String of(long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * @param page the page as it will be served
+     * @param id extracts the ID of an item
+     * @param version extracts the version of an item as served
+     * @return the quoted entity tag of the page
+     */
+    static <T> String of(CursorPage<T> page, Function<T, Long> id, ToLongFunction<T> version) {
+        StringBuilder content = new StringBuilder();
+        for (T item : page.getItems()) {
+            content.append(id.apply(item)).append(':').append(version.applyAsLong(item)).append(',');
+        }
+        content.append(page.getNextCursor());
+        return "\"" + DigestUtils.md5DigestAsHex(content.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    /**
+     * Reads the version a client expects from an If-Match header.
+     * @param ifMatch the header value, may be null
+     * @return the expected version; null when the header is absent or "*", which leave the write unconditional;
+     *         -1 for a weak or foreign tag, which never matches under the strong comparison If-Match requires
+     */
+    static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            try {
+                return Long.parseLong(tag.substring(1, tag.length() - 1));
+            } catch (NumberFormatException e) {
+                return -1L;
+            }
+        }
+        return -1L;
+    }
+}
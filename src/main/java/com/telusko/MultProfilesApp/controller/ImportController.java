@@ -0,0 +1,44 @@
+package com.telusko.MultProfilesApp.controller;
+
+import com.telusko.MultProfilesApp.model.ImportResult;
+import com.telusko.MultProfilesApp.service.ImportService;
+import com.telusko.MultProfilesApp.service.impl.ImportServiceImpl;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@RestController
+@RequestMapping("/import")
+public class ImportController {
+    @Autowired
+    private ImportServiceImpl importService;
+
+    /**
+     * Endpoint to import a catalog file with one record per line, streamed from the request body
+     * @param body the NDJSON file
+     * @return ResponseEntity with the created and rejected counts and the errors per line with StatusCode(OK -> 200)
+     */
+    @PostMapping(consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    private ResponseEntity<ImportResult> importNdjson(InputStream body) throws IOException {
+        ImportResult result = importService.importRecords(body, ImportService.Format.NDJSON);
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+
+    /**
+     * Endpoint to import a catalog file with a header line naming the columns, streamed from the request body
+     * @param body the CSV file
+     * @return ResponseEntity with the created and rejected counts and the errors per line with StatusCode(OK -> 200)
+     */
+    @PostMapping(consumes = "text/csv")
+    private ResponseEntity<ImportResult> importCsv(InputStream body) throws IOException {
+        ImportResult result = importService.importRecords(body, ImportService.Format.CSV);
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+}
@@ -1,8 +1,15 @@
 package com.telusko.MultProfilesApp.controller;
 
+import com.telusko.MultProfilesApp.dto.ProductDto;
+import com.telusko.MultProfilesApp.model.BatchResult;
+import com.telusko.MultProfilesApp.model.CursorPage;
+import com.telusko.MultProfilesApp.model.PriceChange;
 import com.telusko.MultProfilesApp.model.Product;
+import com.telusko.MultProfilesApp.model.ProductSearch;
+import com.telusko.MultProfilesApp.model.RepriceResult;
 import com.telusko.MultProfilesApp.service.impl.ProductServiceImpl;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -16,24 +23,48 @@ public class ProductController {
     private ProductServiceImpl productService;
 
     /**
-     * Retrieves all products for a given company and category.
+     * Retrieves the products of a given company and category page by page, ordered by product code.
      * @param companyId the ID of the company
      * @param categoryId the ID of the category
-     * @return ResponseEntity with a list of products if found, or NOT_FOUND if the list is empty
+     * @param after the last product code of the previous page, omitted for the first page
+     * @param limit the maximum number of products in the page
+     * @return ResponseEntity with a page of products and the next cursor,
+     *         or NOT_MODIFIED if the page still matches the If-None-Match tag
      */
     @GetMapping
-    private ResponseEntity<List<Product>> getAllProducts(@PathVariable Long companyId,
-                                                         @PathVariable Long categoryId) {
-        // Retrieve all products for the given company and category
-        List<Product> products = productService.getAllProducts(companyId, categoryId);
+    private ResponseEntity<CursorPage<ProductDto>> getAllProducts(@PathVariable Long companyId,
+                                                                  @PathVariable Long categoryId,
+                                                                  @RequestParam(required = false) Long after,
+                                                                  @RequestParam(defaultValue = "" + CursorPage.DEFAULT_LIMIT) int limit) {
+        // Retrieve one page of products for the given company and category
+        CursorPage<ProductDto> products = productService.getProducts(companyId, categoryId, after, limit);
 
-        // Check if the list of products is empty
-        if (products.isEmpty()) {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
+        // Return the page of products with OK status, or 304 before serializing if the client's copy is current
+        return ResponseEntity.ok()
+                .eTag(ETags.of(products, ProductDto::getCode, ProductServiceImpl::versionOf))
+                .body(products);
+    }
 
-        // Return the list of products with OK status
-        return new ResponseEntity<>(products, HttpStatus.OK);
+    /**
+     * Searches the products of a given company and category page by page, ordered by product code.
+     * @param companyId the ID of the company
+     * @param categoryId the ID of the category
+     * @param search the optional filters: minPrice, maxPrice, mfgFrom, mfgTo, expiryFrom, expiryTo (yyyy-MM-dd) and name prefix
+     * @param after the last product code of the previous page, omitted for the first page
+     * @param limit the maximum number of products in the page
+     * @return ResponseEntity with a page of matching products and the next cursor,
+     *         or NOT_MODIFIED if the page still matches the If-None-Match tag
+     */
+    @GetMapping("/search")
+    private ResponseEntity<CursorPage<ProductDto>> searchProducts(@PathVariable Long companyId,
+                                                                  @PathVariable Long categoryId,
+                                                                  ProductSearch search,
+                                                                  @RequestParam(required = false) Long after,
+                                                                  @RequestParam(defaultValue = "" + CursorPage.DEFAULT_LIMIT) int limit) {
+        CursorPage<ProductDto> products = productService.searchProducts(companyId, categoryId, search, after, limit);
+        return ResponseEntity.ok()
+                .eTag(ETags.of(products, ProductDto::getCode, ProductServiceImpl::versionOf))
+                .body(products);
     }
 
     /**
@@ -55,6 +86,38 @@ public class ProductController {
         return new ResponseEntity<>(HttpStatus.NOT_FOUND);
     }
 
+    /**
+     * Adds many products to a category in a single transaction.
+     *
+     * @param companyId the ID of the company
+     * @param categoryId the ID of the category
+     * @param products the products to add
+     * @return a ResponseEntity with the number of inserted and rejected products
+     */
+    @PostMapping("/batch")
+    private ResponseEntity<BatchResult> addProducts(@PathVariable Long companyId,
+                                                    @PathVariable Long categoryId,
+                                                    @RequestBody List<Product> products) {
+        BatchResult result = productService.addProducts(companyId, categoryId, products);
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+
+    /**
+     * Changes the prices of the products of a category in one statement.
+     *
+     * @param companyId the ID of the company
+     * @param categoryId the ID of the category
+     * @param change the percent or amount to add, and the optional minPrice, maxPrice, expiryFrom and expiryTo filters
+     * @return a ResponseEntity with the number of changed products, or BAD_REQUEST if the change is invalid
+     */
+    @PostMapping("/reprice")
+    private ResponseEntity<RepriceResult> repriceProducts(@PathVariable Long companyId,
+                                                          @PathVariable Long categoryId,
+                                                          @RequestBody PriceChange change) {
+        int updated = productService.repriceProducts(companyId, categoryId, change);
+        return new ResponseEntity<>(new RepriceResult(updated), HttpStatus.OK);
+    }
+
     /**
      * A description of the entire Java function.
      *
@@ -64,13 +127,14 @@ public class ProductController {
      * @return description of return value
      */
     @GetMapping("/{productId}")
-    private ResponseEntity<Product> getProductById(@PathVariable Long companyId,
-                                                   @PathVariable Long categoryId,
-                                                   @PathVariable Long productId) {
+    private ResponseEntity<ProductDto> getProductById(@PathVariable Long companyId,
+                                                      @PathVariable Long categoryId,
+                                                      @PathVariable Long productId) {
 
-        Product product = productService.getProductById(companyId, categoryId, productId);
+        ProductDto product = productService.getProductById(companyId, categoryId, productId);
         if(product != null) {
-            return new ResponseEntity<>(product, HttpStatus.OK);
+            // Tagged with the versions of the product and its embedded category
+            return ResponseEntity.ok().eTag(ETags.of(ProductServiceImpl.versionOf(product))).body(product);
         }
         return new ResponseEntity<>(HttpStatus.NOT_FOUND);
     }
@@ -82,14 +146,19 @@ public class ProductController {
      * @param categoryId the category ID
      * @param updatedProduct the updated product
      * @param productId the product ID
-     * @return a ResponseEntity with a success message if the product was updated, otherwise NOT_FOUND
+     * @param ifMatch the entity tag the client read, to update only an unchanged product
+     * @return a ResponseEntity with a success message if the product was updated, otherwise NOT_FOUND,
+     *         or PRECONDITION_FAILED if it changed
      */
     @PutMapping("/{productId}")
     private ResponseEntity<String> updateProductById(@PathVariable Long companyId,
                                                      @PathVariable Long categoryId,
                                                      @RequestBody Product updatedProduct,
-                                                     @PathVariable Long productId) {
-        boolean isUpdated = productService.updateProductById(companyId, categoryId, updatedProduct, productId);
+                                                     @PathVariable Long productId,
+                                                     @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+                                                     String ifMatch) {
+        boolean isUpdated = productService.updateProductById(companyId, categoryId, updatedProduct, productId,
+                ETags.expectedVersion(ifMatch));
         if (isUpdated) {
             return new ResponseEntity<>("Product updated successfully!", HttpStatus.OK);
         }
@@ -102,13 +171,17 @@ public class ProductController {
      * @param companyId the ID of the company
      * @param categoryId the ID of the category
      * @param productId the ID of the product
-     * @return a ResponseEntity with a success or not found message
+     * @param ifMatch the entity tag the client read, to delete only an unchanged product
+     * @return a ResponseEntity with a success or not found message, or PRECONDITION_FAILED if it changed
      */
     @DeleteMapping("/{productId}")
     private ResponseEntity<String> deleteProductById(@PathVariable Long companyId,
                                                      @PathVariable Long categoryId,
-                                                     @PathVariable Long productId) {
-        boolean isDeleted = productService.deleteProductById(companyId, categoryId, productId);
+                                                     @PathVariable Long productId,
+                                                     @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+                                                     String ifMatch) {
+        boolean isDeleted = productService.deleteProductById(companyId, categoryId, productId,
+                ETags.expectedVersion(ifMatch));
         if (isDeleted) {
             return new ResponseEntity<>("Product deleted successfully!", HttpStatus.OK);
         }
@@ -0,0 +1,37 @@
+package com.telusko.MultProfilesApp.controller;
+
+import com.telusko.MultProfilesApp.dto.ProductDto;
+import com.telusko.MultProfilesApp.model.CursorPage;
+import com.telusko.MultProfilesApp.service.impl.ProductSearchServiceImpl;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/company/{companyId}/product")
+public class ProductSearchController {
+    @Autowired
+    private ProductSearchServiceImpl productSearchService;
+
+    /**
+     * Searches the product names of every category of a given company, best matches first.
+     * A word of the query matches a whole word of the name or the start of one, and every word has to match.
+     * @param companyId the ID of the company
+     * @param q the words to look for
+     * @param limit the maximum number of products to return
+     * @return ResponseEntity with the matching products
+     */
+    @GetMapping("/search")
+    private ResponseEntity<List<ProductDto>> searchProducts(@PathVariable Long companyId,
+                                                            @RequestParam String q,
+                                                            @RequestParam(defaultValue = "" + CursorPage.DEFAULT_LIMIT) int limit) {
+        // Look the words up in the name index of the company
+        List<ProductDto> products = productSearchService.searchProducts(companyId, q, limit);
+
+        // Return the matching products with OK status
+        return new ResponseEntity<>(products, HttpStatus.OK);
+    }
+}
@@ -0,0 +1,69 @@
+package com.telusko.MultProfilesApp.controller;
+
+import com.telusko.MultProfilesApp.model.Category;
+import com.telusko.MultProfilesApp.model.Company;
+import com.telusko.MultProfilesApp.model.Product;
+import com.telusko.MultProfilesApp.service.impl.ReactiveCatalogServiceImpl;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking variants of the read endpoints, for long-lived list requests.
+ * With Accept: application/x-ndjson each record is written as soon as it is read, one JSON document per line,
+ * and the next row is requested only once the previous one has been written to the client.
+ * The request thread is released while the stream is in progress.
+ * A missing company or category is answered with the usual error response before the stream starts.
+ */
+@RestController
+// Not in the sharded profile, see ReactiveDatabaseConfig
+@Profile("!sharded")
+@RequestMapping(value = "/reactive/company",
+        produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+public class ReactiveCatalogController {
+    @Autowired
+    private ReactiveCatalogServiceImpl reactiveCatalogService;
+
+    /**
+     * Endpoint to stream all companies ordered by ID, without their categories
+     * @param after the last company ID already received, omitted to start from the first one
+     * @return ResponseEntity with the stream of companies and StatusCode(OK -> 200)
+     */
+    @GetMapping
+    private ResponseEntity<Flux<Company>> streamCompanies(@RequestParam(required = false) Long after) {
+        return new ResponseEntity<>(reactiveCatalogService.streamCompanies(after), HttpStatus.OK);
+    }
+
+    /**
+     * Endpoint to stream the categories of a company ordered by ID
+     * @param companyId the ID of the company
+     * @param after the last category ID already received, omitted to start from the first one
+     * @return ResponseEntity with the stream of categories and StatusCode(OK -> 200) or (NOT_FOUND -> 404)
+     */
+    @GetMapping("/{companyId}/category")
+    private Mono<ResponseEntity<Flux<Category>>> streamCategories(@PathVariable Long companyId,
+                                                                  @RequestParam(required = false) Long after) {
+        return reactiveCatalogService.streamCategories(companyId, after)
+                .map(categories -> new ResponseEntity<>(categories, HttpStatus.OK));
+    }
+
+    /**
+     * Endpoint to stream the products of a category ordered by product code
+     * @param companyId the ID of the company
+     * @param categoryId the ID of the category
+     * @param after the last product code already received, omitted to start from the first one
+     * @return ResponseEntity with the stream of products and StatusCode(OK -> 200) or (NOT_FOUND -> 404)
+     */
+    @GetMapping("/{companyId}/category/{categoryId}/product")
+    private Mono<ResponseEntity<Flux<Product>>> streamProducts(@PathVariable Long companyId,
+                                                               @PathVariable Long categoryId,
+                                                               @RequestParam(required = false) Long after) {
+        return reactiveCatalogService.streamProducts(companyId, categoryId, after)
+                .map(products -> new ResponseEntity<>(products, HttpStatus.OK));
+    }
+}
@@ -0,0 +1,11 @@
+package com.telusko.MultProfilesApp.dao;
+
+/**
+ * A number of products counted per category by a grouped query.
+ */
+public interface CategoryCount {
+
+    Long getCategoryId();
+
+    long getCount();
+}
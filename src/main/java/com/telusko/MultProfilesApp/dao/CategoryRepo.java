@@ -1,11 +1,117 @@
 package com.telusko.MultProfilesApp.dao;
 
+import com.telusko.MultProfilesApp.dto.CategoryDto;
 import com.telusko.MultProfilesApp.model.Category;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface CategoryRepo extends JpaRepository<Category, Long> {
 
     Category findByName(String categoryName);
+
+    /**
+     * Finds a category by its ID, only if it belongs to the given company.
+     * @param companyId the ID of the owning company
+     * @param catId the ID of the category
+     * @return the category, or empty if the company does not own it
+     */
+    @Query("select cat from Company co join co.categories cat where co.id = :companyId and cat.id = :catId")
+    Optional<Category> findByCompanyIdAndId(@Param("companyId") Long companyId, @Param("catId") Long catId);
+
+    /**
+     * Reads a category by its ID, only if it belongs to the given company.
+     * @param companyId the ID of the owning company
+     * @param catId the ID of the category
+     * @return the category, or empty if the company does not own it
+     */
+    @Query("select new com.telusko.MultProfilesApp.dto.CategoryDto(cat.id, cat.name, cat.type, cat.version) " +
+            "from Company co join co.categories cat where co.id = :companyId and cat.id = :catId")
+    Optional<CategoryDto> findDtoByCompanyIdAndId(@Param("companyId") Long companyId, @Param("catId") Long catId);
+
+    /**
+     * Reads all categories of a company, ordered by ID.
+     * @param companyId the ID of the owning company
+     * @return the categories of the company
+     */
+    @Query("select new com.telusko.MultProfilesApp.dto.CategoryDto(cat.id, cat.name, cat.type, cat.version) " +
+            "from Company co join co.categories cat where co.id = :companyId order by cat.id")
+    List<CategoryDto> findDtosByCompanyId(@Param("companyId") Long companyId);
+
+    /**
+     * Reads the next page of a company's categories after the given ID, ordered by ID.
+     * @param companyId the ID of the owning company
+     * @param after the last category ID of the previous page
+     * @param limit the maximum number of categories to return
+     * @return the categories with an ID greater than after
+     */
+    @Query("select new com.telusko.MultProfilesApp.dto.CategoryDto(cat.id, cat.name, cat.type, cat.version) " +
+            "from Company co join co.categories cat where co.id = :companyId and cat.id > :after order by cat.id")
+    List<CategoryDto> findPageByCompanyId(@Param("companyId") Long companyId, @Param("after") Long after, Limit limit);
+
+    /**
+     * Finds the IDs of a company's categories with the given name.
+     * @param companyId the ID of the owning company
+     * @param name the name of the category
+     * @return the IDs of the matching categories, in ID order
+     */
+    @Query("select cat.id from Company co join co.categories cat where co.id = :companyId and cat.name = :name " +
+            "order by cat.id")
+    List<Long> findIdsByCompanyIdAndName(@Param("companyId") Long companyId, @Param("name") String name);
+
+    /**
+     * Reads the IDs of some categories of a company, deleted or not.
+     * @param companyId the ID of the company
+     * @param limit the maximum number of IDs to return
+     * @return the IDs of the categories
+     */
+    @Query(value = "select CATEGORY_ID from COMPANY_CATEGORIES_TBL where COMPANY_ID = :companyId limit :limit",
+            nativeQuery = true)
+    List<Long> findIdsOfAnyCompany(@Param("companyId") Long companyId, @Param("limit") int limit);
+
+    /**
+     * Reads the IDs of every company that lists a category.
+     * @param categoryId the ID of the category
+     * @return the IDs of the companies
+     */
+    @Query(value = "select COMPANY_ID from COMPANY_CATEGORIES_TBL where CATEGORY_ID = :categoryId", nativeQuery = true)
+    List<Long> findCompanyIdsListing(@Param("categoryId") Long categoryId);
+
+    /**
+     * Reads which of the given categories are also listed by a company other than the given one.
+     * @param companyId the ID of the company
+     * @param ids the IDs of the categories
+     * @return the IDs of the shared categories
+     */
+    @Query(value = "select distinct CATEGORY_ID from COMPANY_CATEGORIES_TBL where CATEGORY_ID in (:ids) " +
+            "and COMPANY_ID <> :companyId", nativeQuery = true)
+    List<Long> findIdsListedByOtherCompanies(@Param("companyId") Long companyId, @Param("ids") Collection<Long> ids);
+
+    /**
+     * Removes the given categories from a company, leaving the other companies listing them alone.
+     * @param companyId the ID of the company
+     * @param ids the IDs of the categories
+     * @return the number of removed links
+     */
+    @Modifying
+    @Query(value = "delete from COMPANY_CATEGORIES_TBL where COMPANY_ID = :companyId and CATEGORY_ID in (:ids)",
+            nativeQuery = true)
+    int unlinkFromCompany(@Param("companyId") Long companyId, @Param("ids") Collection<Long> ids);
+
+    /**
+     * Deletes the given categories in one statement. Their products and company links must be gone already.
+     * @param ids the IDs of the categories
+     * @return the number of deleted categories
+     */
+    @Modifying
+    @Query(value = "delete from CATEGORIES where ID in (:ids)", nativeQuery = true)
+    int deleteByIds(@Param("ids") Collection<Long> ids);
 }
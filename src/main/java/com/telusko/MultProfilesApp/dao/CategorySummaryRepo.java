@@ -0,0 +1,105 @@
+package com.telusko.MultProfilesApp.dao;
+
+import com.telusko.MultProfilesApp.dto.CategoryStats;
+import com.telusko.MultProfilesApp.model.CategorySummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The CATEGORY_STATS summary table. The write statements adjust a row in place, so concurrent product
+ * writes to the same category are serialized on that row and never lose an update.
+ * They flush pending entity changes first, so the products they read back are the current ones.
+ */
+@Repository
+public interface CategorySummaryRepo extends JpaRepository<CategorySummary, Long> {
+
+    // Recomputes the rows of the selected categories from their products
+    String RECOMPUTE = "insert into CATEGORY_STATS (CATEGORY_ID, PRODUCT_COUNT, PRICE_SUM, MIN_PRICE, MAX_PRICE) " +
+            "select c.ID, count(p.PRODUCT_CODE), coalesce(sum(p.PRICE), 0), min(p.PRICE), max(p.PRICE) " +
+            "from CATEGORIES c left join PRODUCTS p on p.CATEGORY_ID = c.ID ";
+
+    /**
+     * Reads the stored figures of every category of a company, one row per category ordered by ID.
+     * A category without a row has no products yet. The expiring-soon counts are left at zero.
+     * @param companyId the ID of the company
+     * @return the figures of the company's categories
+     */
+    @Query("select new com.telusko.MultProfilesApp.dto.CategoryStats(cat.id, cat.name, s.productCount, s.priceSum, " +
+            "s.minPrice, s.maxPrice, 0L) " +
+            "from Company co join co.categories cat left join CategorySummary s on s.categoryId = cat.id " +
+            "where co.id = :companyId order by cat.id")
+    List<CategoryStats> findByCompanyId(@Param("companyId") Long companyId);
+
+    /**
+     * Adds products to the figures of their category.
+     * @param categoryId the ID of the category
+     * @param count the number of added products
+     * @param sum the sum of their prices
+     * @param min the lowest of their prices
+     * @param max the highest of their prices
+     * @return 1, or 0 if the category has no row yet
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "update CATEGORY_STATS set PRODUCT_COUNT = PRODUCT_COUNT + :count, PRICE_SUM = PRICE_SUM + :sum, " +
+            "MIN_PRICE = case when MIN_PRICE is null or MIN_PRICE > :min then :min else MIN_PRICE end, " +
+            "MAX_PRICE = case when MAX_PRICE is null or MAX_PRICE < :max then :max else MAX_PRICE end " +
+            "where CATEGORY_ID = :categoryId", nativeQuery = true)
+    int addProducts(@Param("categoryId") Long categoryId, @Param("count") long count, @Param("sum") double sum,
+                    @Param("min") double min, @Param("max") double max);
+
+    /**
+     * Takes products out of the figures of their category, after they were deleted or repriced.
+     * The lowest and highest price are read back from the products only when a removed price was one of them.
+     * @param categoryId the ID of the category
+     * @param count the number of removed products
+     * @param sum the sum of their prices
+     * @param min the lowest of their prices
+     * @param max the highest of their prices
+     * @return 1, or 0 if the category has no row yet
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "update CATEGORY_STATS set PRODUCT_COUNT = PRODUCT_COUNT - :count, PRICE_SUM = PRICE_SUM - :sum, " +
+            "MIN_PRICE = case when MIN_PRICE < :min then MIN_PRICE " +
+            "else (select min(p.PRICE) from PRODUCTS p where p.CATEGORY_ID = :categoryId) end, " +
+            "MAX_PRICE = case when MAX_PRICE > :max then MAX_PRICE " +
+            "else (select max(p.PRICE) from PRODUCTS p where p.CATEGORY_ID = :categoryId) end " +
+            "where CATEGORY_ID = :categoryId", nativeQuery = true)
+    int removeProducts(@Param("categoryId") Long categoryId, @Param("count") long count, @Param("sum") double sum,
+                       @Param("min") double min, @Param("max") double max);
+
+    /**
+     * Drops the rows of the given categories.
+     * @param categoryIds the IDs of the categories
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("delete from CategorySummary s where s.categoryId in :categoryIds")
+    void deleteByCategoryIds(@Param("categoryIds") Collection<Long> categoryIds);
+
+    /**
+     * Writes fresh rows for the given categories, which must have none. Categories that no longer exist get no row.
+     * @param categoryIds the IDs of the categories
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = RECOMPUTE + "where c.ID in (:categoryIds) group by c.ID", nativeQuery = true)
+    void insertComputed(@Param("categoryIds") Collection<Long> categoryIds);
+
+    /**
+     * Drops every row.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "delete from CATEGORY_STATS", nativeQuery = true)
+    void deleteAllRows();
+
+    /**
+     * Writes fresh rows for every category, into an empty table.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = RECOMPUTE + "group by c.ID", nativeQuery = true)
+    void insertAllComputed();
+}
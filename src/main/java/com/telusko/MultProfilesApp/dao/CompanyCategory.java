@@ -0,0 +1,17 @@
+package com.telusko.MultProfilesApp.dao;
+
+/**
+ * A category of a company, read for a whole page of companies at once and grouped by company.
+ */
+public interface CompanyCategory {
+
+    Long getCompanyId();
+
+    Long getId();
+
+    String getName();
+
+    String getType();
+
+    long getVersion();
+}
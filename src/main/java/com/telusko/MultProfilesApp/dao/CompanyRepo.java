@@ -1,11 +1,113 @@
 package com.telusko.MultProfilesApp.dao;
 
+import com.telusko.MultProfilesApp.dto.CompanyDto;
 import com.telusko.MultProfilesApp.model.Company;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
-public interface CompanyRepo extends JpaRepository<Company, Long> {
+public interface CompanyRepo extends JpaRepository<Company, Long>, CompanyUpsertRepo {
 
     Company findByName(String name);
+
+    /**
+     * Reads all companies, without their categories, ordered by ID.
+     * @return the companies
+     */
+    @Query("select new com.telusko.MultProfilesApp.dto.CompanyDto(c.id, c.name, c.city, c.state, c.version) " +
+            "from Company c order by c.id")
+    List<CompanyDto> findAllDtos();
+
+    /**
+     * Reads the next page of companies after the given ID, without their categories, ordered by ID.
+     * @param after the last ID of the previous page
+     * @param limit the maximum number of companies to return
+     * @return the companies with an ID greater than after
+     */
+    @Query("select new com.telusko.MultProfilesApp.dto.CompanyDto(c.id, c.name, c.city, c.state, c.version) " +
+            "from Company c where c.id > :after order by c.id")
+    List<CompanyDto> findPage(@Param("after") Long after, Limit limit);
+
+    /**
+     * Reads a company by its ID, without its categories.
+     * @param id the ID of the company
+     * @return the company, or empty if it does not exist
+     */
+    @Query("select new com.telusko.MultProfilesApp.dto.CompanyDto(c.id, c.name, c.city, c.state, c.version) " +
+            "from Company c where c.id = :id")
+    Optional<CompanyDto> findDtoById(@Param("id") Long id);
+
+    /**
+     * Reads the categories of several companies in one query, ordered by ID.
+     * @param ids the IDs of the companies
+     * @return the categories, each with the ID of the company listing it
+     */
+    @Query("select co.id as companyId, cat.id as id, cat.name as name, cat.type as type, cat.version as version " +
+            "from Company co join co.categories cat where co.id in :ids order by cat.id")
+    List<CompanyCategory> findCategories(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Reads the companies with the given names, without their categories.
+     * @param names the names to look up
+     * @return the companies found, in no particular order
+     */
+    @Query("select new com.telusko.MultProfilesApp.dto.CompanyDto(c.id, c.name, c.city, c.state, c.version) " +
+            "from Company c where c.name in :names")
+    List<CompanyDto> findDtosByNameIn(@Param("names") Collection<String> names);
+
+    /**
+     * Reads only the version of a company, to answer conditional requests without loading it.
+     * @param id the ID of the company
+     * @return the version, or empty if the company does not exist
+     */
+    @Query("select c.version from Company c where c.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    /**
+     * Increments the version of a company whose representation changed through one of its categories.
+     * @param id the ID of the company
+     * @return the number of updated rows
+     */
+    @Modifying
+    @Query("update Company c set c.version = c.version + 1 where c.id = :id")
+    int incrementVersion(@Param("id") Long id);
+
+    /**
+     * Marks a company as deleted if it is still at the given version, which hides it and its catalog from every read.
+     * Its name is replaced by a placeholder, so a new company can take the name before the old rows are purged.
+     * @param id the ID of the company
+     * @param version the version the company was read at
+     * @param now the time of the delete
+     * @return 1, or 0 if the company changed or was deleted in the meantime
+     */
+    @Modifying
+    @Query(value = "update COMPANY set DELETED_AT = :now, NAME = concat('~deleted~', ID), VERSION = VERSION + 1 " +
+            "where ID = :id and VERSION = :version and DELETED_AT is null", nativeQuery = true)
+    int markDeleted(@Param("id") Long id, @Param("version") long version, @Param("now") LocalDateTime now);
+
+    /**
+     * Finds the deleted company that waits longest for its rows to be purged.
+     * @return its ID, or empty if there is none
+     */
+    @Query(value = "select ID from COMPANY where DELETED_AT is not null order by DELETED_AT, ID limit 1",
+            nativeQuery = true)
+    Optional<Long> findNextDeletedId();
+
+    /**
+     * Removes a deleted company whose categories are already purged.
+     * @param id the ID of the company
+     * @return 1, or 0 if it is not a deleted company
+     */
+    @Modifying
+    @Query(value = "delete from COMPANY where ID = :id and DELETED_AT is not null", nativeQuery = true)
+    int deleteMarked(@Param("id") Long id);
 }
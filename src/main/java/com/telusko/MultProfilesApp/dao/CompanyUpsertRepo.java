@@ -0,0 +1,21 @@
+package com.telusko.MultProfilesApp.dao;
+
+import com.telusko.MultProfilesApp.model.Company;
+import com.telusko.MultProfilesApp.model.UpsertOutcome;
+
+import java.util.List;
+
+/**
+ * Insert-or-update of companies keyed by their unique name, in the database's own upsert statement.
+ */
+public interface CompanyUpsertRepo {
+
+    /**
+     * Inserts the companies whose name is new and updates the city, state and version of the others whose city
+     * or state differ, without reading them first. A name inserted concurrently by another request is updated
+     * instead of failing. Must run in a transaction.
+     * @param companies the companies, each name at most once
+     * @return what the statement did with each company, in the same order
+     */
+    List<UpsertOutcome.Status> upsertByName(List<Company> companies);
+}
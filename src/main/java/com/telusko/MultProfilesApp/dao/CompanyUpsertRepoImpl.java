@@ -0,0 +1,132 @@
+package com.telusko.MultProfilesApp.dao;
+
+import com.telusko.MultProfilesApp.model.Company;
+import com.telusko.MultProfilesApp.model.UpsertOutcome;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+
+import java.sql.DatabaseMetaData;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Picks the upsert statement of the database vendor at startup, and fails it for a vendor without one.
+ * Every shard and replica runs the same vendor.
+ * <p>
+ * On H2 the companies are merged in one statement that returns the rows it wrote: a version of 0 was inserted,
+ * any other was updated, and a missing name was unchanged. MySQL and MariaDB have no such statement, so one
+ * multi-row {@code INSERT ... ON DUPLICATE KEY UPDATE} marks the rows it writes with a negative version:
+ * -1 for an inserted row and -v - 2 for a row updated from version v. The marked rows of the chunk are then read
+ * and their versions restored by {@code -VERSION - 1}, which gives 0 and v + 1. Other transactions never see a
+ * marked row, it stays uncommitted and locked until the versions are restored.
+ */
+class CompanyUpsertRepoImpl implements CompanyUpsertRepo {
+
+    private static final String MYSQL_ROW = "(?, ?, ?, -1)";
+    // The version is assigned first, while CITY and STATE still hold the stored values
+    private static final String MYSQL = "insert into COMPANY (NAME, CITY, STATE, VERSION) values %s " +
+            "as new on duplicate key update VERSION = if(cast(COMPANY.CITY as binary) = cast(new.CITY as binary) " +
+            "and cast(COMPANY.STATE as binary) = cast(new.STATE as binary), COMPANY.VERSION, -COMPANY.VERSION - 2), " +
+            "CITY = new.CITY, STATE = new.STATE";
+    // MariaDB has no row alias, the inserted values are read with VALUES()
+    private static final String MARIADB = "insert into COMPANY (NAME, CITY, STATE, VERSION) values %s " +
+            "on duplicate key update VERSION = if(cast(CITY as binary) = cast(values(CITY) as binary) " +
+            "and cast(STATE as binary) = cast(values(STATE) as binary), VERSION, -VERSION - 2), " +
+            "CITY = values(CITY), STATE = values(STATE)";
+    // Returns the requested names, which the case insensitive collation may match to a stored name in other case
+    private static final String MARKED = "select n.NAME, c.VERSION from (%s) n join COMPANY c on c.NAME = n.NAME " +
+            "where c.VERSION < 0";
+    private static final String UNMARK = "update COMPANY set VERSION = -VERSION - 1 where VERSION < 0 and NAME in (%s)";
+    private static final String H2_ROW = "(cast(? as varchar(255)), cast(? as varchar(255)), cast(? as varchar(255)))";
+    private static final String H2 = "select NAME, VERSION from final table (merge into COMPANY c using (values %s) " +
+            "s(NAME, CITY, STATE) on c.NAME = s.NAME " +
+            "when matched and (c.CITY <> s.CITY or c.STATE <> s.STATE) then " +
+            "update set CITY = s.CITY, STATE = s.STATE, VERSION = c.VERSION + 1 " +
+            "when not matched then insert (NAME, CITY, STATE, VERSION) values (s.NAME, s.CITY, s.STATE, 0))";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    // The MySQL or MariaDB statement, or null on H2
+    private String upsert;
+
+    @PostConstruct
+    void selectStatement() throws MetaDataAccessException {
+        String database = JdbcUtils.extractDatabaseMetaData(jdbcTemplate.getDataSource(),
+                DatabaseMetaData::getDatabaseProductName);
+        upsert = switch (database) {
+            case "H2" -> null;
+            case "MySQL" -> MYSQL;
+            case "MariaDB" -> MARIADB;
+            default -> throw new IllegalStateException("No company upsert for " + database);
+        };
+    }
+
+    @Override
+    public List<UpsertOutcome.Status> upsertByName(List<Company> companies) {
+        if (companies.isEmpty()) {
+            return List.of();
+        }
+        return upsert != null ? upsertMySql(companies) : upsertH2(companies);
+    }
+
+    /**
+     * Runs in the caller's transaction, which keeps the marked rows to itself.
+     */
+    private List<UpsertOutcome.Status> upsertMySql(List<Company> companies) {
+        List<Object> rows = new ArrayList<>();
+        List<Object> names = new ArrayList<>();
+        for (Company company : companies) {
+            rows.add(company.getName());
+            rows.add(company.getCity());
+            rows.add(company.getState());
+            names.add(company.getName());
+        }
+        jdbcTemplate.update(upsert.formatted(String.join(", ", Collections.nCopies(companies.size(), MYSQL_ROW))),
+                rows.toArray());
+        Map<String, Long> written = new HashMap<>();
+        jdbcTemplate.query(MARKED.formatted(String.join(" union all ",
+                Collections.nCopies(companies.size(), "select ? as NAME"))), rs -> {
+            written.put(rs.getString(1), rs.getLong(2));
+        }, names.toArray());
+        if (!written.isEmpty()) {
+            jdbcTemplate.update(UNMARK.formatted(String.join(", ", Collections.nCopies(companies.size(), "?"))),
+                    names.toArray());
+        }
+
+        List<UpsertOutcome.Status> statuses = new ArrayList<>();
+        for (Company company : companies) {
+            Long version = written.get(company.getName());
+            statuses.add(version == null ? UpsertOutcome.Status.UNCHANGED
+                    : version == -1 ? UpsertOutcome.Status.CREATED : UpsertOutcome.Status.UPDATED);
+        }
+        return statuses;
+    }
+
+    private List<UpsertOutcome.Status> upsertH2(List<Company> companies) {
+        List<Object> parameters = new ArrayList<>();
+        for (Company company : companies) {
+            parameters.add(company.getName());
+            parameters.add(company.getCity());
+            parameters.add(company.getState());
+        }
+        Map<String, Long> written = new HashMap<>();
+        jdbcTemplate.query(H2.formatted(String.join(", ", Collections.nCopies(companies.size(), H2_ROW))),
+                rs -> {
+                    written.put(rs.getString(1), rs.getLong(2));
+                }, parameters.toArray());
+
+        List<UpsertOutcome.Status> statuses = new ArrayList<>();
+        for (Company company : companies) {
+            Long version = written.get(company.getName());
+            statuses.add(version == null ? UpsertOutcome.Status.UNCHANGED
+                    : version == 0 ? UpsertOutcome.Status.CREATED : UpsertOutcome.Status.UPDATED);
+        }
+        return statuses;
+    }
+}
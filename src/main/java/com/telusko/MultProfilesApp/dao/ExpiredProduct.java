@@ -0,0 +1,14 @@
+package com.telusko.MultProfilesApp.dao;
+
+/**
+ * Key of an expired product with the IDs its cache entries are stored under.
+ */
+public interface ExpiredProduct {
+
+    Long getCode();
+
+    Long getCategoryId();
+
+    // Null for a category that no company lists
+    Long getCompanyId();
+}
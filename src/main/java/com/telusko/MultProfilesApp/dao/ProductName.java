@@ -0,0 +1,15 @@
+package com.telusko.MultProfilesApp.dao;
+
+/**
+ * Name of a product with the company it is searched under.
+ */
+public interface ProductName {
+
+    Long getCompanyId();
+
+    Long getCategoryId();
+
+    Long getCode();
+
+    String getName();
+}
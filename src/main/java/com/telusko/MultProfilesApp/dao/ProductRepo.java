@@ -1,13 +1,235 @@
 package com.telusko.MultProfilesApp.dao;
 
+import com.telusko.MultProfilesApp.dto.CategoryStats;
+import com.telusko.MultProfilesApp.dto.ProductDto;
 import com.telusko.MultProfilesApp.model.Product;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface ProductRepo extends JpaRepository<Product, Long> {
+public interface ProductRepo extends JpaRepository<Product, Long>, JpaSpecificationExecutor<Product>, ProductSearchRepo {
+
+    // Rows read from the database cursor per round trip by the streaming queries
+    String STREAM_FETCH_SIZE = "1000";
+
+    // The columns of a product and its category that the API serves
+    String PRODUCT_DTO = "new com.telusko.MultProfilesApp.dto.ProductDto(p.code, p.name, p.price, p.mfgDate, " +
+            "p.expiryDate, p.version, cat.id, cat.name, cat.type, cat.version)";
 
     Product findByName(String name);
+
+    /**
+     * Finds which of the given product names are already taken.
+     * @param names the names to check
+     * @return the names that already exist
+     */
+    @Query("select p.name from Product p where p.name in :names")
+    List<String> findExistingNames(@Param("names") Collection<String> names);
+
+    /**
+     * Reads all products of a category, only if the category belongs to the given company.
+     * @param companyId the ID of the owning company
+     * @param categoryId the ID of the category
+     * @return the products of the category ordered by code, or an empty list
+     */
+    @Query("select " + PRODUCT_DTO + " from Product p join p.category cat join cat.companies co " +
+            "where co.id = :companyId and cat.id = :categoryId order by p.code")
+    List<ProductDto> findAllByCompanyIdAndCategoryId(@Param("companyId") Long companyId,
+                                                     @Param("categoryId") Long categoryId);
+
+    /**
+     * Reads a product by its code, only if it belongs to the given company and category.
+     * @param companyId the ID of the owning company
+     * @param categoryId the ID of the owning category
+     * @param productId the code of the product
+     * @return the product, or empty if it is not found within that company and category
+     */
+    @Query("select " + PRODUCT_DTO + " from Product p join p.category cat join cat.companies co " +
+            "where co.id = :companyId and cat.id = :categoryId and p.code = :productId")
+    Optional<ProductDto> findDtoByCompanyIdAndCategoryIdAndCode(@Param("companyId") Long companyId,
+                                                                @Param("categoryId") Long categoryId,
+                                                                @Param("productId") Long productId);
+
+    /**
+     * Finds a product by its code, only if it belongs to the given company and category.
+     * @param companyId the ID of the owning company
+     * @param categoryId the ID of the owning category
+     * @param productId the code of the product
+     * @return the product, or empty if it is not found within that company and category
+     */
+    @Query("select p from Product p join fetch p.category cat join cat.companies co " +
+            "where co.id = :companyId and cat.id = :categoryId and p.code = :productId")
+    Optional<Product> findByCompanyIdAndCategoryIdAndCode(@Param("companyId") Long companyId,
+                                                          @Param("categoryId") Long categoryId,
+                                                          @Param("productId") Long productId);
+
+    /**
+     * Reads the next page of a category's products after the given code, ordered by code.
+     * @param companyId the ID of the owning company
+     * @param categoryId the ID of the category
+     * @param after the last product code of the previous page
+     * @param limit the maximum number of products to return
+     * @return the products with a code greater than after
+     */
+    @Query("select " + PRODUCT_DTO + " from Product p join p.category cat join cat.companies co " +
+            "where co.id = :companyId and cat.id = :categoryId and p.code > :after order by p.code")
+    List<ProductDto> findPageByCompanyIdAndCategoryId(@Param("companyId") Long companyId,
+                                                      @Param("categoryId") Long categoryId,
+                                                      @Param("after") Long after,
+                                                      Limit limit);
+
+    /**
+     * Aggregates the products of every category of a company in one grouped query, one row per category ordered by ID.
+     * @param companyId the ID of the company
+     * @param from the first day of the expiring-soon window
+     * @param until the last day of the expiring-soon window
+     * @return the figures of the company's categories, including those without products
+     */
+    @Query("select new com.telusko.MultProfilesApp.dto.CategoryStats(cat.id, cat.name, count(p.code), sum(p.price), " +
+            "min(p.price), max(p.price), sum(case when p.expiryDate between :from and :until then 1L else 0L end)) " +
+            "from Company co join co.categories cat left join Product p on p.category = cat " +
+            "where co.id = :companyId group by cat.id, cat.name order by cat.id")
+    List<CategoryStats> findStatsByCompanyId(@Param("companyId") Long companyId,
+                                             @Param("from") LocalDate from,
+                                             @Param("until") LocalDate until);
+
+    /**
+     * Counts the products of each category of a company that expire within the given days,
+     * reading only the matching range of the expiry date index.
+     * @param companyId the ID of the company
+     * @param from the first day of the window
+     * @param until the last day of the window
+     * @return a count for every category with at least one such product
+     */
+    @Query("select cat.id as categoryId, count(p.code) as count " +
+            "from Product p join p.category cat join cat.companies co " +
+            "where co.id = :companyId and p.expiryDate between :from and :until group by cat.id")
+    List<CategoryCount> countExpiringByCompanyId(@Param("companyId") Long companyId,
+                                                 @Param("from") LocalDate from,
+                                                 @Param("until") LocalDate until);
+
+    /**
+     * Streams all products of a company after the given code, ordered by code, with their category.
+     * Must be consumed inside a transaction; rows are read from the cursor in blocks of the fetch size.
+     * @param companyId the ID of the owning company
+     * @param after the last product code already read
+     * @return the products with a code greater than after
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query("select p from Product p join fetch p.category cat join cat.companies co " +
+            "where co.id = :companyId and p.code > :after order by p.code")
+    Stream<Product> streamByCompanyId(@Param("companyId") Long companyId, @Param("after") Long after);
+
+    /**
+     * Streams the names of all products under each company listing their category, to build the search index.
+     * @return the names, read from the database in chunks as the stream is consumed
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query("select co.id as companyId, cat.id as categoryId, p.code as code, p.name as name " +
+            "from Product p join p.category cat join cat.companies co")
+    Stream<ProductName> streamNames();
+
+    /**
+     * Reads the given products of a company in one query, in no particular order.
+     * @param companyId the ID of the company
+     * @param codes the codes of the products
+     * @return the products that still exist under the company
+     */
+    @Query("select " + PRODUCT_DTO + " from Product p join p.category cat join cat.companies co " +
+            "where co.id = :companyId and p.code in :codes")
+    List<ProductDto> findDtosByCompanyIdAndCodeIn(@Param("companyId") Long companyId,
+                                                  @Param("codes") Collection<Long> codes);
+
+    /**
+     * Finds the products of a company whose lower-case name matches a LIKE pattern, ordered by code.
+     * @param companyId the ID of the company
+     * @param pattern the lower-case pattern, with backslash as the escape character
+     * @param limit the maximum number of products to return
+     * @return the matching products
+     */
+    @Query("select " + PRODUCT_DTO + " from Product p join p.category cat join cat.companies co " +
+            "where co.id = :companyId and lower(p.name) like :pattern escape '\\' order by p.code")
+    List<ProductDto> findDtosByCompanyIdAndNameLike(@Param("companyId") Long companyId,
+                                                    @Param("pattern") String pattern, Limit limit);
+
+    /**
+     * Reads the codes of some products of a company, deleted or not, in the categories no other company lists.
+     * @param companyId the ID of the company
+     * @param limit the maximum number of codes to return
+     * @return the codes of the products
+     */
+    @Query(value = "select p.PRODUCT_CODE from PRODUCTS p join COMPANY_CATEGORIES_TBL cc " +
+            "on cc.CATEGORY_ID = p.CATEGORY_ID where cc.COMPANY_ID = :companyId and not exists (" +
+            "select 1 from COMPANY_CATEGORIES_TBL other where other.CATEGORY_ID = p.CATEGORY_ID " +
+            "and other.COMPANY_ID <> :companyId) limit :limit", nativeQuery = true)
+    List<Long> findUnsharedCodesOfAnyCompany(@Param("companyId") Long companyId, @Param("limit") int limit);
+
+    /**
+     * Changes the prices of the products of a category in one statement, to {@code price * factor + amount}
+     * rounded to cents, and increments their versions. A null bound does not filter; products the change would
+     * bring below zero are left as they are. Native, as the JPQL form casts the factor to a type H2 cannot parse.
+     * @param categoryId the ID of the category
+     * @param factor the factor applied to each price
+     * @param amount the amount added to each price after the factor
+     * @param minPrice the lowest current price changed, inclusive
+     * @param maxPrice the highest current price changed, inclusive
+     * @param expiryFrom the earliest expiry date changed, inclusive
+     * @param expiryTo the latest expiry date changed, inclusive
+     * @return the number of changed products
+     */
+    @Modifying
+    @Query(value = "update PRODUCTS set PRICE = round(PRICE * :factor + :amount, 2), VERSION = VERSION + 1 " +
+            "where CATEGORY_ID = :categoryId and PRICE * :factor + :amount >= 0 " +
+            "and (:minPrice is null or PRICE >= :minPrice) and (:maxPrice is null or PRICE <= :maxPrice) " +
+            "and (:expiryFrom is null or EXPIRY_DATE >= :expiryFrom) " +
+            "and (:expiryTo is null or EXPIRY_DATE <= :expiryTo)", nativeQuery = true)
+    int reprice(@Param("categoryId") Long categoryId, @Param("factor") double factor, @Param("amount") double amount,
+                @Param("minPrice") Double minPrice, @Param("maxPrice") Double maxPrice,
+                @Param("expiryFrom") LocalDate expiryFrom, @Param("expiryTo") LocalDate expiryTo);
+
+    /**
+     * Deletes the given products in one statement.
+     * @param codes the codes of the products
+     * @return the number of deleted products
+     */
+    @Modifying
+    @Query("delete from Product p where p.code in :codes")
+    int deleteByCodes(@Param("codes") Collection<Long> codes);
+
+    /**
+     * Finds products that expired before the given date, ordered by code.
+     * A product is returned once per company listing its category.
+     * @param cutoff the first date products are still valid on
+     * @param limit the maximum number of rows to return
+     * @return the expired products with their category and company IDs
+     */
+    @Query("select p.code as code, cat.id as categoryId, co.id as companyId " +
+            "from Product p join p.category cat left join cat.companies co " +
+            "where p.expiryDate < :cutoff order by p.code")
+    List<ExpiredProduct> findExpired(@Param("cutoff") LocalDate cutoff, Limit limit);
+
+    /**
+     * Deletes the given products in one statement if they are still expired,
+     * so a product whose expiry date was extended in the meantime is kept.
+     * @param codes the codes of the products
+     * @param cutoff the first date products are still valid on
+     * @return the number of deleted products
+     */
+    @Modifying
+    @Query("delete from Product p where p.code in :codes and p.expiryDate < :cutoff")
+    int deleteExpired(@Param("codes") Collection<Long> codes, @Param("cutoff") LocalDate cutoff);
 }
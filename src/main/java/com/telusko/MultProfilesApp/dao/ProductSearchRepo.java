@@ -0,0 +1,23 @@
+package com.telusko.MultProfilesApp.dao;
+
+import com.telusko.MultProfilesApp.dto.ProductDto;
+import com.telusko.MultProfilesApp.model.ProductSearch;
+
+import java.util.List;
+
+/**
+ * Product search built from optional filters, reading only the columns of the product read model.
+ */
+public interface ProductSearchRepo {
+
+    /**
+     * Searches the products of a category within a company, ordered by code.
+     * @param companyId the ID of the owning company
+     * @param categoryId the ID of the category
+     * @param search the filters, fields left null are ignored
+     * @param after the last product code of the previous page
+     * @param limit the maximum number of products to return
+     * @return the matching products with a code greater than after
+     */
+    List<ProductDto> search(Long companyId, Long categoryId, ProductSearch search, Long after, int limit);
+}
@@ -0,0 +1,42 @@
+package com.telusko.MultProfilesApp.dao;
+
+import com.telusko.MultProfilesApp.dto.ProductDto;
+import com.telusko.MultProfilesApp.model.Category;
+import com.telusko.MultProfilesApp.model.Product;
+import com.telusko.MultProfilesApp.model.ProductSearch;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Root;
+
+import java.util.List;
+
+/**
+ * Runs the {@link ProductSpecs#search} predicates with a constructor projection instead of loading entities.
+ */
+class ProductSearchRepoImpl implements ProductSearchRepo {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<ProductDto> search(Long companyId, Long categoryId, ProductSearch search, Long after, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ProductDto> query = cb.createQuery(ProductDto.class);
+        Root<Product> root = query.from(Product.class);
+
+        query.where(ProductSpecs.search(companyId, categoryId, search, after).toPredicate(root, query, cb));
+        // The specification joined the category, reuse that join for its columns
+        @SuppressWarnings("unchecked")
+        Join<Product, Category> category = (Join<Product, Category>) root.getJoins().iterator().next();
+        query.select(cb.construct(ProductDto.class,
+                root.get("code"), root.get("name"), root.get("price"), root.get("mfgDate"),
+                root.get("expiryDate"), root.get("version"),
+                category.get("id"), category.get("name"), category.get("type"), category.get("version")));
+        query.orderBy(cb.asc(root.get("code")));
+
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+}
@@ -0,0 +1,76 @@
+package com.telusko.MultProfilesApp.dao;
+
+import com.telusko.MultProfilesApp.model.Category;
+import com.telusko.MultProfilesApp.model.Company;
+import com.telusko.MultProfilesApp.model.Product;
+import com.telusko.MultProfilesApp.model.ProductSearch;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Criteria queries over products that are built from optional filters.
+ */
+public final class ProductSpecs {
+
+    private ProductSpecs() {
+    }
+
+    /**
+     * Products of a category within a company that match the given filters and come after the given code.
+     * Only the filters that are set become predicates, so the database can use the price and expiry date indexes.
+     * @param companyId the ID of the owning company
+     * @param categoryId the ID of the category
+     * @param search the filters, fields left null are ignored
+     * @param after the last product code of the previous page
+     * @return the specification, fetching the category of each product when entities are selected
+     */
+    @SuppressWarnings("unchecked")
+    public static Specification<Product> search(Long companyId, Long categoryId, ProductSearch search, Long after) {
+        return (root, query, cb) -> {
+            // Fetch the category with the product entities, a plain join when the query counts or projects
+            Join<Product, Category> category = Product.class.equals(query.getResultType())
+                    ? (Join<Product, Category>) root.<Product, Category>fetch("category")
+                    : root.join("category");
+            Join<Category, Company> company = category.join("companies");
+
+            List<Predicate> predicates = new ArrayList<>();
+            predicates.add(cb.equal(company.get("id"), companyId));
+            predicates.add(cb.equal(category.get("id"), categoryId));
+            predicates.add(cb.greaterThan(root.get("code"), after));
+
+            if (search.getMinPrice() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("price"), search.getMinPrice()));
+            }
+            if (search.getMaxPrice() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("price"), search.getMaxPrice()));
+            }
+            if (search.getMfgFrom() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("mfgDate"), search.getMfgFrom()));
+            }
+            if (search.getMfgTo() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("mfgDate"), search.getMfgTo()));
+            }
+            if (search.getExpiryFrom() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("expiryDate"), search.getExpiryFrom()));
+            }
+            if (search.getExpiryTo() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("expiryDate"), search.getExpiryTo()));
+            }
+            if (search.getName() != null && !search.getName().isEmpty()) {
+                predicates.add(cb.like(root.get("name"), escapeLike(search.getName()) + "%", '\\'));
+            }
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    /**
+     * Escapes the LIKE wildcards so the value only matches literally.
+     */
+    public static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
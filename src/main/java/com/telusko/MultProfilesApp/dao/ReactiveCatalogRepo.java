@@ -0,0 +1,111 @@
+package com.telusko.MultProfilesApp.dao;
+
+import com.telusko.MultProfilesApp.model.Category;
+import com.telusko.MultProfilesApp.model.Company;
+import com.telusko.MultProfilesApp.model.Product;
+import io.r2dbc.spi.Readable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+
+/**
+ * Read-only queries of the reactive API over R2DBC. Rows are mapped to detached model objects
+ * without their associations and emitted as the driver reads them, ordered by ID so a client
+ * can resume an interrupted stream after the last ID it received.
+ */
+@Repository
+// Not in the sharded profile, see ReactiveDatabaseConfig
+@Profile("!sharded")
+public class ReactiveCatalogRepo {
+
+    @Autowired
+    private DatabaseClient reactiveDatabaseClient;
+
+    public Flux<Company> findCompanies(Long after) {
+        return reactiveDatabaseClient.sql("select id, name, city, state, version from company " +
+                        "where id > :after and deleted_at is null order by id")
+                .bind("after", after)
+                .map(ReactiveCatalogRepo::company)
+                .all();
+    }
+
+    public Mono<Boolean> existsCompany(Long companyId) {
+        return reactiveDatabaseClient.sql("select count(*) from company where id = :companyId and deleted_at is null")
+                .bind("companyId", companyId)
+                .map(row -> row.get(0, Long.class) > 0)
+                .one();
+    }
+
+    public Flux<Category> findCategoriesByCompanyId(Long companyId, Long after) {
+        return reactiveDatabaseClient.sql("select cat.id, cat.name, cat.last_name, cat.version from categories cat " +
+                        "join company_categories_tbl cc on cc.category_id = cat.id " +
+                        "where cc.company_id = :companyId and cat.id > :after order by cat.id")
+                .bind("companyId", companyId)
+                .bind("after", after)
+                .map(ReactiveCatalogRepo::category)
+                .all();
+    }
+
+    public Mono<Boolean> existsCategory(Long companyId, Long categoryId) {
+        return reactiveDatabaseClient.sql("select count(*) from company_categories_tbl cc " +
+                        "join company co on co.id = cc.company_id and co.deleted_at is null " +
+                        "where cc.company_id = :companyId and cc.category_id = :categoryId")
+                .bind("companyId", companyId)
+                .bind("categoryId", categoryId)
+                .map(row -> row.get(0, Long.class) > 0)
+                .one();
+    }
+
+    public Flux<Product> findProductsByCompanyIdAndCategoryId(Long companyId, Long categoryId, Long after) {
+        return reactiveDatabaseClient.sql("select p.product_code, p.name, p.price, p.mfg_date, p.expiry_date, p.version, " +
+                        "cat.id, cat.name as category_name, cat.last_name, cat.version as category_version from products p " +
+                        "join categories cat on cat.id = p.category_id " +
+                        "join company_categories_tbl cc on cc.category_id = cat.id " +
+                        "where cc.company_id = :companyId and cat.id = :categoryId and p.product_code > :after " +
+                        "order by p.product_code")
+                .bind("companyId", companyId)
+                .bind("categoryId", categoryId)
+                .bind("after", after)
+                .map(row -> {
+                    Category category = new Category();
+                    category.setId(row.get("id", Long.class));
+                    category.setName(row.get("category_name", String.class));
+                    category.setType(row.get("last_name", String.class));
+                    category.setVersion(row.get("category_version", Long.class));
+
+                    Product product = new Product(row.get("name", String.class),
+                            row.get("price", Double.class),
+                            row.get("mfg_date", LocalDate.class),
+                            row.get("expiry_date", LocalDate.class),
+                            category);
+                    product.setCode(row.get("product_code", Long.class));
+                    product.setVersion(row.get("version", Long.class));
+                    return product;
+                })
+                .all();
+    }
+
+    private static Company company(Readable row) {
+        Company company = new Company();
+        company.setId(row.get("id", Long.class));
+        company.setName(row.get("name", String.class));
+        company.setCity(row.get("city", String.class));
+        company.setState(row.get("state", String.class));
+        company.setVersion(row.get("version", Long.class));
+        return company;
+    }
+
+    private static Category category(Readable row) {
+        Category category = new Category();
+        category.setId(row.get("id", Long.class));
+        category.setName(row.get("name", String.class));
+        category.setType(row.get("last_name", String.class));
+        category.setVersion(row.get("version", Long.class));
+        return category;
+    }
+}
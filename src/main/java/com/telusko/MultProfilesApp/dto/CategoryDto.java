@@ -0,0 +1,21 @@
+package com.telusko.MultProfilesApp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Read model of a category, as served by the API. Built by the queries from the columns it needs.
+ */
+@AllArgsConstructor
+@Getter
+@EqualsAndHashCode
+@ToString
+public class CategoryDto {
+
+    private Long id;
+    private String name;
+    private String type;
+    private long version;
+}
@@ -0,0 +1,38 @@
+package com.telusko.MultProfilesApp.dto;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Product figures of one category, aggregated in the database.
+ * The prices are null for a category without products.
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+public class CategoryStats {
+
+    private Long categoryId;
+    private String name;
+    private long productCount;
+    private Double minPrice;
+    private Double maxPrice;
+    private Double averagePrice;
+    // Products expiring from today up to the end of the window
+    @Setter
+    private long expiringSoon;
+
+    public CategoryStats(Long categoryId, String name, Long productCount, Double priceSum,
+                         Double minPrice, Double maxPrice, Long expiringSoon) {
+        this.categoryId = categoryId;
+        this.name = name;
+        this.productCount = productCount == null ? 0 : productCount;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        // Derived from the sum so the summary table only has to keep additive figures
+        this.averagePrice = this.productCount == 0 || priceSum == null ? null : priceSum / this.productCount;
+        this.expiringSoon = expiringSoon == null ? 0 : expiringSoon;
+    }
+}
@@ -0,0 +1,34 @@
+package com.telusko.MultProfilesApp.dto;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * Read model of a company with its categories, as served by the API.
+ * The columns are read by one query and the categories of a whole page by a second one.
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+public class CompanyDto {
+
+    private Long id;
+    private String name;
+    private String city;
+    private String state;
+    private long version;
+    @Setter
+    private List<CategoryDto> categories;
+
+    public CompanyDto(Long id, String name, String city, String state, long version) {
+        this.id = id;
+        this.name = name;
+        this.city = city;
+        this.state = state;
+        this.version = version;
+    }
+}
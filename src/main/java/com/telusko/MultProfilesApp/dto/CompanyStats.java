@@ -0,0 +1,23 @@
+package com.telusko.MultProfilesApp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * Product figures of every category of a company, as served by the stats endpoint.
+ */
+@AllArgsConstructor
+@Getter
+@EqualsAndHashCode
+@ToString
+public class CompanyStats {
+
+    private Long companyId;
+    // Size of the expiring-soon window in days, counted from today
+    private int expiringWithinDays;
+    private List<CategoryStats> categories;
+}
@@ -0,0 +1,39 @@
+package com.telusko.MultProfilesApp.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDate;
+
+/**
+ * Read model of a product with its category, as served by the API.
+ * Built in one query from the product columns and the columns of its category.
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+public class ProductDto {
+
+    private Long code;
+    private String name;
+    private Double price;
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd")
+    private LocalDate mfgDate;
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd")
+    private LocalDate expiryDate;
+    private long version;
+    private CategoryDto category;
+
+    public ProductDto(Long code, String name, Double price, LocalDate mfgDate, LocalDate expiryDate, long version,
+                      Long categoryId, String categoryName, String categoryType, long categoryVersion) {
+        this.code = code;
+        this.name = name;
+        this.price = price;
+        this.mfgDate = mfgDate;
+        this.expiryDate = expiryDate;
+        this.version = version;
+        this.category = new CategoryDto(categoryId, categoryName, categoryType, categoryVersion);
+    }
+}
@@ -0,0 +1,7 @@
+package com.telusko.MultProfilesApp.exceptions;
+
+public class VersionMismatch extends RuntimeException{
+    public VersionMismatch(String message){
+        super(message);
+    }
+}
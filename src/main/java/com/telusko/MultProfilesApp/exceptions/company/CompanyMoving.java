@@ -0,0 +1,7 @@
+package com.telusko.MultProfilesApp.exceptions.company;
+
+public class CompanyMoving extends RuntimeException{
+    public CompanyMoving(String message){
+        super(message);
+    }
+}
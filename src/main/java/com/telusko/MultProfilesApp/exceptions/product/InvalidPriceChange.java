@@ -0,0 +1,7 @@
+package com.telusko.MultProfilesApp.exceptions.product;
+
+public class InvalidPriceChange extends RuntimeException{
+    public InvalidPriceChange(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,39 @@
+package com.telusko.MultProfilesApp.job;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+
+/**
+ * Actuator endpoint at /actuator/companypurge reporting the progress of the purge of deleted companies,
+ * and starting a run on demand with a POST.
+ */
+@Component
+@Endpoint(id = "companypurge")
+public class CompanyPurgeEndpoint {
+
+    @Autowired
+    private DeletedCompanyPurgeJob purgeJob;
+    @Autowired
+    private TaskScheduler taskScheduler;
+
+    @ReadOperation
+    public PurgeProgress progress() {
+        return purgeJob.getProgress();
+    }
+
+    /**
+     * Starts a run in the background.
+     * @return the progress when the run was requested
+     */
+    @WriteOperation
+    public PurgeProgress purge() {
+        taskScheduler.schedule(purgeJob::purge, Instant.now());
+        return purgeJob.getProgress();
+    }
+}
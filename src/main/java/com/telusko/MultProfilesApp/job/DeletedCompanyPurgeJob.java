@@ -0,0 +1,166 @@
+package com.telusko.MultProfilesApp.job;
+
+import com.telusko.MultProfilesApp.dao.CategoryRepo;
+import com.telusko.MultProfilesApp.dao.CategorySummaryRepo;
+import com.telusko.MultProfilesApp.dao.CompanyRepo;
+import com.telusko.MultProfilesApp.dao.ProductRepo;
+import com.telusko.MultProfilesApp.shard.ShardContext;
+import com.telusko.MultProfilesApp.shard.ShardRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Removes the rows of companies marked as deleted: first their products, then their categories and
+ * finally the company row, each step a chunk at a time in its own short transaction with set-based deletes,
+ * and a pause between chunks so other writers are not held up.
+ * Like the expired product purge it keeps no checkpoint; the marked companies still in the database are
+ * the remaining work, so a run interrupted by a crash is simply continued by the next one.
+ */
+@Component
+public class DeletedCompanyPurgeJob {
+
+    private static final Logger log = LoggerFactory.getLogger(DeletedCompanyPurgeJob.class);
+
+    @Autowired
+    private CompanyRepo companyRepo;
+    @Autowired
+    private CategoryRepo categoryRepo;
+    @Autowired
+    private ProductRepo productRepo;
+    @Autowired
+    private CategorySummaryRepo categorySummaryRepo;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    // Only present in the sharded profile
+    @Autowired(required = false)
+    private ShardRouter shardRouter;
+
+    @Value("${app.company-purge.chunk-size}")
+    private int chunkSize;
+    @Value("${app.company-purge.pause-ms}")
+    private long pauseMillis;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile PurgeProgress progress = PurgeProgress.idle();
+
+    /**
+     * Scheduled run, picking up the companies deleted since the last one.
+     */
+    @Scheduled(fixedDelayString = "${app.company-purge.delay-ms}", initialDelayString = "${app.company-purge.delay-ms}")
+    public void purgeDeletedCompanies() {
+        purge();
+    }
+
+    /**
+     * Removes every company marked as deleted, oldest delete first.
+     * Returns right away with the current progress if a run is already in progress.
+     * @return the progress at the end of the run
+     */
+    public PurgeProgress purge() {
+        if (!running.compareAndSet(false, true)) {
+            return progress;
+        }
+
+        Instant startedAt = Instant.now();
+        int chunks = 0;
+        long purged = 0;
+        int companies = 0;
+        try {
+            int shards = shardRouter != null ? shardRouter.getShardCount() : 1;
+            for (int shard = 0; shard < shards; shard++) {
+                Integer target = shardRouter != null ? shard : null;
+                Long companyId;
+                while ((companyId = ShardContext.call(target, () -> companyRepo.findNextDeletedId().orElse(null))) != null) {
+                    if (companies == 0) {
+                        progress = progress(PurgeProgress.State.RUNNING, startedAt, null, chunks, purged, null);
+                    }
+                    Long id = companyId;
+                    int deleted;
+                    while ((deleted = ShardContext.call(target,
+                            () -> transactionTemplate.execute(status -> purgeChunk(id)))) > 0) {
+                        chunks++;
+                        purged += deleted;
+                        Counter.builder("catalog.companies.purged.rows")
+                                .description("Rows of deleted companies removed by the purge job")
+                                .register(meterRegistry)
+                                .increment(deleted);
+                        progress = progress(PurgeProgress.State.RUNNING, startedAt, null, chunks, purged, null);
+                        // Let other transactions through before locking the next chunk
+                        Thread.sleep(pauseMillis);
+                    }
+                    companies++;
+                }
+            }
+            if (companies > 0) {
+                progress = progress(PurgeProgress.State.COMPLETED, startedAt, Instant.now(), chunks, purged, null);
+                log.info("Purged {} deleted companies, {} rows in {} chunks", companies, purged, chunks);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            progress = progress(PurgeProgress.State.FAILED, startedAt, Instant.now(), chunks, purged, "interrupted");
+        } catch (RuntimeException e) {
+            progress = progress(PurgeProgress.State.FAILED, startedAt, Instant.now(), chunks, purged, e.getMessage());
+            log.error("Purge of deleted companies failed after {} rows", purged, e);
+        } finally {
+            running.set(false);
+        }
+        return progress;
+    }
+
+    /**
+     * @return the progress of the current or last run that found deleted companies
+     */
+    public PurgeProgress getProgress() {
+        return progress;
+    }
+
+    /**
+     * Removes the next chunk of a deleted company's rows, run inside its own transaction:
+     * products while it has any, then categories, then the company itself. A category another company
+     * still lists only loses its link to this one, and keeps its products.
+     * @return the number of removed rows, 0 once nothing is left
+     */
+    private int purgeChunk(Long companyId) {
+        List<Long> codes = productRepo.findUnsharedCodesOfAnyCompany(companyId, chunkSize);
+        if (!codes.isEmpty()) {
+            return productRepo.deleteByCodes(codes);
+        }
+
+        List<Long> categoryIds = categoryRepo.findIdsOfAnyCompany(companyId, chunkSize);
+        if (!categoryIds.isEmpty()) {
+            List<Long> owned = new ArrayList<>(categoryIds);
+            owned.removeAll(categoryRepo.findIdsListedByOtherCompanies(companyId, categoryIds));
+            // One row per category, whether it is deleted or only unlinked
+            int unlinked = categoryRepo.unlinkFromCompany(companyId, categoryIds);
+            if (!owned.isEmpty()) {
+                categorySummaryRepo.deleteByCategoryIds(owned);
+                categoryRepo.deleteByIds(owned);
+            }
+            return unlinked;
+        }
+
+        return companyRepo.deleteMarked(companyId);
+    }
+
+    private static PurgeProgress progress(PurgeProgress.State state, Instant startedAt, Instant finishedAt,
+                                          int chunks, long purged, String error) {
+        Duration elapsed = Duration.between(startedAt, finishedAt != null ? finishedAt : Instant.now());
+        double rowsPerSecond = elapsed.isZero() ? 0 : purged * 1000.0 / Math.max(1, elapsed.toMillis());
+        return new PurgeProgress(state, null, startedAt, finishedAt, chunks, purged, rowsPerSecond, error);
+    }
+}
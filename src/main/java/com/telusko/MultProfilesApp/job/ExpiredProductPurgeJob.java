@@ -0,0 +1,168 @@
+package com.telusko.MultProfilesApp.job;
+
+import com.telusko.MultProfilesApp.cache.CatalogCache;
+import com.telusko.MultProfilesApp.dao.ExpiredProduct;
+import com.telusko.MultProfilesApp.dao.ProductRepo;
+import com.telusko.MultProfilesApp.service.impl.CatalogStatsServiceImpl;
+import com.telusko.MultProfilesApp.service.impl.ProductSearchServiceImpl;
+import com.telusko.MultProfilesApp.shard.ShardContext;
+import com.telusko.MultProfilesApp.shard.ShardRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Deletes the products whose expiry date has passed, a chunk at a time.
+ * Each chunk is found, unlinked from its category and deleted in its own short transaction, with a pause
+ * between chunks so other writers are not held up by long lock holds.
+ * The job keeps no checkpoint: the expired products still in the database are the remaining work,
+ * so a run interrupted by a crash is simply continued by the next one.
+ */
+@Component
+public class ExpiredProductPurgeJob {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpiredProductPurgeJob.class);
+
+    @Autowired
+    private ProductRepo productRepo;
+    @Autowired
+    private CatalogCache catalogCache;
+    @Autowired
+    private CatalogStatsServiceImpl catalogStats;
+    @Autowired
+    private ProductSearchServiceImpl productSearch;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    // Only present in the sharded profile
+    @Autowired(required = false)
+    private ShardRouter shardRouter;
+
+    @Value("${app.purge.chunk-size}")
+    private int chunkSize;
+    @Value("${app.purge.pause-ms}")
+    private long pauseMillis;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile PurgeProgress progress = PurgeProgress.idle();
+
+    /**
+     * Scheduled run, purging the products that expired before today.
+     */
+    @Scheduled(cron = "${app.purge.cron}")
+    public void purgeExpiredProducts() {
+        purge(LocalDate.now());
+    }
+
+    /**
+     * Deletes every product that expired before the given date.
+     * Returns right away with the current progress if a run is already in progress.
+     * @param cutoff the first date products are still valid on
+     * @return the progress at the end of the run
+     */
+    public PurgeProgress purge(LocalDate cutoff) {
+        if (!running.compareAndSet(false, true)) {
+            return progress;
+        }
+
+        Instant startedAt = Instant.now();
+        int chunks = 0;
+        long purged = 0;
+        try {
+            progress = progress(PurgeProgress.State.RUNNING, cutoff, startedAt, null, chunks, purged, null);
+            int shards = shardRouter != null ? shardRouter.getShardCount() : 1;
+            for (int shard = 0; shard < shards; shard++) {
+                Integer target = shardRouter != null ? shard : null;
+                Integer deleted;
+                // A chunk can delete nothing when all of its products had their expiry extended meanwhile,
+                // the run only ends once no expired product is found
+                while ((deleted = ShardContext.call(target,
+                        () -> transactionTemplate.execute(status -> purgeChunk(cutoff)))) != null) {
+                    chunks++;
+                    purged += deleted;
+                    Counter.builder("catalog.products.purged")
+                            .description("Expired products deleted by the purge job")
+                            .register(meterRegistry)
+                            .increment(deleted);
+                    progress = progress(PurgeProgress.State.RUNNING, cutoff, startedAt, null, chunks, purged, null);
+                    // Let other transactions through before locking the next chunk
+                    Thread.sleep(pauseMillis);
+                }
+            }
+            progress = progress(PurgeProgress.State.COMPLETED, cutoff, startedAt, Instant.now(), chunks, purged, null);
+            log.info("Purged {} products that expired before {} in {} chunks", purged, cutoff, chunks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            progress = progress(PurgeProgress.State.FAILED, cutoff, startedAt, Instant.now(), chunks, purged, "interrupted");
+        } catch (RuntimeException e) {
+            progress = progress(PurgeProgress.State.FAILED, cutoff, startedAt, Instant.now(), chunks, purged, e.getMessage());
+            log.error("Purge of products that expired before {} failed after {} products", cutoff, purged, e);
+        } finally {
+            running.set(false);
+        }
+        return progress;
+    }
+
+    /**
+     * @return the progress of the current or last run
+     */
+    public PurgeProgress getProgress() {
+        return progress;
+    }
+
+    /**
+     * Deletes the next chunk of expired products, run inside its own transaction.
+     * @return the number of deleted products, or null when no expired product was found
+     */
+    private Integer purgeChunk(LocalDate cutoff) {
+        List<ExpiredProduct> expired = productRepo.findExpired(cutoff, Limit.of(chunkSize));
+        if (expired.isEmpty()) {
+            return null;
+        }
+
+        Set<Long> codes = new LinkedHashSet<>();
+        Set<Long> categoryIds = new LinkedHashSet<>();
+        for (ExpiredProduct product : expired) {
+            codes.add(product.getCode());
+            categoryIds.add(product.getCategoryId());
+            if (product.getCompanyId() != null) {
+                catalogCache.evictProduct(product.getCompanyId(), product.getCategoryId(), product.getCode());
+            }
+        }
+        int deleted = productRepo.deleteExpired(codes, cutoff);
+        // Products whose expiry date was extended in the meantime are kept, so the touched categories are recounted
+        catalogStats.recompute(categoryIds);
+        if (deleted == codes.size()) {
+            for (ExpiredProduct product : expired) {
+                if (product.getCompanyId() != null) {
+                    productSearch.productRemoved(product.getCompanyId(), product.getCode());
+                }
+            }
+        }
+        // Otherwise the stale names only cost a lookup until the next rebuild of the search index
+        return deleted;
+    }
+
+    private static PurgeProgress progress(PurgeProgress.State state, LocalDate cutoff, Instant startedAt,
+                                          Instant finishedAt, int chunks, long purged, String error) {
+        Duration elapsed = Duration.between(startedAt, finishedAt != null ? finishedAt : Instant.now());
+        double rowsPerSecond = elapsed.isZero() ? 0 : purged * 1000.0 / Math.max(1, elapsed.toMillis());
+        return new PurgeProgress(state, cutoff, startedAt, finishedAt, chunks, purged, rowsPerSecond, error);
+    }
+}
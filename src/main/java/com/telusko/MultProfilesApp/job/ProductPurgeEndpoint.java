@@ -0,0 +1,43 @@
+package com.telusko.MultProfilesApp.job;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Actuator endpoint at /actuator/productpurge reporting the progress of the expired product purge,
+ * and starting a run on demand with a POST.
+ */
+@Component
+@Endpoint(id = "productpurge")
+public class ProductPurgeEndpoint {
+
+    @Autowired
+    private ExpiredProductPurgeJob purgeJob;
+    @Autowired
+    private TaskScheduler taskScheduler;
+
+    @ReadOperation
+    public PurgeProgress progress() {
+        return purgeJob.getProgress();
+    }
+
+    /**
+     * Starts a run in the background.
+     * @param cutoff the first date products are still valid on, today if omitted
+     * @return the progress when the run was requested
+     */
+    @WriteOperation
+    public PurgeProgress purge(@Nullable LocalDate cutoff) {
+        LocalDate date = cutoff != null ? cutoff : LocalDate.now();
+        taskScheduler.schedule(() -> purgeJob.purge(date), Instant.now());
+        return purgeJob.getProgress();
+    }
+}
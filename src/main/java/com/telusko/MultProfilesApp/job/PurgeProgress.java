@@ -0,0 +1,33 @@
+package com.telusko.MultProfilesApp.job;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Snapshot of the current or last run of a purge job.
+ */
+@AllArgsConstructor
+@Getter
+@ToString
+public class PurgeProgress {
+
+    public enum State { IDLE, RUNNING, COMPLETED, FAILED }
+
+    private final State state;
+    // Rows older than this are purged; null for purges without a cutoff
+    private final LocalDate cutoff;
+    private final Instant startedAt;
+    private final Instant finishedAt;
+    private final int chunks;
+    private final long purged;
+    private final double rowsPerSecond;
+    private final String error;
+
+    public static PurgeProgress idle() {
+        return new PurgeProgress(State.IDLE, null, null, null, 0, 0, 0, null);
+    }
+}
@@ -0,0 +1,48 @@
+package com.telusko.MultProfilesApp.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the SQL statements Hibernate prepares into the count bound to the current thread, so the statements
+ * issued while serving one request can be recorded by {@link SqlStatementMetricsFilter}. The filter binds the
+ * request's count to the request thread, and the application task executor to the threads of its async work.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<AtomicInteger> CURRENT = new ThreadLocal<>();
+
+    /**
+     * Counts the statement, if a count is bound, and passes it on unchanged.
+     * @param sql the statement about to be prepared
+     * @return the same statement
+     */
+    @Override
+    public String inspect(String sql) {
+        AtomicInteger count = CURRENT.get();
+        if (count != null) {
+            count.incrementAndGet();
+        }
+        return sql;
+    }
+
+    /**
+     * @return the count bound to the current thread, or null if there is none
+     */
+    public static AtomicInteger current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Binds a count to the current thread, null unbinds it.
+     * @param count the count statements are added to
+     */
+    public static void bind(AtomicInteger count) {
+        if (count == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(count);
+        }
+    }
+}
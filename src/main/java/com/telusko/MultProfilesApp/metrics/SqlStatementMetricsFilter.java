@@ -0,0 +1,88 @@
+package com.telusko.MultProfilesApp.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.metrics.http.Outcome;
+import org.springframework.http.server.observation.ServerRequestObservationContext;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.filter.ServerHttpObservationFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records how many SQL statements each request issued as the {@code http.server.sql.statements}
+ * distribution summary, tagged like {@code http.server.requests} by endpoint, method, outcome and error.
+ * The count is kept on the request: statements of async work, such as the export stream or the queries run on
+ * every shard, are added to it, and an async request is recorded once its last dispatch ends.
+ * The reactive API is left out, its statements go through R2DBC rather than Hibernate.
+ */
+@Component
+public class SqlStatementMetricsFilter extends OncePerRequestFilter {
+
+    public static final String METRIC_NAME = "http.server.sql.statements";
+    private static final String COUNT = SqlStatementMetricsFilter.class.getName() + ".count";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().startsWith(request.getContextPath() + "/reactive/");
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        AtomicInteger count = (AtomicInteger) request.getAttribute(COUNT);
+        if (count == null) {
+            count = new AtomicInteger();
+            request.setAttribute(COUNT, count);
+        }
+        SqlStatementCounter.bind(count);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            SqlStatementCounter.bind(null);
+            if (!request.isAsyncStarted()) {
+                DistributionSummary.builder(METRIC_NAME)
+                        .description("SQL statements issued while serving a request")
+                        .tag("uri", uri(request))
+                        .tag("method", request.getMethod())
+                        .tag("outcome", Outcome.forStatus(response.getStatus()).name())
+                        .tag("error", error(request))
+                        .publishPercentileHistogram()
+                        .register(meterRegistry)
+                        .record(count.get());
+            }
+        }
+    }
+
+    private static String uri(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern != null ? pattern.toString() : "UNKNOWN";
+    }
+
+    /**
+     * The exception reported by GlobalExceptionHandler on the request observation, if any.
+     */
+    private static String error(HttpServletRequest request) {
+        return ServerHttpObservationFilter.findObservationContext(request)
+                .map(ServerRequestObservationContext::getError)
+                .map(error -> error.getClass().getSimpleName())
+                .orElse("none");
+    }
+}
@@ -0,0 +1,23 @@
+package com.telusko.MultProfilesApp.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * Outcome of a batch insert: how many records were stored, how many were rejected and why.
+ * Each error is prefixed with the zero based position of the rejected record in the request.
+ */
+@AllArgsConstructor
+@Getter
+@Setter
+@ToString
+public class BatchResult {
+
+    private int inserted;
+    private int rejected;
+    private List<String> errors;
+}
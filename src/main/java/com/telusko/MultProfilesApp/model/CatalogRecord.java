@@ -0,0 +1,44 @@
+package com.telusko.MultProfilesApp.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * One line of a catalog import or export file: a product together with the names of its category and company.
+ * A line without product fields only makes sure its company and category exist.
+ * Companies are identified by name, categories by name within their company and products by name.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@ToString
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CatalogRecord {
+
+    /** Column order of the CSV format, also the field names of the NDJSON format. */
+    public static final List<String> COLUMNS = List.of(
+            "company", "city", "state", "category", "categoryType", "product", "price", "mfgDate", "expiryDate");
+
+    private String company;
+    private String city;
+    private String state;
+
+    private String category;
+    private String categoryType;
+
+    // Product code, written by the export to resume from and ignored by the import
+    private Long code;
+    private String product;
+    private Double price;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd")
+    private LocalDate mfgDate;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd")
+    private LocalDate expiryDate;
+}
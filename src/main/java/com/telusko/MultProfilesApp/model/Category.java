@@ -1,13 +1,16 @@
 package com.telusko.MultProfilesApp.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.OptimisticLock;
 
-import java.util.List;
+import java.util.Set;
 
 @Entity
-@Table(name = "CATEGORIES")
+@Table(name = "CATEGORIES", indexes = @Index(name = "IDX_CATEGORIES_NAME", columnList = "NAME"))
 @AllArgsConstructor
 @NoArgsConstructor
 @Getter
@@ -24,11 +27,22 @@ public class Category {
     @Column(name = "LAST_NAME", nullable = false)
     private String type;
 
+    // Optimistic locking, and the entity tag of the resource; never taken from a request body
+    @Version
+    @Column(name = "VERSION", nullable = false)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private long version;
+
+    // The inverse side of Product.category: the products' CATEGORY_ID column is the only link,
+    // so product writes never touch the category or a join table.
+    // Not part of the category's representation, so adding products leaves its version alone
     @JsonIgnore
-    @OneToMany(cascade = CascadeType.ALL)
-    private List<Product> products;
+    @OptimisticLock(excluded = true)
+    @BatchSize(size = 50)
+    @OneToMany(mappedBy = "category", cascade = CascadeType.ALL)
+    private Set<Product> products;
 
     @JsonIgnore
     @ManyToMany(mappedBy = "categories")
-    private List<Company> companies;
+    private Set<Company> companies;
 }
@@ -0,0 +1,43 @@
+package com.telusko.MultProfilesApp.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Running product figures of a category, kept up to date by the product writes when
+ * app.stats.summary-table is enabled. Only additive figures are stored, so a write adjusts
+ * its category's row instead of reading the products again.
+ */
+@Entity
+@Table(name = "CATEGORY_STATS")
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@ToString
+public class CategorySummary {
+
+    // Not a foreign key, so categories are deleted the same way with the table enabled or not
+    @Id
+    @Column(name = "CATEGORY_ID")
+    private Long categoryId;
+
+    @Column(name = "PRODUCT_COUNT", nullable = false)
+    private long productCount;
+
+    @Column(name = "PRICE_SUM", nullable = false)
+    private double priceSum;
+
+    @Column(name = "MIN_PRICE")
+    private Double minPrice;
+
+    @Column(name = "MAX_PRICE")
+    private Double maxPrice;
+}
@@ -1,12 +1,21 @@
 package com.telusko.MultProfilesApp.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.SQLRestriction;
 
-import java.util.List;
+import java.time.LocalDateTime;
+import java.util.Set;
 
 @Entity
-@Table(name = "COMPANY")
+// The deleted companies in the order DeletedCompanyPurgeJob removes them
+@Table(name = "COMPANY", indexes = @Index(name = "IDX_COMPANY_DELETED_AT", columnList = "DELETED_AT, ID"))
+// Deleted companies are invisible to every query and join until DeletedCompanyPurgeJob removes them
+@SQLRestriction("DELETED_AT is null")
 @AllArgsConstructor
 @NoArgsConstructor
 @Getter
@@ -27,14 +36,35 @@ public class Company {
     @Column(name = "STATE", nullable = false)
     private String state;
 
+    // Optimistic locking, and the entity tag of the resource; never taken from a request body
+    @Version
+    @Column(name = "VERSION", nullable = false)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private long version;
+
+    // Set by a delete, which only marks the company; never taken from a request body
+    @JsonIgnore
+    @Column(name = "DELETED_AT")
+    private LocalDateTime deletedAt;
+
+    // Left out of the reactive API rows, which are read without their categories
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    // Initialize the categories of a whole listing page in one query instead of one per company
+    @BatchSize(size = CursorPage.MAX_LIMIT)
+    // A set rather than a bag: adding or removing a category writes that one join row
+    // instead of deleting and re-inserting all of the company's rows
+    // Ordered so exports and listings keep the order categories were created in
+    @OrderBy("id")
     @ManyToMany(cascade = CascadeType.ALL)
     @JoinTable(name = "COMPANY_CATEGORIES_TBL",
+        // The primary key starts with the category, the finders start from the company
+        indexes = @Index(name = "IDX_COMPANY_CATEGORIES_COMPANY", columnList = "company_id, category_id"),
         joinColumns = {
                 @JoinColumn(name = "company_id", referencedColumnName = "id")
         },
         inverseJoinColumns = {
                 @JoinColumn(name = "category_id", referencedColumnName = "id")
         })
-    private List<Category> categories;
+    private Set<Category> categories;
 
 }
@@ -0,0 +1,50 @@
+package com.telusko.MultProfilesApp.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset (cursor) paginated listing, ordered by primary key.
+ * The next page is requested with {@code after = nextCursor}; a null cursor means there are no more rows.
+ */
+@AllArgsConstructor
+@Getter
+@Setter
+@ToString
+public class CursorPage<T> {
+
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 500;
+
+    private List<T> items;
+    private Long nextCursor;
+
+    /**
+     * Clamps a requested page size into the range accepted by the listing endpoints.
+     * @param limit the requested page size
+     * @return a page size between 1 and MAX_LIMIT
+     */
+    public static int clampLimit(int limit) {
+        return Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+
+    /**
+     * Builds a page from rows fetched with {@code limit + 1}, the extra row only signalling that another page exists.
+     * @param rows the rows fetched, at most limit + 1
+     * @param limit the page size
+     * @param key extracts the primary key used as cursor
+     * @return the page with its next cursor
+     */
+    public static <T> CursorPage<T> of(List<T> rows, int limit, Function<T, Long> key) {
+        if (rows.size() > limit) {
+            List<T> items = rows.subList(0, limit);
+            return new CursorPage<>(items, key.apply(items.get(limit - 1)));
+        }
+        return new CursorPage<>(rows, null);
+    }
+}
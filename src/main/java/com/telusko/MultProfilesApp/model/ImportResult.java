@@ -0,0 +1,24 @@
+package com.telusko.MultProfilesApp.model;
+
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a catalog import: how many companies, categories and products were created and how many lines
+ * were rejected. Each error is prefixed with the one based line number in the file; only the first ones are kept.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@ToString
+public class ImportResult {
+
+    private long companies;
+    private long categories;
+    private long products;
+    private long rejected;
+    private List<String> errors = new ArrayList<>();
+}
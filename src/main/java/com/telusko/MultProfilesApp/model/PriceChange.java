@@ -0,0 +1,32 @@
+package com.telusko.MultProfilesApp.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.*;
+
+import java.time.LocalDate;
+
+/**
+ * A price change applied to many products of a category at once: either a percentage or an absolute amount,
+ * negative to lower the prices, and optional filters on the current price and the expiry date.
+ * Every bound is inclusive and a missing field does not filter.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@ToString
+public class PriceChange {
+
+    // Percentage added to each price, -10 for a 10% discount
+    private Double percent;
+    // Amount added to each price
+    private Double amount;
+
+    private Double minPrice;
+    private Double maxPrice;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd")
+    private LocalDate expiryFrom;
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd")
+    private LocalDate expiryTo;
+}
@@ -1,17 +1,25 @@
 package com.telusko.MultProfilesApp.model;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
 
-import java.util.Date;
+import java.time.LocalDate;
 
 
 @Entity
-@Table(name = "PRODUCTS")
+// Indexes for the range filters of the product search, the products of a category in code order,
+// and the stats per category read from the index alone
+@Table(name = "PRODUCTS", indexes = {
+        @Index(name = "IDX_PRODUCTS_EXPIRY_DATE", columnList = "EXPIRY_DATE"),
+        @Index(name = "IDX_PRODUCTS_PRICE", columnList = "PRICE"),
+        @Index(name = "IDX_PRODUCTS_CATEGORY_CODE", columnList = "CATEGORY_ID, PRODUCT_CODE"),
+        @Index(name = "IDX_PRODUCTS_CATEGORY_EXPIRY", columnList = "CATEGORY_ID, EXPIRY_DATE, PRICE")
+})
 @NoArgsConstructor
 @Getter
 @Setter
@@ -19,8 +27,10 @@ import java.util.Date;
 public class Product {
 
 
+    // Sequence ids are allocated in blocks of 50 so inserts can be sent as JDBC batches
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_seq")
+    @SequenceGenerator(name = "product_seq", sequenceName = "PRODUCT_SEQ", allocationSize = 50)
     @Column(name = "PRODUCT_CODE")
     private Long code;
 
@@ -31,20 +41,26 @@ public class Product {
     private Double price;
 
     @Column(name = "MFG_DATE", nullable = false)
-    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy=MM-dd")
-    @Temporal(value = TemporalType.DATE)
-    private String mfgDate;
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd")
+    private LocalDate mfgDate;
 
 
-    @Column(name = "EXPIRY_DATE", nullable = false, columnDefinition = "Date")
-    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy=MM-dd")
-    @Temporal(value = TemporalType.DATE)
-    private String expiryDate;
+    @Column(name = "EXPIRY_DATE", nullable = false)
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd")
+    private LocalDate expiryDate;
 
-    @ManyToOne(cascade = CascadeType.ALL)
+    // Optimistic locking, and the entity tag of the resource; never taken from a request body
+    @Version
+    @Column(name = "VERSION", nullable = false)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private long version;
+
+    // No cascade: the category outlives its products, and cascading through it
+    // would walk the whole product list of the category on every product write
+    @ManyToOne
     private Category category;
 
-    public Product(String name, Double price, String mfgDate, String expiryDate, Category category) {
+    public Product(String name, Double price, LocalDate mfgDate, LocalDate expiryDate, Category category) {
         this.name = name;
         this.price = price;
         this.mfgDate = mfgDate;
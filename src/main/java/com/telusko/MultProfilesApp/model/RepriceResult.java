@@ -0,0 +1,18 @@
+package com.telusko.MultProfilesApp.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Outcome of a bulk price change: how many products got a new price.
+ */
+@AllArgsConstructor
+@Getter
+@Setter
+@ToString
+public class RepriceResult {
+
+    private int updated;
+}
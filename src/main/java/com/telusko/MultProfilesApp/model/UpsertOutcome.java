@@ -0,0 +1,23 @@
+package com.telusko.MultProfilesApp.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * What an upsert did with one record, identified by its name.
+ */
+@AllArgsConstructor
+@Getter
+@Setter
+@ToString
+public class UpsertOutcome {
+
+    public enum Status { CREATED, UPDATED, UNCHANGED, REJECTED }
+
+    private String name;
+    private Status status;
+    // Only set for a rejected record
+    private String error;
+}
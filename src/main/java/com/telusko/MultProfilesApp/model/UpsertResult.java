@@ -0,0 +1,39 @@
+package com.telusko.MultProfilesApp.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * Outcome of a batch upsert: how many records were created, updated, unchanged or rejected,
+ * and the outcome of each record in the order of the request.
+ */
+@AllArgsConstructor
+@Getter
+@Setter
+@ToString
+public class UpsertResult {
+
+    private int created;
+    private int updated;
+    private int unchanged;
+    private int rejected;
+    private List<UpsertOutcome> records;
+
+    /**
+     * @param records the outcome of each record, in request order
+     * @return the result counting the outcomes
+     */
+    public static UpsertResult of(List<UpsertOutcome> records) {
+        int[] counts = new int[UpsertOutcome.Status.values().length];
+        records.forEach(record -> counts[record.getStatus().ordinal()]++);
+        return new UpsertResult(counts[UpsertOutcome.Status.CREATED.ordinal()],
+                counts[UpsertOutcome.Status.UPDATED.ordinal()],
+                counts[UpsertOutcome.Status.UNCHANGED.ordinal()],
+                counts[UpsertOutcome.Status.REJECTED.ordinal()],
+                records);
+    }
+}
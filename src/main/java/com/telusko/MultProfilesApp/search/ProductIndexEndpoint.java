@@ -0,0 +1,40 @@
+package com.telusko.MultProfilesApp.search;
+
+import com.telusko.MultProfilesApp.service.impl.ProductSearchServiceImpl;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+
+/**
+ * Actuator endpoint at /actuator/productindex reporting the size of the product name index against its
+ * memory bound, and rebuilding it on demand with a POST.
+ */
+@Component
+@Endpoint(id = "productindex")
+public class ProductIndexEndpoint {
+
+    @Autowired
+    private ProductSearchServiceImpl productSearchService;
+    @Autowired
+    private TaskScheduler taskScheduler;
+
+    @ReadOperation
+    public ProductIndexStatus status() {
+        return productSearchService.getStatus();
+    }
+
+    /**
+     * Starts a rebuild in the background.
+     * @return the status when the rebuild was requested
+     */
+    @WriteOperation
+    public ProductIndexStatus rebuild() {
+        taskScheduler.schedule(productSearchService::rebuild, Instant.now());
+        return productSearchService.getStatus();
+    }
+}
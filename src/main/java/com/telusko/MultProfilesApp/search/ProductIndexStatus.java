@@ -0,0 +1,28 @@
+package com.telusko.MultProfilesApp.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Instant;
+
+/**
+ * Snapshot of the product name index.
+ */
+@AllArgsConstructor
+@Getter
+@ToString
+public class ProductIndexStatus {
+
+    // False until the first build finished; searches go to the database meanwhile
+    private final boolean ready;
+    // False if products were left out to stay under the memory bound; searches go to the database then
+    private final boolean complete;
+    private final int companies;
+    private final long products;
+    private final long tokens;
+    private final long estimatedBytes;
+    private final long maxBytes;
+    private final Instant builtAt;
+    private final long buildMillis;
+}
@@ -0,0 +1,650 @@
+package com.telusko.MultProfilesApp.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index of product names, partitioned by company. Names are split into lower-case tokens
+ * of letters and digits, and each token lists the slots of the products whose name contains it.
+ * A query matches the products that have, for every query token, a name token equal to it or starting with it.
+ * Matches are ranked by exact tokens before prefixes, then names starting with the query, then shorter names.
+ * <p>
+ * Slots are only appended: removing or renaming a product leaves a dead slot that searches skip, and a
+ * partition is compacted once half of its slots are dead. The estimated size of all partitions stays under
+ * a bound; a product that would exceed it is left out and the index reports itself incomplete.
+ * Thread safe, with one read/write lock per company.
+ */
+public class ProductNameIndex {
+
+    // Index tokens expanded per query token, in token order so an exact match comes first
+    private static final int MAX_PREFIX_TERMS = 64;
+    // Matches ranked per query, four times the largest page; a broader query is ranked among its first matches only
+    private static final int MAX_CANDIDATES = 2_000;
+    private static final int MAX_QUERY_TOKENS = 8;
+    private static final int MIN_DEAD_TO_COMPACT = 1024;
+    // Postings stepped over one by one before galloping, the next slot looked up is usually close
+    private static final int LINEAR_SEEK = 8;
+    // Match flags of a query token, see TermPostings.matchAscending
+    private static final int PREFIX = 1;
+    private static final int EXACT = 2;
+    private static final int LEADING = 4;
+    // Layout of a posting: the slot, the length of the name and a flag for the first token of the name
+    private static final int POSTING_SLOT_SHIFT = 17;
+    private static final int MAX_NAME_LENGTH = 0xFFFF;
+
+    // Estimated heap use: the slot columns, the code lookup entry and the name itself
+    private static final long SLOT_BYTES = 8 + 8 + 4 + 72 + 40;
+    private static final long POSTING_BYTES = 8;
+    // Tree entry, token string and an empty posting list
+    private static final long TOKEN_BYTES = 40 + 40 + 48;
+    private static final long PARTITION_BYTES = 512;
+
+    private final Map<Long, Partition> partitions = new ConcurrentHashMap<>();
+    private final AtomicLong estimatedBytes = new AtomicLong();
+    private final long maxBytes;
+    private volatile boolean complete = true;
+
+    /**
+     * @param maxBytes the bound of the estimated heap use
+     */
+    public ProductNameIndex(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Adds a product, or replaces it when its code is already indexed for the company.
+     * @param companyId the ID of the company
+     * @param categoryId the ID of the product's category
+     * @param code the code of the product
+     * @param name the name of the product, a product without one is only removed
+     */
+    public void add(long companyId, long categoryId, long code, String name) {
+        while (true) {
+            Partition partition = partitions.computeIfAbsent(companyId, id -> {
+                estimatedBytes.addAndGet(PARTITION_BYTES);
+                return new Partition();
+            });
+            partition.lock.writeLock().lock();
+            try {
+                if (partition.removed) {
+                    // The company was removed after the lookup, its bytes are no longer counted
+                    continue;
+                }
+                Integer existing = partition.slotByCode.get(code);
+                if (existing != null && partition.categoryIds[existing] == categoryId
+                        && partition.names[existing].equals(name)) {
+                    // Unchanged, replacing it would only leave a dead slot
+                    return;
+                }
+                partition.remove(code);
+                if (name == null) {
+                    // Nothing to match
+                    return;
+                }
+                List<String> tokens = tokenize(name);
+                // Counted as if every token were new, the exact figure is known once they are added
+                long upperBound = SLOT_BYTES + name.length() + tokens.size() * (POSTING_BYTES + TOKEN_BYTES)
+                        + tokens.stream().mapToInt(String::length).sum();
+                if (estimatedBytes.get() + upperBound > maxBytes) {
+                    complete = false;
+                    return;
+                }
+                estimatedBytes.addAndGet(partition.append(categoryId, code, name, tokens));
+                compactIfNeeded(partition);
+                return;
+            } finally {
+                partition.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * @param companyId the ID of the company
+     * @param code the code of the product to remove, ignored when not indexed
+     */
+    public void remove(long companyId, long code) {
+        Partition partition = partitions.get(companyId);
+        if (partition == null) {
+            return;
+        }
+        partition.lock.writeLock().lock();
+        try {
+            if (partition.removed) {
+                return;
+            }
+            partition.remove(code);
+            compactIfNeeded(partition);
+        } finally {
+            partition.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the products of a category.
+     * @param companyId the ID of the company
+     * @param categoryId the ID of the category
+     */
+    public void removeCategory(long companyId, long categoryId) {
+        Partition partition = partitions.get(companyId);
+        if (partition == null) {
+            return;
+        }
+        partition.lock.writeLock().lock();
+        try {
+            if (partition.removed) {
+                return;
+            }
+            for (int slot = 0; slot < partition.size; slot++) {
+                if (partition.names[slot] != null && partition.categoryIds[slot] == categoryId) {
+                    partition.remove(partition.codes[slot]);
+                }
+            }
+            compactIfNeeded(partition);
+        } finally {
+            partition.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the products of a company.
+     * @param companyId the ID of the company
+     */
+    public void removeCompany(long companyId) {
+        Partition partition = partitions.remove(companyId);
+        if (partition != null) {
+            partition.lock.writeLock().lock();
+            try {
+                // Once unmapped a partition takes no more changes, so the bytes subtracted are all it counted
+                partition.removed = true;
+                estimatedBytes.addAndGet(-partition.bytes - PARTITION_BYTES);
+            } finally {
+                partition.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Finds the products of a company whose names match the query.
+     * @param companyId the ID of the company
+     * @param query the words to look for, each one matching a whole word or the start of one
+     * @param limit the maximum number of products to return
+     * @return the codes of the best matches, best first
+     */
+    public List<Long> search(long companyId, String query, int limit) {
+        List<String> terms = tokenize(query);
+        Partition partition = partitions.get(companyId);
+        if (terms.isEmpty() || partition == null || limit <= 0) {
+            return List.of();
+        }
+        if (terms.size() > MAX_QUERY_TOKENS) {
+            terms = terms.subList(0, MAX_QUERY_TOKENS);
+        }
+
+        partition.lock.readLock().lock();
+        try {
+            // The query token with the fewest postings yields the candidates, the others are looked up in theirs
+            List<TermPostings> matchers = new ArrayList<>(terms.size());
+            TermPostings driver = null;
+            TermPostings first = null;
+            for (String term : terms) {
+                TermPostings postings = new TermPostings(term, prefixRange(partition, term));
+                if (postings.total == 0) {
+                    return List.of();
+                }
+                if (driver == null || postings.total < driver.total) {
+                    driver = postings;
+                }
+                if (first == null) {
+                    first = postings;
+                }
+                matchers.add(postings);
+            }
+            matchers.remove(driver);
+            // The rarest tokens reject a candidate soonest
+            matchers.sort(Comparator.comparingLong(matcher -> matcher.total));
+            TermPostings[] others = matchers.toArray(new TermPostings[0]);
+
+            TopRanked top = new TopRanked(Math.min(limit, MAX_CANDIDATES));
+            // A name with several tokens starting with the driver is met once per token, best match first
+            SlotSet offered = new SlotSet(MAX_CANDIDATES);
+            int candidates = 0;
+            for (int l = 0; l < driver.lists.length && candidates < MAX_CANDIDATES; l++) {
+                Postings list = driver.lists[l];
+                int driverScore = driver.isExact(l) ? EXACT : PREFIX;
+                // Each list is in ascending slot order, so the other lists are walked forward along it
+                for (TermPostings matcher : others) {
+                    matcher.rewind();
+                }
+                for (int i = 0; i < list.size && candidates < MAX_CANDIDATES; i++) {
+                    long posting = list.postings[i];
+                    int slot = (int) (posting >>> POSTING_SLOT_SHIFT);
+                    int score = driverScore;
+                    boolean leading = driver == first && (posting & 1) != 0;
+                    for (TermPostings matcher : others) {
+                        int match = matcher.matchAscending(slot);
+                        if (match == 0) {
+                            score = 0;
+                            break;
+                        }
+                        score += match & (EXACT | PREFIX);
+                        if (matcher == first) {
+                            leading = (match & LEADING) != 0;
+                        }
+                    }
+                    // Dead slots do not count against the candidates, or left uncompacted they would crowd out live ones
+                    if (score == 0 || partition.names[slot] == null) {
+                        continue;
+                    }
+                    candidates++;
+                    // The name starts with the first query token
+                    if (leading) {
+                        score++;
+                    }
+                    long rank = rank(score, (int) (posting >>> 1) & MAX_NAME_LENGTH, slot);
+                    if (top.accepts(rank) && offered.add(slot)) {
+                        top.offer(rank);
+                    }
+                }
+            }
+
+            List<Long> codes = new ArrayList<>();
+            for (long ranked : top.bestFirst()) {
+                codes.add(partition.codes[slotOf(ranked)]);
+            }
+            return codes;
+        } finally {
+            partition.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return false if products were left out to stay under the memory bound
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public long getEstimatedBytes() {
+        return estimatedBytes.get();
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public int getCompanies() {
+        return partitions.size();
+    }
+
+    /**
+     * @return the number of indexed products
+     */
+    public long getProducts() {
+        long products = 0;
+        for (Partition partition : partitions.values()) {
+            partition.lock.readLock().lock();
+            try {
+                products += partition.slotByCode.size();
+            } finally {
+                partition.lock.readLock().unlock();
+            }
+        }
+        return products;
+    }
+
+    /**
+     * @return the number of distinct tokens, counted per company
+     */
+    public long getTokens() {
+        long tokens = 0;
+        for (Partition partition : partitions.values()) {
+            partition.lock.readLock().lock();
+            try {
+                tokens += partition.tokens.size();
+            } finally {
+                partition.lock.readLock().unlock();
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Splits a text into distinct lower-case tokens of letters and digits, in order of appearance.
+     * @param text the text, may be null
+     * @return the tokens
+     */
+    static List<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (text != null) {
+            StringBuilder token = new StringBuilder();
+            for (int i = 0; i <= text.length(); i++) {
+                char c = i < text.length() ? text.charAt(i) : ' ';
+                if (Character.isLetterOrDigit(c)) {
+                    token.append(Character.toLowerCase(c));
+                } else if (!token.isEmpty()) {
+                    tokens.add(token.toString());
+                    token.setLength(0);
+                }
+            }
+        }
+        return new ArrayList<>(tokens);
+    }
+
+    private static SortedMap<String, Postings> prefixRange(Partition partition, String term) {
+        return partition.tokens.subMap(term, term + Character.MAX_VALUE);
+    }
+
+    /**
+     * Packs the ranking into one long, greater is better: the score, then the shorter name, then the older slot.
+     */
+    private static long rank(int score, int nameLength, int slot) {
+        return ((long) score << 48) | ((long) (MAX_NAME_LENGTH - nameLength) << 32)
+                | (Integer.MAX_VALUE - slot);
+    }
+
+    private static int slotOf(long ranked) {
+        return Integer.MAX_VALUE - (int) (ranked & 0xFFFFFFFFL);
+    }
+
+    private void compactIfNeeded(Partition partition) {
+        if (partition.dead >= MIN_DEAD_TO_COMPACT && partition.dead * 2 > partition.size) {
+            Partition compacted = new Partition();
+            long bytes = 0;
+            for (int slot = 0; slot < partition.size; slot++) {
+                if (partition.names[slot] != null) {
+                    bytes += compacted.append(partition.categoryIds[slot], partition.codes[slot],
+                            partition.names[slot], tokenize(partition.names[slot]));
+                }
+            }
+            estimatedBytes.addAndGet(bytes - partition.bytes);
+            partition.replaceWith(compacted, bytes);
+        }
+    }
+
+    /**
+     * The products of one company, in columns indexed by slot.
+     */
+    private static final class Partition {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private TreeMap<String, Postings> tokens = new TreeMap<>();
+        private Map<Long, Integer> slotByCode = new HashMap<>();
+        private long[] codes = new long[16];
+        private long[] categoryIds = new long[16];
+        // Null for a dead slot
+        private String[] names = new String[16];
+        private int size;
+        private int dead;
+        private long bytes;
+        // Set when the company is removed, an add that looked the partition up before then retries
+        private boolean removed;
+
+        /**
+         * @return the estimated bytes added
+         */
+        private long append(long categoryId, long code, String name, List<String> nameTokens) {
+            if (size == codes.length) {
+                codes = Arrays.copyOf(codes, size * 2);
+                categoryIds = Arrays.copyOf(categoryIds, size * 2);
+                names = Arrays.copyOf(names, size * 2);
+            }
+            int slot = size++;
+            codes[slot] = code;
+            categoryIds[slot] = categoryId;
+            names[slot] = name;
+            slotByCode.put(code, slot);
+
+            long added = SLOT_BYTES + name.length();
+            for (int t = 0; t < nameTokens.size(); t++) {
+                String token = nameTokens.get(t);
+                Postings list = tokens.get(token);
+                if (list == null) {
+                    list = new Postings();
+                    tokens.put(token, list);
+                    added += TOKEN_BYTES + token.length();
+                }
+                list.add(slot, name.length(), t == 0);
+                added += POSTING_BYTES;
+            }
+            bytes += added;
+            return added;
+        }
+
+        private void remove(long code) {
+            Integer slot = slotByCode.remove(code);
+            if (slot != null) {
+                names[slot] = null;
+                dead++;
+            }
+        }
+
+        private void replaceWith(Partition compacted, long compactedBytes) {
+            tokens = compacted.tokens;
+            slotByCode = compacted.slotByCode;
+            codes = compacted.codes;
+            categoryIds = compacted.categoryIds;
+            names = compacted.names;
+            size = compacted.size;
+            dead = 0;
+            bytes = compactedBytes;
+        }
+    }
+
+    /**
+     * The slots of one token, in ascending order since slots are only appended. Each posting also carries
+     * what the ranking needs, so a search does not read the slot columns: the length of the name, and
+     * in the low bit whether the token is the first of the name.
+     */
+    private static final class Postings {
+        private long[] postings = new long[4];
+        private int size;
+
+        private void add(int slot, int nameLength, boolean leading) {
+            if (size == postings.length) {
+                postings = Arrays.copyOf(postings, size * 2);
+            }
+            postings[size++] = (long) slot << POSTING_SLOT_SHIFT
+                    | (long) Math.min(nameLength, MAX_NAME_LENGTH) << 1 | (leading ? 1 : 0);
+        }
+
+        /**
+         * Steps, then gallops forward from a position to the first posting of a slot not below the given one.
+         * @return the position, size if every slot from there is below it
+         */
+        private int seek(int from, int slot) {
+            long target = (long) slot << POSTING_SLOT_SHIFT;
+            for (int end = Math.min(from + LINEAR_SEEK, size); from < end; from++) {
+                if (postings[from] >= target) {
+                    return from;
+                }
+            }
+            if (from >= size || postings[from] >= target) {
+                return from;
+            }
+            // postings[low] is below the slot, and so is every posting before it
+            int low = from;
+            int step = 1;
+            int high = from + 1;
+            while (high < size && postings[high] < target) {
+                low = high;
+                step <<= 1;
+                high = low + step;
+            }
+            high = Math.min(high, size);
+            low++;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (postings[mid] < target) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * The postings of the index tokens a query token is a prefix of, the token itself first when indexed.
+     */
+    private static final class TermPostings {
+        private final Postings[] lists;
+        private final boolean exactFirst;
+        private final int[] cursors;
+        private final long total;
+
+        private TermPostings(String term, SortedMap<String, Postings> range) {
+            List<Postings> expanded = new ArrayList<>();
+            long postings = 0;
+            for (Postings list : range.values()) {
+                expanded.add(list);
+                postings += list.size;
+                if (expanded.size() == MAX_PREFIX_TERMS) {
+                    break;
+                }
+            }
+            lists = expanded.toArray(new Postings[0]);
+            exactFirst = !range.isEmpty() && range.firstKey().equals(term);
+            cursors = new int[lists.length];
+            total = postings;
+        }
+
+        private boolean isExact(int list) {
+            return list == 0 && exactFirst;
+        }
+
+        private void rewind() {
+            Arrays.fill(cursors, 0);
+        }
+
+        /**
+         * Looks a slot up, slots being asked in ascending order since the last rewind.
+         * @return EXACT if the token itself lists the slot, PREFIX if only a longer token does, 0 otherwise;
+         *         with LEADING added when the first token of the name is among them
+         */
+        private int matchAscending(int slot) {
+            int match = 0;
+            for (int l = 0; l < lists.length; l++) {
+                Postings list = lists[l];
+                int at = list.seek(cursors[l], slot);
+                cursors[l] = at;
+                if (at < list.size && list.postings[at] >>> POSTING_SLOT_SHIFT == slot) {
+                    match = Math.max(match & ~LEADING, isExact(l) ? EXACT : PREFIX)
+                            | (match & LEADING) | (int) (list.postings[at] & 1) * LEADING;
+                }
+            }
+            return match;
+        }
+    }
+
+    /**
+     * Set of slots by open addressing, sized for a fixed number of entries.
+     */
+    private static final class SlotSet {
+        // Slot + 1, zero when free
+        private final int[] table;
+
+        private SlotSet(int capacity) {
+            table = new int[Integer.highestOneBit(capacity) << 2];
+        }
+
+        /**
+         * @return false if the slot was already in the set
+         */
+        private boolean add(int slot) {
+            int mask = table.length - 1;
+            int hash = slot * 0x9E3779B9;
+            for (int i = (hash ^ (hash >>> 16)) & mask; ; i = (i + 1) & mask) {
+                if (table[i] == 0) {
+                    table[i] = slot + 1;
+                    return true;
+                }
+                if (table[i] == slot + 1) {
+                    return false;
+                }
+            }
+        }
+    }
+
+    /**
+     * The greatest ranks offered, kept in a min-heap of fixed capacity.
+     */
+    private static final class TopRanked {
+        private final long[] heap;
+        private int size;
+
+        private TopRanked(int capacity) {
+            heap = new long[capacity];
+        }
+
+        /**
+         * @return true if a rank would make it into the top
+         */
+        private boolean accepts(long ranked) {
+            return size < heap.length || ranked > heap[0];
+        }
+
+        private void offer(long ranked) {
+            if (size < heap.length) {
+                heap[size] = ranked;
+                siftUp(size++);
+            } else if (ranked > heap[0]) {
+                heap[0] = ranked;
+                siftDown(0);
+            }
+        }
+
+        private long[] bestFirst() {
+            long[] sorted = Arrays.copyOf(heap, size);
+            Arrays.sort(sorted);
+            for (int i = 0, j = sorted.length - 1; i < j; i++, j--) {
+                long swap = sorted[i];
+                sorted[i] = sorted[j];
+                sorted[j] = swap;
+            }
+            return sorted;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0 && heap[(i - 1) / 2] > heap[i]) {
+                swap(i, (i - 1) / 2);
+                i = (i - 1) / 2;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int smallest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && heap[left] < heap[smallest]) {
+                    smallest = left;
+                }
+                if (right < size && heap[right] < heap[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == i) {
+                    return;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int i, int j) {
+            long value = heap[i];
+            heap[i] = heap[j];
+            heap[j] = value;
+        }
+    }
+}
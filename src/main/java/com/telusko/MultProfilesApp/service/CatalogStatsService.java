@@ -0,0 +1,15 @@
+package com.telusko.MultProfilesApp.service;
+
+import com.telusko.MultProfilesApp.dto.CompanyStats;
+
+public interface CatalogStatsService {
+
+    /**
+     * Aggregates the products of every category of a company.
+     * @param companyId the ID of the company
+     * @param expiringWithinDays the size of the expiring-soon window in days from today, or null for the configured one
+     * @return the product count, lowest, highest and average price and expiring-soon count of each category
+     * @throws com.telusko.MultProfilesApp.exceptions.company.CompanyNotFound if the company is not found
+     */
+    CompanyStats getCompanyStats(Long companyId, Integer expiringWithinDays);
+}
@@ -1,6 +1,8 @@
 package com.telusko.MultProfilesApp.service;
 
+import com.telusko.MultProfilesApp.dto.CategoryDto;
 import com.telusko.MultProfilesApp.model.Category;
+import com.telusko.MultProfilesApp.model.CursorPage;
 
 import java.util.List;
 
@@ -11,7 +13,16 @@ public interface CategoryService {
      * @param companyId the ID of the company to retrieve categories for
      * @return a list of Category objects representing all categories for the company
      */
-    List<Category> getAllCategories(Long companyId);
+    List<CategoryDto> getAllCategories(Long companyId);
+
+    /**
+     * Retrieves one page of a company's categories ordered by ID.
+     * @param companyId the ID of the company to retrieve categories for
+     * @param after the last category ID of the previous page, or null for the first page
+     * @param limit the maximum number of categories in the page
+     * @return the page of categories and the cursor of the next page
+     */
+    CursorPage<CategoryDto> getCategories(Long companyId, Long after, int limit);
 
     /**
      * Adds a category to the specified company.
@@ -27,23 +38,25 @@ public interface CategoryService {
      * @param catId the ID of the category to retrieve
      * @return the category object corresponding to the catId for the given companyId
      */
-    Category getCategoryById(Long companyId, Long catId);
+    CategoryDto getCategoryById(Long companyId, Long catId);
 
     /**
-     * Updates a category for a given company and category ID.
+     * Updates a category if it is still at the version the client read.
      * @param companyId the ID of the company
      * @param updatedCategory the updated category
      * @param id the ID of the category to be updated
+     * @param version the expected version, or null to update unconditionally
      * @return true if the category was successfully updated, false otherwise
      */
-    boolean updateCategory(Long companyId, Category updatedCategory, Long id);
+    boolean updateCategory(Long companyId, Category updatedCategory, Long id, Long version);
 
     /**
-     * Deletes a category by its ID for a given company.
+     * Deletes a category if it is still at the version the client read.
      * @param companyId the ID of the company
      * @param catId the ID of the category to delete
+     * @param version the expected version, or null to delete unconditionally
      * @return true if the category was successfully deleted, false otherwise
      */
-    boolean deleteCategoryById(Long companyId, Long catId);
+    boolean deleteCategoryById(Long companyId, Long catId, Long version);
 
 }
@@ -1,8 +1,13 @@
 package com.telusko.MultProfilesApp.service;
 
+import com.telusko.MultProfilesApp.dto.CompanyDto;
 import com.telusko.MultProfilesApp.model.Company;
+import com.telusko.MultProfilesApp.model.CursorPage;
+import com.telusko.MultProfilesApp.model.UpsertOutcome;
+import com.telusko.MultProfilesApp.model.UpsertResult;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface CompanyService {
 
@@ -10,7 +15,15 @@ public interface CompanyService {
      * Retrieves all the companies from the database.
      * @return a list of Company objects representing all the companies
      */
-    List<Company> getAllCompanies();
+    List<CompanyDto> getAllCompanies();
+
+    /**
+     * Retrieves one page of companies ordered by ID.
+     * @param after the last company ID of the previous page, or null for the first page
+     * @param limit the maximum number of companies in the page
+     * @return the page of companies and the cursor of the next page
+     */
+    CursorPage<CompanyDto> getCompanies(Long after, int limit);
 
     /**
      * Adds a company to the system
@@ -19,27 +32,51 @@ public interface CompanyService {
      */
     String addCompany(Company company);
 
+    /**
+     * Creates the company with the given name, or updates its city and state if it exists.
+     * @param name the name of the company
+     * @param company the city and state of the company, its name is taken from the name parameter
+     * @return whether the company was created, updated, unchanged or rejected as invalid
+     */
+    UpsertOutcome upsertCompany(String name, Company company);
+
+    /**
+     * Creates or updates many companies keyed by name. Safe to repeat: sending the same records again
+     * leaves every company unchanged.
+     * @param companies the companies, each name at most once
+     * @return the outcome of each record in request order, and their counts
+     */
+    UpsertResult upsertCompanies(List<Company> companies);
+
     /**
      * Retrieves a company by its ID
      * @param id The id of the company to retrieve
-     * @return the company with the specified id or null if not found
+     * @return the company with the specified id and its categories
     */
-    Company getCompanyById(Long id);
+    CompanyDto getCompanyById(Long id);
+
+    /**
+     * Retrieves only the version of a company, the entity tag of its representation.
+     * @param id The id of the company
+     * @return the version, or empty if the company does not exist
+     */
+    Optional<Long> getCompanyVersion(Long id);
 
     /**
-     * Updates the details of a company.
+     * Updates the details of a company if it is still at the version the client read.
      * @param updatedCompany the updated company details
      * @param id the ID of the company to update
+     * @param version the expected version, or null to update unconditionally
      * @return true if the company details were successfully updated, false otherwise
      */
-    boolean updateCompanyDetails(Company updatedCompany, Long id);
+    boolean updateCompanyDetails(Company updatedCompany, Long id, Long version);
 
     /**
-     * Deletes a company by its ID.
+     * Deletes a company by its ID if it is still at the version the client read.
      * @param id the ID of the company to be deleted
+     * @param version the expected version, or null to delete unconditionally
      * @return true if the company is successfully deleted, false otherwise
      */
-    boolean deleteCompanyById(Long id);
-
+    boolean deleteCompanyById(Long id, Long version);
 
 }
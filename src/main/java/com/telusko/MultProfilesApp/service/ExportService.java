@@ -0,0 +1,17 @@
+package com.telusko.MultProfilesApp.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface ExportService {
+
+    /**
+     * Writes the catalog of a company as NDJSON {@link com.telusko.MultProfilesApp.model.CatalogRecord} lines,
+     * in the format accepted by the import.
+     * @param companyId the ID of the company
+     * @param after the last product code already received, or null for the whole catalog
+     * @param output the stream to write to, left open
+     * @throws IOException if writing fails
+     */
+    void exportCatalog(Long companyId, Long after, OutputStream output) throws IOException;
+}
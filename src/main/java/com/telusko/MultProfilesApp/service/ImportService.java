@@ -0,0 +1,20 @@
+package com.telusko.MultProfilesApp.service;
+
+import com.telusko.MultProfilesApp.model.ImportResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface ImportService {
+
+    enum Format { NDJSON, CSV }
+
+    /**
+     * Imports a catalog file of {@link com.telusko.MultProfilesApp.model.CatalogRecord} lines.
+     * @param input the file contents, read once as a stream
+     * @param format NDJSON with one JSON record per line, or CSV with a header line naming the columns
+     * @return the number of created companies, categories and products and the rejected lines
+     * @throws IOException if the input cannot be read
+     */
+    ImportResult importRecords(InputStream input, Format format) throws IOException;
+}
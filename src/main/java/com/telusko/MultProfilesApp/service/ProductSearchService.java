@@ -0,0 +1,18 @@
+package com.telusko.MultProfilesApp.service;
+
+import com.telusko.MultProfilesApp.dto.ProductDto;
+
+import java.util.List;
+
+public interface ProductSearchService {
+
+    /**
+     * Searches the product names of every category of a company.
+     * @param companyId the ID of the company
+     * @param query the words to look for, each one matching a whole word of the name or the start of one
+     * @param limit the maximum number of products to return
+     * @return the best matches, best first
+     * @throws com.telusko.MultProfilesApp.exceptions.company.CompanyNotFound if the company is not found
+     */
+    List<ProductDto> searchProducts(Long companyId, String query, int limit);
+}
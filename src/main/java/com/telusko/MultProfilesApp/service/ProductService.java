@@ -1,14 +1,23 @@
 package com.telusko.MultProfilesApp.service;
 
+import com.telusko.MultProfilesApp.dto.ProductDto;
+import com.telusko.MultProfilesApp.model.BatchResult;
+import com.telusko.MultProfilesApp.model.CursorPage;
+import com.telusko.MultProfilesApp.model.PriceChange;
 import com.telusko.MultProfilesApp.model.Product;
+import com.telusko.MultProfilesApp.model.ProductSearch;
 
 import java.util.List;
 
 public interface ProductService {
 
-    List<Product> getAllProducts(Long companyId, Long categoryId);
+    List<ProductDto> getAllProducts(Long companyId, Long categoryId);
+    CursorPage<ProductDto> getProducts(Long companyId, Long categoryId, Long after, int limit);
+    CursorPage<ProductDto> searchProducts(Long companyId, Long categoryId, ProductSearch search, Long after, int limit);
     boolean addProduct(Long companyId, Long categoryId, Product product);
-    Product getProductById(Long companyId, Long categoryId, Long productId);
-    boolean updateProductById(Long companyId, Long categoryId, Product updatedProduct, Long productId);
-    boolean deleteProductById(Long companyId, Long categoryId, Long productId);
+    BatchResult addProducts(Long companyId, Long categoryId, List<Product> products);
+    ProductDto getProductById(Long companyId, Long categoryId, Long productId);
+    boolean updateProductById(Long companyId, Long categoryId, Product updatedProduct, Long productId, Long version);
+    boolean deleteProductById(Long companyId, Long categoryId, Long productId, Long version);
+    int repriceProducts(Long companyId, Long categoryId, PriceChange change);
 }
@@ -0,0 +1,38 @@
+package com.telusko.MultProfilesApp.service;
+
+import com.telusko.MultProfilesApp.model.Category;
+import com.telusko.MultProfilesApp.model.Company;
+import com.telusko.MultProfilesApp.model.Product;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Streaming reads of the reactive API. Lookups that can fail complete with an error before the stream
+ * is handed out, so a missing company or category is reported before any record is written.
+ */
+public interface ReactiveCatalogService {
+
+    /**
+     * Streams the companies ordered by ID, without their categories.
+     * @param after the last company ID already received, or null to start from the first one
+     * @return the companies after the given ID
+     */
+    Flux<Company> streamCompanies(Long after);
+
+    /**
+     * Streams the categories of a company ordered by ID.
+     * @param companyId the ID of the company
+     * @param after the last category ID already received, or null to start from the first one
+     * @return the categories after the given ID, once the company is known to exist
+     */
+    Mono<Flux<Category>> streamCategories(Long companyId, Long after);
+
+    /**
+     * Streams the products of a category of a company ordered by product code.
+     * @param companyId the ID of the company
+     * @param categoryId the ID of the category
+     * @param after the last product code already received, or null to start from the first one
+     * @return the products after the given code, once the company and category are known to exist
+     */
+    Mono<Flux<Product>> streamProducts(Long companyId, Long categoryId, Long after);
+}
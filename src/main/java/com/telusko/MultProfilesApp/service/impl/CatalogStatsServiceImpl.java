@@ -0,0 +1,211 @@
+package com.telusko.MultProfilesApp.service.impl;
+
+import com.telusko.MultProfilesApp.dao.CategoryCount;
+import com.telusko.MultProfilesApp.dao.CategorySummaryRepo;
+import com.telusko.MultProfilesApp.dao.CompanyRepo;
+import com.telusko.MultProfilesApp.dao.ProductRepo;
+import com.telusko.MultProfilesApp.dto.CategoryStats;
+import com.telusko.MultProfilesApp.dto.CompanyStats;
+import com.telusko.MultProfilesApp.exceptions.company.CompanyNotFound;
+import com.telusko.MultProfilesApp.service.CatalogStatsService;
+import com.telusko.MultProfilesApp.shard.ShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serves the per-category stats of a company from one grouped query over its products, or, with
+ * app.stats.summary-table enabled, from the CATEGORY_STATS rows that the product writes keep up to date,
+ * so the read costs one row per category whatever the number of products.
+ * The write hooks do nothing while the summary table is disabled.
+ */
+@Service
+public class CatalogStatsServiceImpl implements CatalogStatsService {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogStatsServiceImpl.class);
+
+    @Autowired
+    private ProductRepo productRepo;
+    @Autowired
+    private CategorySummaryRepo categorySummaryRepo;
+    @Autowired
+    private CompanyRepo companyRepo;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    // Only present in the sharded profile
+    @Autowired(required = false)
+    private ShardRouter shardRouter;
+
+    @Value("${app.stats.summary-table}")
+    private boolean summaryTable;
+    @Value("${app.stats.expiring-soon-days}")
+    private int expiringSoonDays;
+
+    /**
+     * Aggregates the products of every category of a company.
+     *
+     * @param companyId the ID of the company
+     * @param expiringWithinDays the size of the expiring-soon window in days from today, or null for the configured one
+     * @return the figures of each category, ordered by category ID
+     * @throws CompanyNotFound if the company is not found
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public CompanyStats getCompanyStats(Long companyId, Integer expiringWithinDays) {
+        int days = Math.max(0, expiringWithinDays == null ? expiringSoonDays : expiringWithinDays);
+        LocalDate today = LocalDate.now();
+        LocalDate until = today.plusDays(days);
+
+        List<CategoryStats> categories;
+        if (summaryTable) {
+            categories = categorySummaryRepo.findByCompanyId(companyId);
+            // Expiring soon depends on today, so it is counted from the expiry date index instead of being stored
+            Map<Long, Long> expiring = new HashMap<>();
+            for (CategoryCount count : productRepo.countExpiringByCompanyId(companyId, today, until)) {
+                expiring.put(count.getCategoryId(), count.getCount());
+            }
+            for (CategoryStats category : categories) {
+                category.setExpiringSoon(expiring.getOrDefault(category.getCategoryId(), 0L));
+            }
+        } else {
+            categories = productRepo.findStatsByCompanyId(companyId, today, until);
+        }
+
+        // Only a company without categories needs the extra lookup to tell it from a missing one
+        if (categories.isEmpty() && companyRepo.findVersionById(companyId).isEmpty()) {
+            throw new CompanyNotFound("Company not found");
+        }
+        return new CompanyStats(companyId, days, categories);
+    }
+
+    /**
+     * Writes the empty summary rows of new categories, in the transaction that creates them. No other transaction
+     * can add products to a category before it commits, so the product writes always find its row to adjust.
+     *
+     * @param categoryIds the IDs of the categories
+     */
+    public void categoriesAdded(Collection<Long> categoryIds) {
+        if (!summaryTable || categoryIds.isEmpty()) {
+            return;
+        }
+        categorySummaryRepo.insertComputed(categoryIds);
+    }
+
+    /**
+     * Counts products added to a category into its summary row, in the caller's transaction.
+     * A category created while the summary table was disabled has no row until the next rebuild,
+     * and gets one computed from its products, which by then include the new ones.
+     *
+     * @param categoryId the ID of the category
+     * @param prices the prices of the added products
+     */
+    public void productsAdded(Long categoryId, Collection<Double> prices) {
+        if (!summaryTable || prices.isEmpty()) {
+            return;
+        }
+        double sum = 0;
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        for (double price : prices) {
+            sum += price;
+            min = Math.min(min, price);
+            max = Math.max(max, price);
+        }
+        if (categorySummaryRepo.addProducts(categoryId, prices.size(), sum, min, max) == 0) {
+            categorySummaryRepo.insertComputed(List.of(categoryId));
+        }
+    }
+
+    /**
+     * Takes a deleted product out of its category's summary row, in the caller's transaction.
+     *
+     * @param categoryId the ID of the category
+     * @param price the price of the product
+     */
+    public void productRemoved(Long categoryId, double price) {
+        if (!summaryTable) {
+            return;
+        }
+        if (categorySummaryRepo.removeProducts(categoryId, 1, price, price, price) == 0) {
+            categorySummaryRepo.insertComputed(List.of(categoryId));
+        }
+    }
+
+    /**
+     * Moves a repriced product from its old to its new price in its category's summary row.
+     *
+     * @param categoryId the ID of the category
+     * @param oldPrice the price before the change
+     * @param newPrice the price after the change
+     */
+    public void productRepriced(Long categoryId, Double oldPrice, Double newPrice) {
+        if (!summaryTable || newPrice == null || newPrice.equals(oldPrice)) {
+            return;
+        }
+        productRemoved(categoryId, oldPrice);
+        productsAdded(categoryId, List.of(newPrice));
+    }
+
+    /**
+     * Recomputes the summary rows of the given categories from their products, for bulk changes
+     * whose individual prices are not at hand. Rows of categories that no longer exist are dropped.
+     *
+     * @param categoryIds the IDs of the categories
+     */
+    public void recompute(Collection<Long> categoryIds) {
+        if (!summaryTable || categoryIds.isEmpty()) {
+            return;
+        }
+        categorySummaryRepo.deleteByCategoryIds(categoryIds);
+        categorySummaryRepo.insertComputed(categoryIds);
+    }
+
+    /**
+     * Drops the summary rows of deleted categories.
+     *
+     * @param categoryIds the IDs of the categories
+     */
+    public void forget(Collection<Long> categoryIds) {
+        if (!summaryTable || categoryIds.isEmpty()) {
+            return;
+        }
+        categorySummaryRepo.deleteByCategoryIds(categoryIds);
+    }
+
+    /**
+     * Rebuilds the whole summary table once the application is up, on every shard, so it is exact again
+     * after writes made while it was disabled and after floating point drift of the running price sums.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!summaryTable) {
+            return;
+        }
+        long started = System.currentTimeMillis();
+        Runnable rebuild = () -> transactionTemplate.executeWithoutResult(status -> {
+            categorySummaryRepo.deleteAllRows();
+            categorySummaryRepo.insertAllComputed();
+        });
+        if (shardRouter != null) {
+            shardRouter.onEachShard(() -> {
+                rebuild.run();
+                return null;
+            });
+        } else {
+            rebuild.run();
+        }
+        log.info("Rebuilt the category stats summary table in {}ms", System.currentTimeMillis() - started);
+    }
+}
@@ -1,14 +1,21 @@
 package com.telusko.MultProfilesApp.service.impl;
 
+import com.telusko.MultProfilesApp.cache.CatalogCache;
 import com.telusko.MultProfilesApp.dao.CategoryRepo;
+import com.telusko.MultProfilesApp.dto.CategoryDto;
+import com.telusko.MultProfilesApp.exceptions.VersionMismatch;
 import com.telusko.MultProfilesApp.exceptions.category.CategoryExists;
 import com.telusko.MultProfilesApp.exceptions.category.CategoryNotFound;
 import com.telusko.MultProfilesApp.exceptions.company.CompanyNotFound;
 import com.telusko.MultProfilesApp.model.Category;
 import com.telusko.MultProfilesApp.model.Company;
+import com.telusko.MultProfilesApp.model.CursorPage;
 import com.telusko.MultProfilesApp.service.CategoryService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -19,32 +26,60 @@ public class CategoryServiceImpl implements CategoryService {
     private CategoryRepo categoryRepo;
     @Autowired
     private CompanyServiceImpl companyService;
+    @Autowired
+    private CatalogCache catalogCache;
+    @Autowired
+    private CatalogStatsServiceImpl catalogStats;
+    @Autowired
+    private ProductSearchServiceImpl productSearch;
 
     /**
-     * Retrieves all categories for a given company from the database.
+     * Retrieves all categories for a given company from the database, ordered by ID.
      * @param companyId the id of the company to retrieve categories for
      * @return a list of all categories for the company
      * @throws CompanyNotFound if the company with the given id is not found
      * @throws CategoryNotFound if no categories are found for the company
      */
     @Override
-    public List<Category> getAllCategories(Long companyId) {
-        // Retrieve the company based on companyId
-        Company company = companyService.getCompanyById(companyId);
-
-        // Check if the company exists
-        if(company != null) {
-            List<Category> categories = company.getCategories();
+    @Transactional(readOnly = true)
+    public List<CategoryDto> getAllCategories(Long companyId) {
+        List<CategoryDto> categories = categoryRepo.findDtosByCompanyId(companyId);
+
+        // Check if categories exist for the company
+        if(categories.isEmpty()) {
+            // Throws CompanyNotFound if the company itself does not exist
+            companyService.getCompanyById(companyId);
+            throw new CategoryNotFound("Categories not available for this company");
+        } else {
+            return categories;
+        }
+    }
 
-            // Check if categories exist for the company
-            if(categories.isEmpty()) {
+    /**
+     * Retrieves one page of a company's categories after the given ID, ordered by ID.
+     * @param companyId the id of the company to retrieve categories for
+     * @param after the last category ID of the previous page, or null for the first page
+     * @param limit the maximum number of categories in the page
+     * @return the page of categories and the cursor of the next page
+     * @throws CompanyNotFound if the company with the given id is not found
+     * @throws CategoryNotFound if no categories are found for the company
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<CategoryDto> getCategories(Long companyId, Long after, int limit) {
+        int pageSize = CursorPage.clampLimit(limit);
+        // Fetch one extra row to know whether another page exists
+        List<CategoryDto> categories = categoryRepo.findPageByCompanyId(
+                companyId, after == null ? 0L : after, Limit.of(pageSize + 1));
+
+        if(categories.isEmpty()) {
+            // Throws CompanyNotFound if the company itself does not exist
+            companyService.getCompanyById(companyId);
+            if(after == null) {
                 throw new CategoryNotFound("Categories not available for this company");
-            } else {
-                return categories;
             }
-        } else {
-            throw new CompanyNotFound("Company Not Found");
         }
+        return CursorPage.of(categories, pageSize, CategoryDto::getId);
     }
 
     /**
@@ -56,20 +91,20 @@ public class CategoryServiceImpl implements CategoryService {
      * @throws CompanyNotFound if the company with the given ID is not found
      */
     @Override
+    @Transactional
     public boolean addCategory(Category category, Long companyId) {
         // Get the company by ID
-        Company company = companyService.getCompanyById(companyId);
+        Company company = companyService.findCompany(companyId);
 
         // Check if the company exists
         if (company != null) {
-            // Add the category to the company's list of categories
-            company.getCategories().add(category);
-
-            // Update the company details
-            companyService.updateCompanyDetails(company, companyId);
-
             // Save the category to the repository
             categoryRepo.save(category);
+            catalogStats.categoriesAdded(List.of(category.getId()));
+
+            // Add the category to the company's list of categories, stored when the transaction commits
+            company.getCategories().add(category);
+            catalogCache.evictCompanyDetails(companyId);
 
             return true;
         } else {
@@ -87,28 +122,41 @@ public class CategoryServiceImpl implements CategoryService {
      * @throws CompanyNotFound if the company with the specified ID is not found
      */
     @Override
-    public Category getCategoryById(Long companyId, Long catId) {
-        // Retrieve the company by ID
-        Company company = companyService.getCompanyById(companyId);
+    @Cacheable(cacheNames = CatalogCache.CATEGORIES, key = "#companyId + ':' + #catId")
+    @Transactional(readOnly = true)
+    public CategoryDto getCategoryById(Long companyId, Long catId) {
+        Optional<CategoryDto> category = categoryRepo.findDtoByCompanyIdAndId(companyId, catId);
 
-        // Check if the company exists
-        if(company != null) {
-            List<Category> categories = company.getCategories();
-
-            // Check if the company has categories
-            if(!categories.isEmpty()) {
-                // Find the category by ID
-                return categories.stream()
-                        .filter(category -> category.getId().equals(catId))
-                        .findFirst()
-                        .orElseThrow(() -> new CategoryNotFound("Category Not Found"));
-            } else {
-                // Throw exception if no categories available
-                throw new CategoryNotFound("Category not available");
-            }
+        if(category.isPresent()) {
+            return category.get();
         } else {
-            // Throw exception if company not found
-            throw new CompanyNotFound("Company Not Found");
+            // Throws CompanyNotFound if the company itself does not exist
+            companyService.getCompanyById(companyId);
+            throw new CategoryNotFound("Category Not Found");
+        }
+    }
+
+    /**
+     * Loads the category with the specified ID of a company from the database, bypassing the cache.
+     * Used by write paths that need the current, persistent category.
+     * @param companyId the ID of the company
+     * @param catId the ID of the category
+     * @return the category with the specified ID
+     * @throws CategoryNotFound if the category with the specified ID is not found
+     * @throws CompanyNotFound if the company with the specified ID is not found
+     */
+    public Category findCategory(Long companyId, Long catId) {
+        // Resolve the category within the company in a single query
+        Optional<Category> availableCat = categoryRepo.findByCompanyIdAndId(companyId, catId);
+
+        // Check if the category exists within the company
+        if(availableCat.isPresent()) {
+            return availableCat.get();
+        } else {
+            // Throws CompanyNotFound if the company itself does not exist
+            companyService.getCompanyById(companyId);
+            // Throw exception if the company does not own the category
+            throw new CategoryNotFound("Category Not Found");
         }
     }
 
@@ -116,61 +164,50 @@ public class CategoryServiceImpl implements CategoryService {
      * Updates the category with the given ID by replacing its name and type with the values from the updatedCategory object.
      * If the category with the specified ID is found, it updates the category and returns true.
      * If the category is not found, it throws a CategoryNotFound exception.
+     * The changes are written by dirty checking when the transaction commits.
+     * A category can be listed by several companies, each of them gets a new version and loses its cached entries.
      * @param companyId The ID of the company to which the category belongs.
-     * @param updatedCategory The Category object containing the updated name, type, companies, and products.
+     * @param updatedCategory The Category object containing the updated name and type.
      * @param catId The ID of the category to update.
+     * @param version The version the client read, or null to update unconditionally.
      * @return true if the category is updated successfully.
      * @throws CategoryNotFound if the category with the specified ID is not found.
      * @throws CompanyNotFound if the company with the specified ID is not found.
+     * @throws VersionMismatch if the category changed since the client read it.
      */
     @Override
-    public boolean updateCategory(Long companyId, Category updatedCategory, Long catId) {
-        // Get the company by ID
-        Company company = companyService.getCompanyById(companyId);
-
-        // Check if the company exists
-        if(company != null) {
-            // Find the category by ID within the company's categories
-            Optional<Category> availableCat = company.getCategories()
-                    .stream()
-                    .filter(category -> category.getId().equals(catId))
-                    .findFirst();
-
-            // If the category is found
-            if(availableCat.isPresent()) {
-                // Update the category details
-                availableCat.get().setName(updatedCategory.getName());
-                availableCat.get().setType(updatedCategory.getType());
-                availableCat.get().setCompanies(updatedCategory.getCompanies());
-                availableCat.get().setProducts(updatedCategory.getProducts());
-
-                // Save the updated category
-                categoryRepo.save(availableCat.get());
-                // Update the company details
-                companyService.updateCompanyDetails(company, companyId);
-                return true;
-            } else {
-                // Throw an exception if the category is not found
-                throw new CategoryNotFound("Category Not Found");
-            }
-        } else {
-            // Throw an exception if the company is not found
-            throw new CompanyNotFound("Company Not Found");
+    @Transactional
+    public boolean updateCategory(Long companyId, Category updatedCategory, Long catId, Long version) {
+        // Find the category within the company, throws if either is not found
+        Category category = findCategory(companyId, catId);
+        checkVersion(category, version);
+
+        // Update the category details
+        category.setName(updatedCategory.getName());
+        category.setType(updatedCategory.getType());
+        // Every company listing the category is served with it, so their entity tags must change as well
+        for (Long listingCompanyId : categoryRepo.findCompanyIdsListing(catId)) {
+            companyService.incrementVersion(listingCompanyId);
+            catalogCache.evictCategory(listingCompanyId, catId);
         }
+        return true;
     }
 
     /**
      * Deletes a category by its ID.
      * @param companyId The ID of the company.
      * @param catId The ID of the category to delete.
+     * @param version The version the client read, or null to delete unconditionally.
      * @return True if the category was successfully deleted, false otherwise.
      * @throws CategoryNotFound If the category with the given ID does not exist.
      * @throws CompanyNotFound If the company with the given ID does not exist.
+     * @throws VersionMismatch If the category changed since the client read it.
      */
     @Override
-    public boolean deleteCategoryById(Long companyId, Long catId) {
+    @Transactional
+    public boolean deleteCategoryById(Long companyId, Long catId, Long version) {
         // Get the company by its ID
-        Company company = companyService.getCompanyById(companyId);
+        Company company = companyService.findCompany(companyId);
 
         // Check if the company exists
         if(company != null) {
@@ -184,13 +221,15 @@ public class CategoryServiceImpl implements CategoryService {
             if(availableCat.isPresent()) {
                 // Remove the category from the company's list of categories
                 Category category = availableCat.get();
+                checkVersion(category, version);
                 company.getCategories().remove(category);
 
-                // Delete the category from the repository
-                categoryRepo.deleteById(catId);
+                // Delete the category and its products from the repository
+                categoryRepo.delete(category);
+                catalogStats.forget(List.of(catId));
+                productSearch.categoryRemoved(companyId, catId);
 
-                // Update the company details
-                companyService.updateCompanyDetails(company, companyId);
+                catalogCache.evictCategory(companyId, catId);
                 return true;
             } else {
                 // Throw an exception if the category is not found
@@ -201,4 +240,16 @@ public class CategoryServiceImpl implements CategoryService {
             throw new CompanyNotFound("Company Not Found");
         }
     }
+
+    /**
+     * Refuses a conditional write when the category is no longer at the version the client read.
+     * @param category the loaded category
+     * @param version the expected version, or null for an unconditional write
+     * @throws VersionMismatch if the versions differ
+     */
+    private void checkVersion(Category category, Long version) {
+        if (version != null && version != category.getVersion()) {
+            throw new VersionMismatch("Category was changed by another request, reload it and try again");
+        }
+    }
 }
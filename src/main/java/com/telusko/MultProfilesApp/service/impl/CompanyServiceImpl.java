@@ -1,38 +1,110 @@
 package com.telusko.MultProfilesApp.service.impl;
 
+import com.telusko.MultProfilesApp.cache.CatalogCache;
+import com.telusko.MultProfilesApp.dao.CompanyCategory;
 import com.telusko.MultProfilesApp.dao.CompanyRepo;
+import com.telusko.MultProfilesApp.dto.CategoryDto;
+import com.telusko.MultProfilesApp.dto.CompanyDto;
+import com.telusko.MultProfilesApp.exceptions.VersionMismatch;
 import com.telusko.MultProfilesApp.exceptions.company.CompanyExists;
 import com.telusko.MultProfilesApp.exceptions.company.CompanyNotFound;
+import com.telusko.MultProfilesApp.model.Category;
 import com.telusko.MultProfilesApp.model.Company;
+import com.telusko.MultProfilesApp.model.CursorPage;
+import com.telusko.MultProfilesApp.model.UpsertOutcome;
+import com.telusko.MultProfilesApp.model.UpsertResult;
 import com.telusko.MultProfilesApp.service.CompanyService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class CompanyServiceImpl implements CompanyService {
+    private static final int CATEGORY_QUERY_CHUNK = 1000;
+    private static final int UPSERT_CHUNK = 1000;
 
     @Autowired
     private CompanyRepo companyRepo;
+    @Autowired
+    private CatalogCache catalogCache;
+    @Autowired
+    private ProductSearchServiceImpl productSearch;
+    @Autowired
+    private CatalogStatsServiceImpl catalogStats;
 
     /**
-     * Retrieves all companies from the database.
-     * @return List of Company objects
+     * Retrieves all companies with their categories from the database.
+     * @return List of companies ordered by ID
      */
     @Override
-    public List<Company> getAllCompanies() {
-        List<Company> companies = companyRepo.findAll();
+    @Transactional(readOnly = true)
+    public List<CompanyDto> getAllCompanies() {
+        List<CompanyDto> companies = companyRepo.findAllDtos();
 
         if(!companies.isEmpty()) {
-            return companies;
+            return withCategories(companies);
         } else {
             throw new CompanyNotFound("Company not found");
         }
     }
 
+    /**
+     * Retrieves one page of companies after the given ID, ordered by ID.
+     * Uses a keyset condition on the primary key so every page costs the same as the first one,
+     * and reads the categories of the whole page with a second query.
+     * @param after the last company ID of the previous page, or null for the first page
+     * @param limit the maximum number of companies in the page
+     * @return the page of companies and the cursor of the next page
+     * @throws CompanyNotFound if there are no companies at all
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<CompanyDto> getCompanies(Long after, int limit) {
+        int pageSize = CursorPage.clampLimit(limit);
+        // Fetch one extra row to know whether another page exists
+        List<CompanyDto> companies = companyRepo.findPage(after == null ? 0L : after, Limit.of(pageSize + 1));
+
+        // Keep the existing not found semantics for an empty first page
+        if(companies.isEmpty() && after == null) {
+            throw new CompanyNotFound("Company not found");
+        }
+        CursorPage<CompanyDto> page = CursorPage.of(companies, pageSize, CompanyDto::getId);
+        withCategories(page.getItems());
+        return page;
+    }
+
+    /**
+     * Fills in the categories of the given companies, with one query per thousand companies.
+     * @param companies the companies read without their categories
+     * @return the same companies
+     */
+    public List<CompanyDto> withCategories(List<CompanyDto> companies) {
+        Map<Long, List<CategoryDto>> categories = new HashMap<>();
+        List<Long> ids = companies.stream().map(CompanyDto::getId).toList();
+        for (int from = 0; from < ids.size(); from += CATEGORY_QUERY_CHUNK) {
+            for (CompanyCategory row : companyRepo.findCategories(
+                    ids.subList(from, Math.min(from + CATEGORY_QUERY_CHUNK, ids.size())))) {
+                categories.computeIfAbsent(row.getCompanyId(), id -> new ArrayList<>())
+                        .add(new CategoryDto(row.getId(), row.getName(), row.getType(), row.getVersion()));
+            }
+        }
+        companies.forEach(company -> company.setCategories(categories.getOrDefault(company.getId(), new ArrayList<>())));
+        return companies;
+    }
+
     /**
      * Saves the company object if the company with similar name does not exist
      * @param company the Company object to save
@@ -40,11 +112,16 @@ public class CompanyServiceImpl implements CompanyService {
      *      or if name already exist then return a failure message
      **/
     @Override
+    @Transactional
     public String addCompany(Company company) {
         // Checks if company name already exist
         if(companyRepo.findByName(company.getName()) == null){
+            // Categories without an ID are created along with the company
+            List<Category> newCategories = company.getCategories() == null ? List.of()
+                    : company.getCategories().stream().filter(category -> category.getId() == null).toList();
             // Saves the object if name is unique
             companyRepo.save(company);
+            catalogStats.categoriesAdded(newCategories.stream().map(Category::getId).toList());
             return "Information saved successfully!";
         } else {
             // Return a failure message if name already exists
@@ -53,12 +130,109 @@ public class CompanyServiceImpl implements CompanyService {
     }
 
     /**
-     * Retrieves a company by its ID.
+     * Creates the company with the given name, or updates its city and state if it exists.
+     * @param name the name of the company
+     * @param company the city and state of the company, its name is taken from the name parameter
+     * @return whether the company was created, updated, unchanged or rejected as invalid
+     */
+    @Override
+    @Transactional
+    public UpsertOutcome upsertCompany(String name, Company company) {
+        company.setName(name);
+        return upsertCompanies(List.of(company)).getRecords().get(0);
+    }
+
+    /**
+     * Creates or updates many companies keyed by name in one transaction.
+     * Each chunk of a thousand names is written with one multi-row upsert statement, and the rows it wrote tell
+     * new, changed and unchanged records apart, so a name inserted concurrently by another request is reported
+     * as updated.
+     *
+     * @param companies the companies, each name at most once
+     * @return the outcome of each record in request order, and their counts
+     */
+    @Override
+    @Transactional
+    public UpsertResult upsertCompanies(List<Company> companies) {
+        List<UpsertOutcome> outcomes = new ArrayList<>();
+        Map<String, Company> valid = new LinkedHashMap<>();
+        for (Company company : companies) {
+            String error = validate(company);
+            if (error == null && valid.putIfAbsent(company.getName(), company) != null) {
+                error = "name appears more than once";
+            }
+            outcomes.add(new UpsertOutcome(company == null ? null : company.getName(),
+                    error == null ? null : UpsertOutcome.Status.REJECTED, error));
+        }
+
+        Map<String, UpsertOutcome.Status> statuses = new HashMap<>();
+        Set<String> updated = new HashSet<>();
+        List<Company> records = new ArrayList<>(valid.values());
+        for (int from = 0; from < records.size(); from += UPSERT_CHUNK) {
+            List<Company> chunk = records.subList(from, Math.min(from + UPSERT_CHUNK, records.size()));
+            List<UpsertOutcome.Status> written = companyRepo.upsertByName(chunk);
+            for (int i = 0; i < chunk.size(); i++) {
+                statuses.put(chunk.get(i).getName(), written.get(i));
+                if (written.get(i) == UpsertOutcome.Status.UPDATED) {
+                    updated.add(chunk.get(i).getName());
+                }
+            }
+        }
+        if (!updated.isEmpty()) {
+            catalogCache.evictCompaniesNamed(updated);
+        }
+
+        for (UpsertOutcome outcome : outcomes) {
+            if (outcome.getStatus() == null) {
+                outcome.setStatus(statuses.get(outcome.getName()));
+            }
+        }
+        return UpsertResult.of(outcomes);
+    }
+
+    /**
+     * Retrieves a company with its categories by its ID, served from the companies cache when present.
+     * @param id The ID of the company.
+     * @return The company with the specified ID.
+     * @throws CompanyNotFound if the company is not found
+     */
+    @Override
+    @Cacheable(cacheNames = CatalogCache.COMPANIES, key = "#id")
+    @Transactional(readOnly = true)
+    public CompanyDto getCompanyById(Long id) {
+        CompanyDto company = companyRepo.findDtoById(id)
+                .orElseThrow(() -> new CompanyNotFound("Company not found"));
+        withCategories(List.of(company));
+        return company;
+    }
+
+    /**
+     * Retrieves only the version of a company, without loading the company or its categories.
      * @param id The ID of the company.
-     * @return The company with the specified ID, or null if not found.
+     * @return The version, or empty if the company does not exist.
      */
     @Override
-    public Company getCompanyById(Long id) {
+    @Transactional(readOnly = true)
+    public Optional<Long> getCompanyVersion(Long id) {
+        return companyRepo.findVersionById(id);
+    }
+
+    /**
+     * Increments the version of a company, for changes to its categories that do not touch the company row.
+     * @param id The ID of the company.
+     */
+    public void incrementVersion(Long id) {
+        companyRepo.incrementVersion(id);
+    }
+
+    /**
+     * Loads a company by its ID from the database, bypassing the cache.
+     * Used by write paths that need the current, persistent company.
+     * @param id The ID of the company.
+     * @return The company with the specified ID.
+     * @throws CompanyNotFound if the company is not found
+     */
+    public Company findCompany(Long id) {
         // Retrieve the company from the repository by its ID
         Optional<Company> companyOptional = companyRepo.findById(id);
 
@@ -75,13 +249,17 @@ public class CompanyServiceImpl implements CompanyService {
 
     /**
      * Updates the details of a company in the database.
+     * The changes are written by dirty checking when the transaction commits.
      *
      * @param updatedCompany The updated details of the company
      * @param id The ID of the company to update.
+     * @param version The version the client read, or null to update unconditionally.
      * @return true if company updated successfully, false otherwise.
+     * @throws VersionMismatch if the company changed since the client read it
      **/
     @Override
-    public boolean updateCompanyDetails(Company updatedCompany, Long id) {
+    @Transactional
+    public boolean updateCompanyDetails(Company updatedCompany, Long id, Long version) {
 
         // Get optional company by id
         Optional<Company> companyOptional = companyRepo.findById(id);
@@ -90,13 +268,13 @@ public class CompanyServiceImpl implements CompanyService {
 
             // Get the company object
             Company company = companyOptional.get();
+            checkVersion(company, version);
             // Update the details
             company.setName(updatedCompany.getName());
             company.setCity(updatedCompany.getCity());
             company.setState(updatedCompany.getState());
 
-            // Save the updated company
-            companyRepo.save(company);
+            catalogCache.evictCompanyDetails(id);
             // Return true if updated successfully
             return true;
         } else {
@@ -106,25 +284,63 @@ public class CompanyServiceImpl implements CompanyService {
     }
 
     /**
-     *  Deletes company details by id
+     *  Deletes company details by id. The company is only marked as deleted, which hides it with its
+     *  categories and products right away; their rows are removed later by the DeletedCompanyPurgeJob.
      *
      * @param id The id of company to be deleted
+     * @param version The version the client read, or null to delete unconditionally.
      * @return true if company deleted successfully or false otherwise.
+     * @throws CompanyNotFound if the company is not found
+     * @throws VersionMismatch if the company changed since the client read it
+     * @throws ObjectOptimisticLockingFailureException if the company changed while it was being deleted
      **/
     @Override
-    public boolean deleteCompanyById(Long id) {
+    @Transactional
+    public boolean deleteCompanyById(Long id, Long version) {
 
-        // Get optional company by id
-        Optional<Company> companyOptional  = companyRepo.findById(id);
-        // Check if company exists
-        if (companyOptional.isPresent()) {
-            // If exists delete the record.
-            companyRepo.deleteById(id);
-            // Return true if record deleted successfully.
-            return true;
-        } else {
-            // Return false if company not found.
-            throw new CompanyNotFound("Company not found");
+        // Read only the version, the company itself is not loaded
+        Long current = companyRepo.findVersionById(id)
+                .orElseThrow(() -> new CompanyNotFound("Company not found"));
+        if (version != null && version.longValue() != current) {
+            throw new VersionMismatch("Company was changed by another request, reload it and try again");
+        }
+
+        // One row update whatever the size of the catalog
+        if (companyRepo.markDeleted(id, current, LocalDateTime.now()) == 0) {
+            throw new ObjectOptimisticLockingFailureException(Company.class, id);
+        }
+        catalogCache.evictCompany(id);
+        productSearch.companyRemoved(id);
+        return true;
+    }
+
+    /**
+     * Checks the mandatory fields of an upserted company.
+     * @param company the company to check
+     * @return the reason the company is invalid, or null if it is valid
+     */
+    private String validate(Company company) {
+        if (company == null) {
+            return "company is missing";
+        } else if (company.getName() == null || company.getName().isBlank()) {
+            return "name is required";
+        } else if (company.getCity() == null || company.getCity().isBlank()
+                || company.getState() == null || company.getState().isBlank()) {
+            return "city and state are required";
+        }
+        return null;
+    }
+
+    /**
+     * Refuses a conditional write when the company is no longer at the version the client read.
+     * A concurrent write that commits in between is still caught by the version check of the update itself.
+     * @param company the loaded company
+     * @param version the expected version, or null for an unconditional write
+     * @throws VersionMismatch if the versions differ
+     */
+    private void checkVersion(Company company, Long version) {
+        if (version != null && version != company.getVersion()) {
+            throw new VersionMismatch("Company was changed by another request, reload it and try again");
         }
     }
 }
@@ -0,0 +1,94 @@
+package com.telusko.MultProfilesApp.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.telusko.MultProfilesApp.dao.ProductRepo;
+import com.telusko.MultProfilesApp.exceptions.company.CompanyNotFound;
+import com.telusko.MultProfilesApp.model.CatalogRecord;
+import com.telusko.MultProfilesApp.model.Category;
+import com.telusko.MultProfilesApp.model.Company;
+import com.telusko.MultProfilesApp.model.Product;
+import com.telusko.MultProfilesApp.service.ExportService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+@Service
+public class ExportServiceImpl implements ExportService {
+
+    @Autowired
+    private ProductRepo productRepo;
+    @Autowired
+    private CompanyServiceImpl companyService;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Writes the catalog of a company as NDJSON lines in the format accepted by the import:
+     * first one line per category (or a single company line when it has none), then one line per product
+     * ordered by product code. Products are read from a database cursor and detached once written,
+     * so memory use does not grow with the size of the catalog.
+     * When resuming after a product code, only the remaining product lines are written.
+     * @param companyId the ID of the company
+     * @param after the last product code already received, or null for the whole catalog
+     * @param output the stream to write to, left open
+     * @throws IOException if writing fails
+     * @throws CompanyNotFound if the company is not found
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void exportCatalog(Long companyId, Long after, OutputStream output) throws IOException {
+        Company company = companyService.findCompany(companyId);
+
+        if (after == null) {
+            if (company.getCategories().isEmpty()) {
+                write(output, record(company, null, null));
+            }
+            for (Category category : company.getCategories()) {
+                write(output, record(company, category, null));
+            }
+        }
+
+        try (Stream<Product> products = productRepo.streamByCompanyId(companyId, after == null ? 0L : after)) {
+            Iterator<Product> iterator = products.iterator();
+            while (iterator.hasNext()) {
+                Product product = iterator.next();
+                write(output, record(company, product.getCategory(), product));
+                // Written products are not needed any more, keep the persistence context small
+                entityManager.detach(product);
+            }
+        }
+    }
+
+    private void write(OutputStream output, CatalogRecord record) throws IOException {
+        output.write(objectMapper.writeValueAsBytes(record));
+        output.write('\n');
+    }
+
+    private static CatalogRecord record(Company company, Category category, Product product) {
+        CatalogRecord record = new CatalogRecord();
+        record.setCompany(company.getName());
+        record.setCity(company.getCity());
+        record.setState(company.getState());
+        if (category != null) {
+            record.setCategory(category.getName());
+            record.setCategoryType(category.getType());
+        }
+        if (product != null) {
+            record.setCode(product.getCode());
+            record.setProduct(product.getName());
+            record.setPrice(product.getPrice());
+            record.setMfgDate(product.getMfgDate());
+            record.setExpiryDate(product.getExpiryDate());
+        }
+        return record;
+    }
+}
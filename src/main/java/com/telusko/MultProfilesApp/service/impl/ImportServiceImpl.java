@@ -0,0 +1,485 @@
+package com.telusko.MultProfilesApp.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.telusko.MultProfilesApp.cache.CatalogCache;
+import com.telusko.MultProfilesApp.dao.CategoryRepo;
+import com.telusko.MultProfilesApp.dao.CompanyRepo;
+import com.telusko.MultProfilesApp.dao.ProductRepo;
+import com.telusko.MultProfilesApp.exceptions.company.CompanyMoving;
+import com.telusko.MultProfilesApp.model.CatalogRecord;
+import com.telusko.MultProfilesApp.model.Category;
+import com.telusko.MultProfilesApp.model.Company;
+import com.telusko.MultProfilesApp.model.ImportResult;
+import com.telusko.MultProfilesApp.model.Product;
+import com.telusko.MultProfilesApp.service.ImportService;
+import com.telusko.MultProfilesApp.shard.ShardContext;
+import com.telusko.MultProfilesApp.shard.ShardRouter;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Streams a catalog file through three stages: lines are read a batch at a time, each batch is parsed and
+ * validated in parallel while the previous one is stored, and every batch is stored in its own transaction.
+ * Only two batches and the name to ID maps of the companies and categories are held in memory.
+ * In the sharded profile each line is stored on the shard of its company.
+ */
+@Service
+public class ImportServiceImpl implements ImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportServiceImpl.class);
+    private static final int NAME_CHECK_CHUNK = 1000;
+
+    @Autowired
+    private CompanyRepo companyRepo;
+    @Autowired
+    private CategoryRepo categoryRepo;
+    @Autowired
+    private ProductRepo productRepo;
+    @Autowired
+    private CatalogCache catalogCache;
+    @Autowired
+    private CatalogStatsServiceImpl catalogStats;
+    @Autowired
+    private ProductSearchServiceImpl productSearch;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @PersistenceContext
+    private EntityManager entityManager;
+    // Only present in the sharded profile
+    @Autowired(required = false)
+    private ShardRouter shardRouter;
+
+    @Value("${app.import.batch-size}")
+    private int batchSize;
+    @Value("${app.import.max-errors}")
+    private int maxErrors;
+
+    /**
+     * Imports a catalog file of {@link CatalogRecord} lines.
+     * Lines are stored in batches of app.import.batch-size, each batch in one transaction; a batch that fails
+     * as a whole rejects its lines without affecting the batches before it.
+     * @param input the file contents, read once as a stream
+     * @param format NDJSON with one JSON record per line, or CSV with a header line naming the columns
+     * @return the number of created companies, categories and products and the rejected lines
+     * @throws IOException if the input cannot be read
+     */
+    @Override
+    public ImportResult importRecords(InputStream input, Format format) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        ImportResult result = new ImportResult();
+        Map<String, Long> companyIds = new HashMap<>();
+        Map<String, Long> categoryIds = new HashMap<>();
+
+        long lineNumber = 0;
+        Function<String, CatalogRecord> parser;
+        if (format == Format.CSV) {
+            String header = reader.readLine();
+            lineNumber++;
+            if (header == null) {
+                return result;
+            }
+            parser = csvParser(parseCsvLine(header));
+        } else {
+            parser = line -> {
+                try {
+                    return objectMapper.readValue(line, CatalogRecord.class);
+                } catch (JsonProcessingException e) {
+                    throw new IllegalArgumentException(e.getOriginalMessage(), e);
+                }
+            };
+        }
+
+        List<ImportLine> batch = new ArrayList<>(batchSize);
+        CompletableFuture<List<ImportLine>> parsed = null;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            batch.add(new ImportLine(lineNumber, line));
+            if (batch.size() == batchSize) {
+                // Parse this batch while the previous one is stored
+                CompletableFuture<List<ImportLine>> next = parseAsync(batch, parser);
+                if (parsed != null) {
+                    store(parsed.join(), result, companyIds, categoryIds);
+                }
+                parsed = next;
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (parsed != null) {
+            store(parsed.join(), result, companyIds, categoryIds);
+        }
+        if (!batch.isEmpty()) {
+            store(parseAsync(batch, parser).join(), result, companyIds, categoryIds);
+        }
+
+        log.info("Imported {} companies, {} categories and {} products, rejected {} lines",
+                result.getCompanies(), result.getCategories(), result.getProducts(), result.getRejected());
+        return result;
+    }
+
+    /**
+     * Parses and validates the lines of a batch in parallel.
+     */
+    private CompletableFuture<List<ImportLine>> parseAsync(List<ImportLine> batch, Function<String, CatalogRecord> parser) {
+        return CompletableFuture.supplyAsync(() -> {
+            batch.parallelStream().forEach(line -> {
+                try {
+                    line.record = parser.apply(line.text);
+                    line.error = validate(line.record);
+                } catch (RuntimeException e) {
+                    line.error = "malformed record: " + e.getMessage();
+                }
+                line.text = null;
+            });
+            return batch;
+        });
+    }
+
+    /**
+     * Stores the valid lines of a batch and counts the rejected ones.
+     */
+    private void store(List<ImportLine> batch, ImportResult result,
+                       Map<String, Long> companyIds, Map<String, Long> categoryIds) {
+        if (shardRouter == null) {
+            storeLines(batch, result, companyIds, categoryIds);
+        } else {
+            storeOnShards(batch, result, companyIds, categoryIds);
+        }
+
+        for (ImportLine line : batch) {
+            if (line.error != null) {
+                result.setRejected(result.getRejected() + 1);
+                if (result.getErrors().size() < maxErrors) {
+                    result.getErrors().add("line " + line.number + ": " + line.error);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stores the valid lines of a batch on the shards of their companies, in one transaction per shard:
+     * the shard that holds an existing company, or for a new name the shard it is placed on as by
+     * ShardedCompanyService.addCompany. Writes to existing companies are registered with the router first,
+     * so none of them is moved to another shard while its lines are stored.
+     */
+    private void storeOnShards(List<ImportLine> batch, ImportResult result,
+                               Map<String, Long> companyIds, Map<String, Long> categoryIds) {
+        List<String> unknown = batch.stream()
+                .filter(line -> line.error == null && !companyIds.containsKey(line.record.getCompany()))
+                .map(line -> line.record.getCompany())
+                .distinct()
+                .toList();
+        Map<String, Long> found = new HashMap<>();
+        shardRouter.onEachShard(() -> existingCompanyIds(unknown)).forEach(found::putAll);
+
+        Map<Integer, List<ImportLine>> byShard = new TreeMap<>();
+        Set<Long> writing = new HashSet<>();
+        try {
+            for (ImportLine line : batch) {
+                if (line.error != null) {
+                    continue;
+                }
+                String name = line.record.getCompany();
+                Long companyId = companyIds.containsKey(name) ? companyIds.get(name) : found.get(name);
+                if (companyId != null && !writing.contains(companyId)) {
+                    try {
+                        shardRouter.beginWrite(companyId);
+                        writing.add(companyId);
+                    } catch (CompanyMoving e) {
+                        line.error = e.getMessage();
+                        continue;
+                    }
+                }
+                int shard = companyId != null ? shardRouter.shardOf(companyId) : shardRouter.shardForNewCompany(name);
+                byShard.computeIfAbsent(shard, key -> new ArrayList<>()).add(line);
+            }
+            byShard.forEach((shard, lines) -> ShardContext.call(shard, () -> {
+                storeLines(lines, result, companyIds, categoryIds);
+                return null;
+            }));
+        } finally {
+            writing.forEach(shardRouter::endWrite);
+        }
+    }
+
+    /**
+     * Finds the IDs of the companies with the given names on the current shard, in chunks
+     * to keep the IN list bounded.
+     */
+    private Map<String, Long> existingCompanyIds(List<String> names) {
+        Map<String, Long> ids = new HashMap<>();
+        for (int from = 0; from < names.size(); from += NAME_CHECK_CHUNK) {
+            companyRepo.findDtosByNameIn(names.subList(from, Math.min(from + NAME_CHECK_CHUNK, names.size())))
+                    .forEach(company -> ids.put(company.getName(), company.getId()));
+        }
+        return ids;
+    }
+
+    /**
+     * Stores the valid lines in one transaction, on the current shard.
+     * Companies and categories created by the lines are only added to the ID maps once it commits.
+     */
+    private void storeLines(List<ImportLine> batch, ImportResult result,
+                            Map<String, Long> companyIds, Map<String, Long> categoryIds) {
+        Set<String> takenNames = existingProductNames(batch);
+        Map<String, Long> newCompanyIds = new HashMap<>();
+        Map<String, Long> newCategoryIds = new HashMap<>();
+        long[] created = new long[3];
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Map<Long, List<Double>> addedPrices = new HashMap<>();
+                for (ImportLine line : batch) {
+                    if (line.error != null) {
+                        continue;
+                    }
+                    CatalogRecord record = line.record;
+
+                    Long companyId = companyIds.get(record.getCompany());
+                    if (companyId == null) {
+                        companyId = newCompanyIds.get(record.getCompany());
+                    }
+                    if (companyId == null) {
+                        Company company = companyRepo.findByName(record.getCompany());
+                        if (company == null) {
+                            if (isBlank(record.getCity()) || isBlank(record.getState())) {
+                                line.error = "city and state are required for a new company";
+                                continue;
+                            }
+                            company = new Company();
+                            company.setName(record.getCompany());
+                            company.setCity(record.getCity());
+                            company.setState(record.getState());
+                            company.setCategories(new HashSet<>());
+                            entityManager.persist(company);
+                            created[0]++;
+                        }
+                        companyId = company.getId();
+                        newCompanyIds.put(record.getCompany(), companyId);
+                    }
+
+                    if (isBlank(record.getCategory())) {
+                        continue;
+                    }
+                    String categoryKey = companyId + ":" + record.getCategory();
+                    Long categoryId = categoryIds.get(categoryKey);
+                    if (categoryId == null) {
+                        categoryId = newCategoryIds.get(categoryKey);
+                    }
+                    if (categoryId == null) {
+                        List<Long> existing = categoryRepo.findIdsByCompanyIdAndName(companyId, record.getCategory());
+                        if (existing.isEmpty()) {
+                            if (isBlank(record.getCategoryType())) {
+                                line.error = "categoryType is required for a new category";
+                                continue;
+                            }
+                            Category category = new Category();
+                            category.setName(record.getCategory());
+                            category.setType(record.getCategoryType());
+                            entityManager.persist(category);
+                            catalogStats.categoriesAdded(List.of(category.getId()));
+                            // Link the category without loading the company's category list
+                            jdbcTemplate.update("insert into COMPANY_CATEGORIES_TBL (company_id, category_id) values (?, ?)",
+                                    companyId, category.getId());
+                            // The company's representation lists its categories, so its version moves on
+                            jdbcTemplate.update("update COMPANY set VERSION = VERSION + 1 where ID = ?", companyId);
+                            catalogCache.evictCompanyDetails(companyId);
+                            categoryId = category.getId();
+                            created[1]++;
+                        } else {
+                            categoryId = existing.get(0);
+                        }
+                        newCategoryIds.put(categoryKey, categoryId);
+                    }
+
+                    if (record.getProduct() == null) {
+                        continue;
+                    }
+                    // A name must be unique in the database and within the file
+                    if (!takenNames.add(record.getProduct())) {
+                        line.error = "product name already exists";
+                        continue;
+                    }
+                    Product product = new Product(record.getProduct(), record.getPrice(), record.getMfgDate(),
+                            record.getExpiryDate(), entityManager.getReference(Category.class, categoryId));
+                    entityManager.persist(product);
+                    productSearch.productsSaved(companyId, categoryId, List.of(product));
+                    addedPrices.computeIfAbsent(categoryId, id -> new ArrayList<>()).add(product.getPrice());
+                    created[2]++;
+                }
+
+                // Send the product inserts as JDBC batches
+                entityManager.flush();
+                addedPrices.forEach(catalogStats::productsAdded);
+                entityManager.clear();
+            });
+
+            companyIds.putAll(newCompanyIds);
+            categoryIds.putAll(newCategoryIds);
+            result.setCompanies(result.getCompanies() + created[0]);
+            result.setCategories(result.getCategories() + created[1]);
+            result.setProducts(result.getProducts() + created[2]);
+        } catch (RuntimeException e) {
+            log.warn("Import batch starting at line {} failed", batch.get(0).number, e);
+            for (ImportLine line : batch) {
+                if (line.error == null) {
+                    line.error = "batch not stored: " + e.getMessage();
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds which product names of the valid lines of a batch are already stored, checked in chunks
+     * to keep the IN list bounded. Names from earlier batches are covered since they are committed.
+     */
+    private Set<String> existingProductNames(List<ImportLine> batch) {
+        List<String> names = batch.stream()
+                .filter(line -> line.error == null && line.record.getProduct() != null)
+                .map(line -> line.record.getProduct())
+                .toList();
+        Set<String> taken = new HashSet<>();
+        for (int from = 0; from < names.size(); from += NAME_CHECK_CHUNK) {
+            taken.addAll(productRepo.findExistingNames(
+                    names.subList(from, Math.min(from + NAME_CHECK_CHUNK, names.size()))));
+        }
+        return taken;
+    }
+
+    /**
+     * Checks the fields of a record that do not need the database.
+     * @param record the record to check
+     * @return the reason the record is invalid, or null if it is valid
+     */
+    private static String validate(CatalogRecord record) {
+        if (record == null || isBlank(record.getCompany())) {
+            return "company is required";
+        }
+        boolean hasProductFields = record.getProduct() != null || record.getPrice() != null
+                || record.getMfgDate() != null || record.getExpiryDate() != null;
+        if (!hasProductFields) {
+            return null;
+        } else if (isBlank(record.getCategory())) {
+            return "category is required for a product";
+        } else if (isBlank(record.getProduct())) {
+            return "product is required";
+        } else if (record.getPrice() == null || record.getPrice() < 0) {
+            return "price must be zero or more";
+        } else if (record.getMfgDate() == null || record.getExpiryDate() == null) {
+            return "mfgDate and expiryDate are required";
+        }
+        return null;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    /**
+     * Maps CSV fields to a record by the column names of the header line; unknown columns are ignored.
+     */
+    private static Function<String, CatalogRecord> csvParser(List<String> header) {
+        return line -> {
+            List<String> values = parseCsvLine(line);
+            CatalogRecord record = new CatalogRecord();
+            for (int i = 0; i < header.size() && i < values.size(); i++) {
+                String value = values.get(i).isEmpty() ? null : values.get(i);
+                if (value == null) {
+                    continue;
+                }
+                switch (header.get(i).trim()) {
+                    case "company" -> record.setCompany(value);
+                    case "city" -> record.setCity(value);
+                    case "state" -> record.setState(value);
+                    case "category" -> record.setCategory(value);
+                    case "categoryType" -> record.setCategoryType(value);
+                    case "product" -> record.setProduct(value);
+                    case "price" -> record.setPrice(Double.valueOf(value));
+                    case "mfgDate" -> record.setMfgDate(LocalDate.parse(value));
+                    case "expiryDate" -> record.setExpiryDate(LocalDate.parse(value));
+                    default -> {
+                    }
+                }
+            }
+            return record;
+        };
+    }
+
+    /**
+     * Splits a CSV line into its fields. Fields may be quoted with double quotes,
+     * with a doubled quote standing for a quote; quoted line breaks are not supported.
+     */
+    private static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * A line of the file on its way through the pipeline.
+     */
+    private static final class ImportLine {
+        private final long number;
+        private String text;
+        private CatalogRecord record;
+        private String error;
+
+        private ImportLine(long number, String text) {
+            this.number = number;
+            this.text = text;
+        }
+    }
+}
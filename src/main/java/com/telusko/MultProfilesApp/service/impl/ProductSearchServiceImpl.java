@@ -0,0 +1,252 @@
+package com.telusko.MultProfilesApp.service.impl;
+
+import com.telusko.MultProfilesApp.dao.CompanyRepo;
+import com.telusko.MultProfilesApp.dao.ProductName;
+import com.telusko.MultProfilesApp.dao.ProductRepo;
+import com.telusko.MultProfilesApp.dao.ProductSpecs;
+import com.telusko.MultProfilesApp.dto.ProductDto;
+import com.telusko.MultProfilesApp.exceptions.company.CompanyNotFound;
+import com.telusko.MultProfilesApp.model.CursorPage;
+import com.telusko.MultProfilesApp.model.Product;
+import com.telusko.MultProfilesApp.search.ProductIndexStatus;
+import com.telusko.MultProfilesApp.search.ProductNameIndex;
+import com.telusko.MultProfilesApp.service.ProductSearchService;
+import com.telusko.MultProfilesApp.shard.ShardRouter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Searches product names across the categories of a company with the in-memory {@link ProductNameIndex}.
+ * The index is built from the database when the application is ready and rebuilt on app.search.rebuild-ms,
+ * which picks up writes made through other instances; in between, the product, category and company write
+ * paths apply their changes once their transaction commits. The index only yields product codes, the
+ * products themselves are read by primary key, so a stale entry is never served.
+ * Until the first build, and while the index is over its memory bound, searches scan the names in the database.
+ */
+@Service
+public class ProductSearchServiceImpl implements ProductSearchService {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductSearchServiceImpl.class);
+
+    @Autowired
+    private ProductRepo productRepo;
+    @Autowired
+    private CompanyRepo companyRepo;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    // Only present in the sharded profile
+    @Autowired(required = false)
+    private ShardRouter shardRouter;
+
+    @Value("${app.search.max-memory}")
+    private DataSize maxMemory;
+
+    // Null until the first build finished
+    private volatile ProductNameIndex index;
+    // The index being built, which receives the changes made meanwhile as well
+    private volatile ProductNameIndex building;
+    private volatile Instant builtAt;
+    private volatile long buildMillis;
+
+    @PostConstruct
+    void registerMetrics() {
+        meterRegistry.gauge("catalog.search.index.bytes", this, search -> search.getStatus().getEstimatedBytes());
+        meterRegistry.gauge("catalog.search.index.products", this, search -> search.getStatus().getProducts());
+    }
+
+    /**
+     * Searches the product names of every category of a company.
+     *
+     * @param companyId the ID of the company
+     * @param query the words to look for, each one matching a whole word of the name or the start of one
+     * @param limit the maximum number of products to return
+     * @return the best matches, best first
+     * @throws CompanyNotFound if the company is not found
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<ProductDto> searchProducts(Long companyId, String query, int limit) {
+        int size = CursorPage.clampLimit(limit);
+        ProductNameIndex current = index;
+
+        List<ProductDto> products;
+        if (query == null || query.isBlank()) {
+            products = List.of();
+        } else if (current != null && current.isComplete()) {
+            List<Long> codes = current.search(companyId, query, size);
+            products = codes.isEmpty() ? List.of() : inOrder(codes, productRepo.findDtosByCompanyIdAndCodeIn(companyId, codes));
+        } else {
+            // Not every product is indexed, so the names are scanned in the database instead, in code order
+            String pattern = "%" + ProductSpecs.escapeLike(query.trim().toLowerCase()) + "%";
+            products = productRepo.findDtosByCompanyIdAndNameLike(companyId, pattern, Limit.of(size));
+        }
+
+        if (products.isEmpty() && companyRepo.findVersionById(companyId).isEmpty()) {
+            throw new CompanyNotFound("Company not found");
+        }
+        return products;
+    }
+
+    /**
+     * Indexes products added to a category, or renamed, once the transaction commits.
+     * @param companyId the ID of the company
+     * @param categoryId the ID of the category
+     * @param products the saved products, with their codes
+     */
+    public void productsSaved(Long companyId, Long categoryId, Collection<Product> products) {
+        // Read now, the entities may be detached or changed again by then
+        long[] codes = new long[products.size()];
+        String[] names = new String[products.size()];
+        int i = 0;
+        for (Product product : products) {
+            codes[i] = product.getCode();
+            names[i++] = product.getName();
+        }
+        afterCommit(index -> {
+            for (int j = 0; j < codes.length; j++) {
+                index.add(companyId, categoryId, codes[j], names[j]);
+            }
+        });
+    }
+
+    /**
+     * Removes a deleted product from the index once the transaction commits.
+     * @param companyId the ID of the company
+     * @param code the code of the product
+     */
+    public void productRemoved(Long companyId, Long code) {
+        afterCommit(index -> index.remove(companyId, code));
+    }
+
+    /**
+     * Removes the products of a deleted category from the index once the transaction commits.
+     * @param companyId the ID of the company
+     * @param categoryId the ID of the category
+     */
+    public void categoryRemoved(Long companyId, Long categoryId) {
+        afterCommit(index -> index.removeCategory(companyId, categoryId));
+    }
+
+    /**
+     * Removes the products of a deleted company from the index once the transaction commits.
+     * @param companyId the ID of the company
+     */
+    public void companyRemoved(Long companyId) {
+        afterCommit(index -> index.removeCompany(companyId));
+    }
+
+    /**
+     * Builds a new index from the product names of every shard and swaps it in.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.search.rebuild-ms}", initialDelayString = "${app.search.rebuild-ms}")
+    public synchronized void rebuild() {
+        long started = System.currentTimeMillis();
+        ProductNameIndex fresh = new ProductNameIndex(maxMemory.toBytes());
+        building = fresh;
+        try {
+            Runnable load = () -> transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<ProductName> names = productRepo.streamNames()) {
+                    names.forEach(name -> fresh.add(name.getCompanyId(), name.getCategoryId(), name.getCode(), name.getName()));
+                }
+            });
+            if (shardRouter != null) {
+                shardRouter.onEachShard(() -> {
+                    load.run();
+                    return null;
+                });
+            } else {
+                load.run();
+            }
+            // Swapped in before the build stops receiving changes, see apply
+            index = fresh;
+        } finally {
+            building = null;
+        }
+        builtAt = Instant.now();
+        buildMillis = System.currentTimeMillis() - started;
+        log.info("Indexed {} product names in {}ms, about {} bytes{}", fresh.getProducts(), buildMillis,
+                fresh.getEstimatedBytes(), fresh.isComplete() ? "" : ", incomplete: over app.search.max-memory");
+    }
+
+    /**
+     * @return the size of the current index and when it was built
+     */
+    public ProductIndexStatus getStatus() {
+        ProductNameIndex current = index;
+        if (current == null) {
+            return new ProductIndexStatus(false, false, 0, 0, 0, 0, maxMemory.toBytes(), null, 0);
+        }
+        return new ProductIndexStatus(true, current.isComplete(), current.getCompanies(), current.getProducts(),
+                current.getTokens(), current.getEstimatedBytes(), current.getMaxBytes(), builtAt, buildMillis);
+    }
+
+    private static List<ProductDto> inOrder(List<Long> codes, List<ProductDto> products) {
+        Map<Long, ProductDto> byCode = new HashMap<>();
+        for (ProductDto product : products) {
+            byCode.put(product.getCode(), product);
+        }
+        List<ProductDto> ordered = new ArrayList<>();
+        for (Long code : codes) {
+            ProductDto product = byCode.get(code);
+            if (product != null) {
+                ordered.add(product);
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * Applies a change once the surrounding transaction commits, so a rolled back write leaves the index alone;
+     * right away outside a transaction.
+     */
+    private void afterCommit(Consumer<ProductNameIndex> change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(change);
+                }
+            });
+        } else {
+            apply(change);
+        }
+    }
+
+    private void apply(Consumer<ProductNameIndex> change) {
+        // The build is read first: once it is gone, it is already the current index
+        ProductNameIndex next = building;
+        ProductNameIndex current = index;
+        if (next != null) {
+            change.accept(next);
+        }
+        if (current != null && current != next) {
+            change.accept(current);
+        }
+    }
+}
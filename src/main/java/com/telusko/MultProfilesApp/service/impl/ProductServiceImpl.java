@@ -1,28 +1,49 @@
 package com.telusko.MultProfilesApp.service.impl;
 
+import com.telusko.MultProfilesApp.cache.CatalogCache;
 import com.telusko.MultProfilesApp.dao.ProductRepo;
+import com.telusko.MultProfilesApp.dto.ProductDto;
+import com.telusko.MultProfilesApp.exceptions.VersionMismatch;
 import com.telusko.MultProfilesApp.exceptions.category.CategoryNotFound;
 import com.telusko.MultProfilesApp.exceptions.company.CompanyNotFound;
+import com.telusko.MultProfilesApp.exceptions.product.InvalidPriceChange;
 import com.telusko.MultProfilesApp.exceptions.product.ProductNotFound;
+import com.telusko.MultProfilesApp.model.BatchResult;
 import com.telusko.MultProfilesApp.model.Category;
-import com.telusko.MultProfilesApp.model.Company;
+import com.telusko.MultProfilesApp.model.CursorPage;
+import com.telusko.MultProfilesApp.model.PriceChange;
 import com.telusko.MultProfilesApp.model.Product;
+import com.telusko.MultProfilesApp.model.ProductSearch;
 import com.telusko.MultProfilesApp.service.ProductService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class ProductServiceImpl implements ProductService {
+    private static final int NAME_CHECK_CHUNK = 1000;
+
     @Autowired
     private ProductRepo productRepo;
     @Autowired
     private CompanyServiceImpl companyService;
     @Autowired
     private CategoryServiceImpl categoryService;
+    @Autowired
+    private CatalogCache catalogCache;
+    @Autowired
+    private CatalogStatsServiceImpl catalogStats;
+    @Autowired
+    private ProductSearchServiceImpl productSearch;
 
 
     /**
@@ -36,36 +57,79 @@ public class ProductServiceImpl implements ProductService {
      * @throws ProductNotFound if no products are found for the category
      */
     @Override
-    public List<Product> getAllProducts(Long companyId, Long categoryId) {
-        // Retrieve the company by ID
-        Company company = companyService.getCompanyById(companyId);
-
-        // Check if the company exists
-        if(company != null) {
-            // Check if the category exists within the company
-            Optional<Category> availableCat = company.getCategories()
-                    .stream()
-                    .filter(category -> category.getId().equals(categoryId))
-                    .findFirst();
-
-            // If the category exists, retrieve and return its products
-            if (availableCat.isPresent()) {
-                List<Product> products = availableCat.get().getProducts();
-                // Check if the products list is empty
-                if(!products.isEmpty()) {
-                    return products;
-                } else {
-                    // Throw an exception if no products are found for the category
-                    throw new ProductNotFound("Products Not Found");
-                }
-            } else {
-                // Throw an exception if the category is not found
-                throw new CategoryNotFound("Category Not Found");
-            }
+    @Transactional(readOnly = true)
+    public List<ProductDto> getAllProducts(Long companyId, Long categoryId) {
+        // Retrieve the products of the category within the company in a single query
+        List<ProductDto> products = productRepo.findAllByCompanyIdAndCategoryId(companyId, categoryId);
+
+        // Check if the products list is empty
+        if(!products.isEmpty()) {
+            return products;
         } else {
-            // Throw an exception if the company is not found
-            throw new CompanyNotFound("Company Not Found");
+            // Throws CompanyNotFound or CategoryNotFound if the path itself does not exist
+            categoryService.getCategoryById(companyId, categoryId);
+            // Throw an exception if no products are found for the category
+            throw new ProductNotFound("Products Not Found");
+        }
+    }
+
+    /**
+     * Retrieves one page of products for a given company and category, ordered by product code.
+     *
+     * @param companyId the ID of the company
+     * @param categoryId the ID of the category
+     * @param after the last product code of the previous page, or null for the first page
+     * @param limit the maximum number of products in the page
+     * @return the page of products and the cursor of the next page
+     * @throws CompanyNotFound if the company is not found
+     * @throws CategoryNotFound if the category is not found
+     * @throws ProductNotFound if no products are found for the category
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<ProductDto> getProducts(Long companyId, Long categoryId, Long after, int limit) {
+        int pageSize = CursorPage.clampLimit(limit);
+        // Fetch one extra row to know whether another page exists
+        List<ProductDto> products = productRepo.findPageByCompanyIdAndCategoryId(
+                companyId, categoryId, after == null ? 0L : after, Limit.of(pageSize + 1));
+
+        if(products.isEmpty()) {
+            // Throws CompanyNotFound or CategoryNotFound if the path itself does not exist
+            categoryService.getCategoryById(companyId, categoryId);
+            if(after == null) {
+                throw new ProductNotFound("Products Not Found");
+            }
+        }
+        return CursorPage.of(products, pageSize, ProductDto::getCode);
+    }
+
+    /**
+     * Searches the products of a given company and category, filtered in the database and ordered by product code.
+     * A search without matches returns an empty page.
+     *
+     * @param companyId the ID of the company
+     * @param categoryId the ID of the category
+     * @param search the price range, mfg and expiry windows and name prefix to filter by
+     * @param after the last product code of the previous page, or null for the first page
+     * @param limit the maximum number of products in the page
+     * @return the page of matching products and the cursor of the next page
+     * @throws CompanyNotFound if the company is not found
+     * @throws CategoryNotFound if the category is not found
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<ProductDto> searchProducts(Long companyId, Long categoryId, ProductSearch search,
+                                                 Long after, int limit) {
+        int pageSize = CursorPage.clampLimit(limit);
+        // Fetch one extra row to know whether another page exists
+        List<ProductDto> products = productRepo.search(
+                companyId, categoryId, search, after == null ? 0L : after, pageSize + 1);
+
+        if(products.isEmpty()) {
+            // Throws CompanyNotFound or CategoryNotFound if the path itself does not exist
+            categoryService.getCategoryById(companyId, categoryId);
         }
+        return CursorPage.of(products, pageSize, ProductDto::getCode);
     }
 
     /**
@@ -77,70 +141,99 @@ public class ProductServiceImpl implements ProductService {
      * @return true if the product was added successfully, false otherwise
      */
     @Override
+    @Transactional
     public boolean addProduct(Long companyId, Long categoryId,Product product) {
-        // Get the company by ID
-        Company company = companyService.getCompanyById(companyId);
-
-        // Check if company exists
-        if(company != null) {
-            // Find the category by ID within the company
-            Optional<Category> availableCat = company.getCategories()
-                    .stream()
-                    .filter(category -> category.getId().equals(categoryId))
-                    .findFirst();
-
-            // Check if the category exists
-            if (availableCat.isPresent()) {
-                // Get the available category
-                Category availableCategory = availableCat.get();
-                // Add product in category's product list
-                availableCategory.getProducts().add(product);
-                // Set the product's category to the available category
+        // Get the category within the company, throws if either is not found
+        Category availableCategory = categoryService.findCategory(companyId, categoryId);
+
+        // Set the product's category to the available category
+        product.setCategory(availableCategory);
+        // Save the product in the repository, its category column is the only link to the category
+        productRepo.save(product);
+        catalogStats.productsAdded(categoryId, List.of(product.getPrice()));
+        productSearch.productsSaved(companyId, categoryId, List.of(product));
+        return true;
+    }
+
+    /**
+     * Adds many products to a category of a company in one transaction.
+     * Invalid records and names that already exist are rejected and reported, the rest are inserted
+     * as JDBC batches using pre-allocated sequence ids.
+     *
+     * @param companyId the ID of the company
+     * @param categoryId the ID of the category
+     * @param products the products to be added
+     * @return the number of inserted and rejected products with the reason of each rejection
+     * @throws CompanyNotFound if the company is not found
+     * @throws CategoryNotFound if the category is not found
+     */
+    @Override
+    @Transactional
+    public BatchResult addProducts(Long companyId, Long categoryId, List<Product> products) {
+        // Get the category within the company, throws if either is not found
+        Category availableCategory = categoryService.findCategory(companyId, categoryId);
+
+        // Names already stored, checked in chunks to keep the IN list bounded
+        Set<String> takenNames = new HashSet<>();
+        List<String> names = products.stream()
+                .map(Product::getName)
+                .filter(name -> name != null)
+                .toList();
+        for (int from = 0; from < names.size(); from += NAME_CHECK_CHUNK) {
+            takenNames.addAll(productRepo.findExistingNames(
+                    names.subList(from, Math.min(from + NAME_CHECK_CHUNK, names.size()))));
+        }
+
+        List<Product> accepted = new ArrayList<>();
+        List<String> errors = new ArrayList<>();
+        for (int i = 0; i < products.size(); i++) {
+            Product product = products.get(i);
+            String error = validate(product);
+            // A name must be unique in the database and within the batch
+            if (error == null && !takenNames.add(product.getName())) {
+                error = "name already exists";
+            }
+
+            if (error == null) {
+                product.setCode(null);
                 product.setCategory(availableCategory);
-                // Save the product in the repository
-                productRepo.save(product);
-                // Update the category in the category service
-                return categoryService.updateCategory(companyId, availableCategory, categoryId);
+                accepted.add(product);
             } else {
-                throw new CategoryNotFound("Category Not Found");
+                errors.add("#" + i + ": " + error);
             }
-        } else {
-            throw new CompanyNotFound("Company Not Found");
         }
+
+        // Save the products, the category's product list is read from their category column
+        productRepo.saveAll(accepted);
+        catalogStats.productsAdded(categoryId, accepted.stream().map(Product::getPrice).toList());
+        productSearch.productsSaved(companyId, categoryId, accepted);
+        return new BatchResult(accepted.size(), errors.size(), errors);
     }
 
     /**
      * Get a product by its ID.
      *
-     * @param id the ID of the product
-     * @return the product with the given ID, or null if not found
+     * @param companyId the ID of the company
+     * @param categoryId the ID of the category
+     * @param productId the ID of the product
+     * @return the product with the given ID
+     * @throws CompanyNotFound if the company is not found
+     * @throws CategoryNotFound if the category is not found
+     * @throws ProductNotFound if the product is not found
      */
     @Override
-    public Product getProductById(Long companyId, Long categoryId, Long productId) {
-        Company company = companyService.getCompanyById(companyId);
-        if (company != null) {
-            Optional<Category> availableCat = company.getCategories()
-                    .stream()
-                    .filter(category -> category.getId().equals(categoryId))
-                    .findFirst();
-
-            if(availableCat.isPresent()) {
-                Category category = availableCat.get();
-
-                Optional<Product> productOptional = category.getProducts()
-                        .stream().filter(product -> product.getCode().equals(productId))
-                        .findFirst();
-
-                if(productOptional.isPresent()) {
-                    return productOptional.get();
-                } else {
-                    throw new ProductNotFound("Product Not Found");
-                }
-            } else {
-                throw new CategoryNotFound("Category Not Found");
-            }
+    @Cacheable(cacheNames = CatalogCache.PRODUCTS, key = "#companyId + ':' + #categoryId + ':' + #productId")
+    @Transactional(readOnly = true)
+    public ProductDto getProductById(Long companyId, Long categoryId, Long productId) {
+        Optional<ProductDto> product = productRepo
+                .findDtoByCompanyIdAndCategoryIdAndCode(companyId, categoryId, productId);
+
+        if (product.isPresent()) {
+            return product.get();
         } else {
-            throw new CompanyNotFound("Company Not Found");
+            // Throws CompanyNotFound or CategoryNotFound if the path itself does not exist
+            categoryService.getCategoryById(companyId, categoryId);
+            throw new ProductNotFound("Product Not Found");
         }
     }
 
@@ -151,57 +244,38 @@ public class ProductServiceImpl implements ProductService {
      * @param categoryId the ID of the category
      * @param updatedProduct the updated product object
      * @param productId the ID of the product to be updated
+     * @param version the version the client read, or null to update unconditionally
      * @return true if the product was successfully updated, false otherwise
+     * @throws VersionMismatch if the product changed since the client read it
      */
     @Override
+    @Transactional
     public boolean updateProductById(Long companyId,
                                      Long categoryId,
                                      Product updatedProduct,
-                                     Long productId) {
-
-        // Retrieve the company object from the database
-        Company company = companyService.getCompanyById(companyId);
-
-        // Check if the company exists
-        if (company != null) {
-            // Find the category within the company
-            Optional<Category> categoryOptional = company.getCategories()
-                    .stream().filter(category -> category.getId().equals(categoryId))
-                    .findFirst();
-
-            // Check if the category exists
-            if(categoryOptional.isPresent()) {
-                // Find the product within the category
-                Optional<Product> productOptional = categoryOptional.get()
-                        .getProducts()
-                        .stream()
-                        .filter(product -> product.getCode().equals(productId))
-                        .findFirst();
-
-                // Check if the product exists
-                if (productOptional.isPresent()) {
-                    // Update the product details
-                    Product product = productOptional.get();
-                    product.setName(updatedProduct.getName());
-                    product.setPrice(updatedProduct.getPrice());
-                    product.setMfgDate(updatedProduct.getMfgDate());
-                    product.setExpiryDate(updatedProduct.getExpiryDate());
-
-                    // Save the updated product to the database
-                    productRepo.save(product);
-                    return true;
-                } else {
-                    // Throw exception if product is not found
-                    throw new ProductNotFound("Product Not Found");
-                }
-            } else {
-                // Throw exception if category is not found
-                throw new CategoryNotFound("Category Not Found");
-            }
-        } else {
-            // Throw exception if company is not found
-            throw new CompanyNotFound("Company Not Found");
+                                     Long productId,
+                                     Long version) {
+
+        // Find the product within the company and category
+        Product product = findProduct(companyId, categoryId, productId);
+        checkVersion(product, version);
+        Double oldPrice = product.getPrice();
+        String oldName = product.getName();
+
+        // Update the product details
+        product.setName(updatedProduct.getName());
+        product.setPrice(updatedProduct.getPrice());
+        product.setMfgDate(updatedProduct.getMfgDate());
+        product.setExpiryDate(updatedProduct.getExpiryDate());
+        catalogStats.productRepriced(categoryId, oldPrice, product.getPrice());
+        // Re-indexing leaves a dead slot behind, so only a renamed product is indexed again
+        if (!Objects.equals(oldName, product.getName())) {
+            productSearch.productsSaved(companyId, categoryId, List.of(product));
         }
+
+        // The changes are written by dirty checking when the transaction commits
+        catalogCache.evictProduct(companyId, categoryId, productId);
+        return true;
     }
 
     /**
@@ -210,51 +284,141 @@ public class ProductServiceImpl implements ProductService {
      * @param companyId The ID of the company
      * @param categoryId The ID of the category
      * @param productId The ID of the product to be deleted
+     * @param version The version the client read, or null to delete unconditionally
      * @return true if product deleted successfully otherwise false
      * @throws CompanyNotFound if the company not found with specified ID
      * @throws CategoryNotFound if the category not found with specified ID
      * @throws ProductNotFound if the product not found with specified ID
+     * @throws VersionMismatch if the product changed since the client read it
      */
     @Override
-    public boolean deleteProductById(Long companyId, Long categoryId, Long productId) {
-        // Get the company by ID
-        Company company = companyService.getCompanyById(companyId);
-        if (company != null) {
-            // Find the category by ID within company
-            Optional<Category> categoryOptional = company.getCategories()
-                    .stream()
-                    .filter(category -> category.getId().equals(categoryId))
-                    .findFirst();
-
-            if (categoryOptional.isPresent()) {
-                // Get the category
-                Category category = categoryOptional.get();
-                // Find the product by ID within product
-                Optional<Product> productOptional = category.getProducts()
-                        .stream()
-                        .filter(product -> product.getCode().equals(productId))
-                        .findFirst();
-
-                if(productOptional.isPresent()) {
-                    // Get the product
-                    Product product = productOptional.get();
-
-                    // Remove product from category
-                    category.getProducts().remove(product);
-
-                    // Delete product from database
-                    productRepo.deleteById(productId);
-                    // Update category
-                    categoryService.updateCategory(companyId, category, categoryId);
-                    return true;
-                } else {
-                    throw new ProductNotFound("Product Not Found");
-                }
-            } else {
-                throw new CategoryNotFound("Category Not Found");
-            }
+    @Transactional
+    public boolean deleteProductById(Long companyId, Long categoryId, Long productId, Long version) {
+        // Find the product within the company and category
+        Product product = findProduct(companyId, categoryId, productId);
+        checkVersion(product, version);
+
+        // Delete product from database
+        productRepo.delete(product);
+        catalogStats.productRemoved(categoryId, product.getPrice());
+        productSearch.productRemoved(companyId, productId);
+        catalogCache.evictProduct(companyId, categoryId, productId);
+        return true;
+    }
+
+    /**
+     * Changes the prices of the products of a category with a single UPDATE, without loading them.
+     * Each matching price gets the percentage or the amount added, rounded to cents, and the product its next version.
+     *
+     * @param companyId the ID of the company
+     * @param categoryId the ID of the category
+     * @param change the percentage or amount, and the optional price band and expiry window of the products to change
+     * @return the number of changed products
+     * @throws CompanyNotFound if the company is not found
+     * @throws CategoryNotFound if the category is not found
+     * @throws InvalidPriceChange if not exactly one of the percentage and the amount is given
+     */
+    @Override
+    @Transactional
+    public int repriceProducts(Long companyId, Long categoryId, PriceChange change) {
+        if (change == null || (change.getPercent() == null) == (change.getAmount() == null)) {
+            throw new InvalidPriceChange("Give either a percent or an amount");
+        }
+        if (change.getPercent() != null && change.getPercent() <= -100) {
+            throw new InvalidPriceChange("percent must be above -100");
+        }
+        // Throws if the company or the category is not found
+        categoryService.findCategory(companyId, categoryId);
+
+        double factor = change.getPercent() != null ? 1 + change.getPercent() / 100 : 1;
+        double amount = change.getAmount() != null ? change.getAmount() : 0;
+        int updated = productRepo.reprice(categoryId, factor, amount, change.getMinPrice(), change.getMaxPrice(),
+                change.getExpiryFrom(), change.getExpiryTo());
+
+        if (updated > 0) {
+            // The changed products are not known one by one; their names, and so the search index, are unchanged
+            catalogStats.recompute(List.of(categoryId));
+            catalogCache.evictCategoryProducts(categoryId);
+        }
+        return updated;
+    }
+
+    /**
+     * Checks the mandatory fields of a product.
+     *
+     * @param product the product to check
+     * @return the reason the product is invalid, or null if it is valid
+     */
+    private String validate(Product product) {
+        if (product == null) {
+            return "product is missing";
+        } else if (product.getName() == null || product.getName().isBlank()) {
+            return "name is required";
+        } else if (product.getPrice() == null || product.getPrice() < 0) {
+            return "price must be zero or more";
+        } else if (product.getMfgDate() == null || product.getExpiryDate() == null) {
+            return "mfgDate and expiryDate are required";
+        }
+        return null;
+    }
+
+    /**
+     * Refuses a conditional write when the product is no longer at the version the client read.
+     * The product is served with its category, so its version is the sum of both, see {@link #versionOf(Product)}.
+     *
+     * @param product the loaded product
+     * @param version the expected version, or null for an unconditional write
+     * @throws VersionMismatch if the versions differ
+     */
+    private void checkVersion(Product product, Long version) {
+        if (version != null && version != versionOf(product)) {
+            throw new VersionMismatch("Product was changed by another request, reload it and try again");
+        }
+    }
+
+    /**
+     * The version of a product as served, covering the embedded category. Both versions only grow,
+     * so the sum changes whenever either of them does.
+     *
+     * @param product the product
+     * @return the version of its representation
+     */
+    public static long versionOf(Product product) {
+        return product.getVersion() + product.getCategory().getVersion();
+    }
+
+    /**
+     * The version of a product as served, see {@link #versionOf(Product)}.
+     *
+     * @param product the product read model
+     * @return the version of its representation
+     */
+    public static long versionOf(ProductDto product) {
+        return product.getVersion() + product.getCategory().getVersion();
+    }
+
+    /**
+     * Finds a product by its code within a specific category of a company using a single scoped query.
+     * Only when the product is missing are the company and category checked, to report which one is absent.
+     *
+     * @param companyId the ID of the company
+     * @param categoryId the ID of the category
+     * @param productId the code of the product
+     * @return the product
+     * @throws CompanyNotFound if the company not found with specified ID
+     * @throws CategoryNotFound if the category not found with specified ID
+     * @throws ProductNotFound if the product not found with specified ID
+     */
+    private Product findProduct(Long companyId, Long categoryId, Long productId) {
+        Optional<Product> productOptional = productRepo
+                .findByCompanyIdAndCategoryIdAndCode(companyId, categoryId, productId);
+
+        if (productOptional.isPresent()) {
+            return productOptional.get();
         } else {
-            throw new CompanyNotFound("Company Not Found");
+            // Throws CompanyNotFound or CategoryNotFound if the path itself does not exist
+            categoryService.getCategoryById(companyId, categoryId);
+            throw new ProductNotFound("Product Not Found");
         }
     }
 }
@@ -0,0 +1,73 @@
+package com.telusko.MultProfilesApp.service.impl;
+
+import com.telusko.MultProfilesApp.dao.ReactiveCatalogRepo;
+import com.telusko.MultProfilesApp.exceptions.category.CategoryNotFound;
+import com.telusko.MultProfilesApp.exceptions.company.CompanyNotFound;
+import com.telusko.MultProfilesApp.model.Category;
+import com.telusko.MultProfilesApp.model.Company;
+import com.telusko.MultProfilesApp.model.Product;
+import com.telusko.MultProfilesApp.service.ReactiveCatalogService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Service
+// Not in the sharded profile, see ReactiveDatabaseConfig
+@Profile("!sharded")
+public class ReactiveCatalogServiceImpl implements ReactiveCatalogService {
+
+    @Autowired
+    private ReactiveCatalogRepo reactiveCatalogRepo;
+
+    /**
+     * Streams the companies ordered by ID, without their categories.
+     * @param after the last company ID already received, or null to start from the first one
+     * @return the companies after the given ID, empty if there are none
+     */
+    @Override
+    public Flux<Company> streamCompanies(Long after) {
+        return reactiveCatalogRepo.findCompanies(after == null ? 0L : after);
+    }
+
+    /**
+     * Streams the categories of a company ordered by ID.
+     * @param companyId the ID of the company
+     * @param after the last category ID already received, or null to start from the first one
+     * @return the categories after the given ID, empty if there are none
+     * @throws CompanyNotFound if the company is not found
+     */
+    @Override
+    public Mono<Flux<Category>> streamCategories(Long companyId, Long after) {
+        return reactiveCatalogRepo.existsCompany(companyId)
+                .flatMap(exists -> exists
+                        ? Mono.just(reactiveCatalogRepo.findCategoriesByCompanyId(companyId, after == null ? 0L : after))
+                        : Mono.error(new CompanyNotFound("Company Not Found")));
+    }
+
+    /**
+     * Streams the products of a category of a company ordered by product code.
+     * The company is only looked up when the category is not found in it, to report which one is absent.
+     * @param companyId the ID of the company
+     * @param categoryId the ID of the category
+     * @param after the last product code already received, or null to start from the first one
+     * @return the products after the given code, empty if there are none
+     * @throws CompanyNotFound if the company is not found
+     * @throws CategoryNotFound if the category is not found in the company
+     */
+    @Override
+    public Mono<Flux<Product>> streamProducts(Long companyId, Long categoryId, Long after) {
+        return reactiveCatalogRepo.existsCategory(companyId, categoryId)
+                .flatMap(exists -> {
+                    if (exists) {
+                        return Mono.just(reactiveCatalogRepo.findProductsByCompanyIdAndCategoryId(
+                                companyId, categoryId, after == null ? 0L : after));
+                    }
+                    return reactiveCatalogRepo.existsCompany(companyId)
+                            .flatMap(companyExists -> Mono.error(companyExists
+                                    ? new CategoryNotFound("Category Not Found")
+                                    : new CompanyNotFound("Company Not Found")));
+                });
+    }
+}
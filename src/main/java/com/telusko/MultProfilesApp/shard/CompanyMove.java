@@ -0,0 +1,20 @@
+package com.telusko.MultProfilesApp.shard;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of moving a company to another shard.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CompanyMove {
+    private Long companyId;
+    private int fromShard;
+    private int toShard;
+    private int categories;
+    private int products;
+    private long millis;
+}
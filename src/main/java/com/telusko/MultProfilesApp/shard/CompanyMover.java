@@ -0,0 +1,216 @@
+package com.telusko.MultProfilesApp.shard;
+
+import com.telusko.MultProfilesApp.cache.CatalogCache;
+import com.telusko.MultProfilesApp.exceptions.company.CompanyMoving;
+import com.telusko.MultProfilesApp.exceptions.company.CompanyNotFound;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves a company with its categories and products to another shard while the application keeps running.
+ * Writes to the company are held off for the duration of the move and answered with 503, reads keep being
+ * served by the old shard until the directory points to the new one.
+ * The rows keep their IDs, which stay unique because every shard generates IDs in its own range.
+ */
+public class CompanyMover {
+
+    private static final Logger log = LoggerFactory.getLogger(CompanyMover.class);
+    private static final int BATCH_SIZE = 1000;
+
+    private final ShardRoutingDataSource shards;
+    private final ShardRouter shardRouter;
+    private final ShardDirectory directory;
+    private final CatalogCache catalogCache;
+    private final long lockTimeoutMillis;
+
+    public CompanyMover(ShardRoutingDataSource shards, ShardRouter shardRouter, ShardDirectory directory,
+                        CatalogCache catalogCache, long lockTimeoutMillis) {
+        this.shards = shards;
+        this.shardRouter = shardRouter;
+        this.directory = directory;
+        this.catalogCache = catalogCache;
+        this.lockTimeoutMillis = lockTimeoutMillis;
+    }
+
+    /**
+     * Copies the company to the target shard in one transaction, then deletes it from the shard it came from
+     * in another one, which switches the directory over before it commits. If the delete fails, the directory
+     * is switched back and the copy removed, so the company is left on its old shard alone.
+     * Categories another company of the old shard still lists are copied but stay there as well.
+     * @param companyId the ID of the company
+     * @param target the index of the shard to move the company to
+     * @return what was moved and how long it took
+     * @throws CompanyNotFound if the company is not found
+     * @throws CompanyMoving if the company is already being moved or writes to it did not finish in time
+     * @throws IllegalArgumentException if there is no such shard
+     */
+    public CompanyMove move(Long companyId, int target) {
+        if (target < 0 || target >= shards.getShardCount()) {
+            throw new IllegalArgumentException("No shard " + target + ", shards are 0 to " + (shards.getShardCount() - 1));
+        }
+        long started = System.currentTimeMillis();
+        int source = shardRouter.shardOf(companyId);
+        NamedParameterJdbcTemplate from = new NamedParameterJdbcTemplate(shards.getShard(source));
+        Map<String, Object> company = Map.of("companyId", companyId);
+
+        Integer found = from.queryForObject("select count(*) from company where id = :companyId", company, Integer.class);
+        if (found == null || found == 0) {
+            throw new CompanyNotFound("Company not found");
+        }
+        if (source == target) {
+            return new CompanyMove(companyId, source, target, 0, 0, 0);
+        }
+
+        shardRouter.lockForMove(companyId, lockTimeoutMillis);
+        try {
+            List<Long> categoryIds = from.queryForList(
+                    "select category_id from company_categories_tbl where company_id = :companyId", company, Long.class);
+            Map<String, Object> categories = Map.of("categoryIds", categoryIds);
+            List<Long> ownedIds = new ArrayList<>(categoryIds);
+            if (!categoryIds.isEmpty()) {
+                ownedIds.removeAll(from.queryForList("select distinct category_id from company_categories_tbl " +
+                        "where category_id in (:categoryIds) and company_id <> :companyId",
+                        Map.of("companyId", companyId, "categoryIds", categoryIds), Long.class));
+            }
+            DataSource targetShard = shards.getShard(target);
+            JdbcTemplate to = new JdbcTemplate(targetShard);
+
+            // Parents before children, all or nothing on the target shard
+            int products = new TransactionTemplate(new DataSourceTransactionManager(targetShard)).execute(status -> {
+                copy(from, to, "company", "id = :companyId", company);
+                if (categoryIds.isEmpty()) {
+                    return 0;
+                }
+                copy(from, to, "categories", "id in (:categoryIds)", categories);
+                copy(from, to, "company_categories_tbl", "company_id = :companyId", company);
+                int copied = copy(from, to, "products", "category_id in (:categoryIds)", categories);
+                copy(from, to, "category_stats", "category_id in (:categoryIds)", categories);
+                return copied;
+            });
+
+            try {
+                new TransactionTemplate(new DataSourceTransactionManager(shards.getShard(source))).executeWithoutResult(status -> {
+                    delete(from, companyId, ownedIds);
+                    // Switched before the deletes commit, so reads find the company on one shard or the other
+                    directory.assign(companyId, target, target == shardRouter.homeShard(companyId));
+                });
+            } catch (RuntimeException e) {
+                undoCopy(companyId, source, target, categoryIds);
+                throw e;
+            }
+            catalogCache.evictCompany(companyId);
+
+            CompanyMove move = new CompanyMove(companyId, source, target, categoryIds.size(), products,
+                    System.currentTimeMillis() - started);
+            log.info("Moved company {} from shard {} to shard {}: {} categories, {} products in {}ms",
+                    companyId, source, target, move.getCategories(), move.getProducts(), move.getMillis());
+            return move;
+        } finally {
+            shardRouter.unlockAfterMove(companyId);
+        }
+    }
+
+    /**
+     * Points the directory back to the old shard and removes the copy from the target shard,
+     * after the delete from the old shard failed.
+     */
+    private void undoCopy(Long companyId, int source, int target, List<Long> categoryIds) {
+        try {
+            directory.assign(companyId, source, source == shardRouter.homeShard(companyId));
+            NamedParameterJdbcTemplate copy = new NamedParameterJdbcTemplate(shards.getShard(target));
+            new TransactionTemplate(new DataSourceTransactionManager(shards.getShard(target)))
+                    .executeWithoutResult(status -> delete(copy, companyId, categoryIds));
+        } catch (RuntimeException e) {
+            log.error("Could not undo the copy of company {} to shard {}, remove it there before moving it again",
+                    companyId, target, e);
+        }
+    }
+
+    /**
+     * Deletes a company from a shard, children before parents, with the given categories and their products.
+     */
+    private static void delete(NamedParameterJdbcTemplate jdbc, Long companyId, List<Long> categoryIds) {
+        Map<String, Object> company = Map.of("companyId", companyId);
+        Map<String, Object> categories = Map.of("categoryIds", categoryIds);
+        if (!categoryIds.isEmpty()) {
+            jdbc.update("delete from category_stats where category_id in (:categoryIds)", categories);
+            jdbc.update("delete from products where category_id in (:categoryIds)", categories);
+        }
+        jdbc.update("delete from company_categories_tbl where company_id = :companyId", company);
+        if (!categoryIds.isEmpty()) {
+            jdbc.update("delete from categories where id in (:categoryIds)", categories);
+        }
+        jdbc.update("delete from company where id = :companyId", company);
+    }
+
+    /**
+     * Copies the matching rows of a table as they are, streaming them in JDBC batches.
+     * @return the number of copied rows
+     */
+    private int copy(NamedParameterJdbcTemplate from, JdbcTemplate to, String table, String where,
+                     Map<String, ?> parameters) {
+        RowCopier copier = new RowCopier(to, table);
+        from.query("select * from " + table + " where " + where, parameters, copier);
+        copier.flush();
+        return copier.copied;
+    }
+
+    private static class RowCopier implements RowCallbackHandler {
+
+        private final JdbcTemplate to;
+        private final String table;
+        private final List<Object[]> batch = new ArrayList<>();
+        private String insert;
+        private int copied;
+
+        RowCopier(JdbcTemplate to, String table) {
+            this.to = to;
+            this.table = table;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            ResultSetMetaData metaData = rs.getMetaData();
+            int columns = metaData.getColumnCount();
+            if (insert == null) {
+                List<String> names = new ArrayList<>();
+                for (int i = 1; i <= columns; i++) {
+                    names.add(metaData.getColumnName(i));
+                }
+                insert = "insert into " + table + " (" + String.join(", ", names) + ") values ("
+                        + String.join(", ", Collections.nCopies(columns, "?")) + ")";
+            }
+
+            Object[] row = new Object[columns];
+            for (int i = 1; i <= columns; i++) {
+                row[i - 1] = rs.getObject(i);
+            }
+            batch.add(row);
+            if (batch.size() == BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (!batch.isEmpty()) {
+                to.batchUpdate(insert, batch);
+                copied += batch.size();
+                batch.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.telusko.MultProfilesApp.shard;
+
+import java.util.function.Supplier;
+
+/**
+ * The shard the current thread works on, read by {@link ShardRoutingDataSource} when a connection is taken.
+ * No shard bound means the default shard, which also holds the shard directory.
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    /**
+     * @return the shard bound to the current thread, or null for the default shard
+     */
+    public static Integer current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Binds a shard to the current thread, null unbinds it.
+     * @param shard the index of the shard
+     */
+    public static void set(Integer shard) {
+        if (shard == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(shard);
+        }
+    }
+
+    /**
+     * Runs the action on a shard and restores the previous binding afterwards.
+     * The action must open its own transaction, a connection already taken stays on its shard.
+     * @param shard the index of the shard, or null to keep the current binding
+     * @param action the work to run
+     * @return the result of the action
+     */
+    public static <T> T call(Integer shard, Supplier<T> action) {
+        if (shard == null) {
+            return action.get();
+        }
+        Integer previous = CURRENT.get();
+        set(shard);
+        try {
+            return action.get();
+        } finally {
+            set(previous);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.telusko.MultProfilesApp.shard;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The companies that live outside the shard their ID range belongs to, because they were moved.
+ * Stored in the shard_directory table of the default shard and kept in memory for routing;
+ * other instances pick up moves when they reload it.
+ */
+public class ShardDirectory {
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile Map<Long, Integer> entries = Map.of();
+
+    public ShardDirectory(DataSource defaultShard) {
+        this.jdbcTemplate = new JdbcTemplate(defaultShard);
+    }
+
+    /**
+     * Creates the directory table if needed and loads it.
+     */
+    public void initialize() {
+        jdbcTemplate.execute("create table if not exists shard_directory ("
+                + "company_id bigint not null primary key, shard int not null)");
+        reload();
+    }
+
+    /**
+     * Reads the directory table again, for moves done by other instances.
+     */
+    public void reload() {
+        Map<Long, Integer> loaded = new HashMap<>();
+        jdbcTemplate.query("select company_id, shard from shard_directory",
+                rs -> {
+                    loaded.put(rs.getLong(1), rs.getInt(2));
+                });
+        entries = Map.copyOf(loaded);
+    }
+
+    /**
+     * @param companyId the ID of the company
+     * @return the shard the company was moved to, or null if it lives in the shard of its ID range
+     */
+    public Integer lookup(Long companyId) {
+        return entries.get(companyId);
+    }
+
+    /**
+     * Records where a company lives now.
+     * @param companyId the ID of the company
+     * @param shard the shard that holds the company
+     * @param home true if that is the shard of the company's ID range, which needs no entry
+     */
+    public synchronized void assign(Long companyId, int shard, boolean home) {
+        jdbcTemplate.update("delete from shard_directory where company_id = ?", companyId);
+        if (!home) {
+            jdbcTemplate.update("insert into shard_directory (company_id, shard) values (?, ?)", companyId, shard);
+        }
+
+        Map<Long, Integer> updated = new HashMap<>(entries);
+        if (home) {
+            updated.remove(companyId);
+        } else {
+            updated.put(companyId, shard);
+        }
+        entries = Map.copyOf(updated);
+    }
+
+    /**
+     * @return the number of moved companies
+     */
+    public int size() {
+        return entries.size();
+    }
+}
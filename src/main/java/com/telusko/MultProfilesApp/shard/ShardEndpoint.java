@@ -0,0 +1,58 @@
+package com.telusko.MultProfilesApp.shard;
+
+import com.telusko.MultProfilesApp.dao.CompanyRepo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Actuator endpoint at /actuator/shards: the number of companies on each shard, the shard of one company
+ * at /actuator/shards/{companyId}, and moving a company with a POST of {"companyId": 1, "shard": 2}.
+ */
+@Component
+@Profile("sharded")
+@Endpoint(id = "shards")
+public class ShardEndpoint {
+
+    @Autowired
+    private ShardRouter shardRouter;
+    @Autowired
+    private ShardDirectory directory;
+    @Autowired
+    private CompanyMover companyMover;
+    @Autowired
+    private CompanyRepo companyRepo;
+
+    @ReadOperation
+    public Map<String, Object> shards() {
+        List<Long> companies = shardRouter.onEachShard(companyRepo::count);
+        Map<String, Object> shards = new LinkedHashMap<>();
+        shards.put("companies", companies);
+        shards.put("moved", directory.size());
+        return shards;
+    }
+
+    @ReadOperation
+    public int shardOf(@Selector Long companyId) {
+        return shardRouter.shardOf(companyId);
+    }
+
+    /**
+     * Moves a company, answering once it is done.
+     * @param companyId the ID of the company
+     * @param shard the index of the shard to move it to
+     * @return what was moved and how long it took
+     */
+    @WriteOperation
+    public CompanyMove move(Long companyId, int shard) {
+        return companyMover.move(companyId, shard);
+    }
+}
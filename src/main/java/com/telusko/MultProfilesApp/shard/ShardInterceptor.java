@@ -0,0 +1,83 @@
+package com.telusko.MultProfilesApp.shard;
+
+import com.telusko.MultProfilesApp.exceptions.company.CompanyMoving;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Binds the shard of the company in the URL (/company/{companyId}/... or /company/{id}) to the request thread
+ * before the handler runs, so every repository call of the request goes to that shard.
+ * Writes also register with the {@link ShardRouter}, which keeps them out while the company is moved.
+ */
+public class ShardInterceptor implements AsyncHandlerInterceptor {
+
+    private static final Set<String> READ_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+    private static final String WRITING = ShardInterceptor.class.getName() + ".writing";
+
+    private final ShardRouter shardRouter;
+
+    public ShardInterceptor(ShardRouter shardRouter) {
+        this.shardRouter = shardRouter;
+    }
+
+    /**
+     * @throws CompanyMoving if the request writes to a company that is being moved
+     */
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        Long companyId = companyId(request);
+        if (companyId != null) {
+            // Registered before the shard is bound: afterCompletion is not called when preHandle throws
+            if (!READ_METHODS.contains(request.getMethod())) {
+                shardRouter.beginWrite(companyId);
+                request.setAttribute(WRITING, companyId);
+            }
+            ShardContext.set(shardRouter.shardOf(companyId));
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        release(request);
+    }
+
+    /**
+     * Async work gets the shard through the task decorator, the request thread goes back to its pool.
+     */
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        release(request);
+    }
+
+    private void release(HttpServletRequest request) {
+        if (request.getAttribute(WRITING) instanceof Long companyId) {
+            request.removeAttribute(WRITING);
+            shardRouter.endWrite(companyId);
+        }
+        ShardContext.set(null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Long companyId(HttpServletRequest request) {
+        Map<String, String> variables =
+                (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        if (variables == null) {
+            return null;
+        }
+        String value = variables.containsKey("companyId") ? variables.get("companyId") : variables.get("id");
+        try {
+            return value != null ? Long.valueOf(value) : null;
+        } catch (NumberFormatException e) {
+            // Rejected with 400 by the argument conversion of the handler
+            return null;
+        }
+    }
+}
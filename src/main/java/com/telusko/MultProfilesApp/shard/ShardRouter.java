@@ -0,0 +1,158 @@
+package com.telusko.MultProfilesApp.shard;
+
+import com.telusko.MultProfilesApp.exceptions.company.CompanyMoving;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Maps companies to shards. Each shard generates IDs in a range of its own, [shard * idRange, (shard + 1) * idRange),
+ * so a company's shard follows from its ID unless the directory says it was moved.
+ * Also keeps writes to a company out while it is being moved.
+ */
+public class ShardRouter {
+
+    private final int shardCount;
+    private final long idRange;
+    private final ShardDirectory directory;
+    private final Executor executor;
+
+    private final Set<Long> moving = ConcurrentHashMap.newKeySet();
+    private final Map<Long, ReentrantReadWriteLock> writeLocks = new ConcurrentHashMap<>();
+
+    public ShardRouter(int shardCount, long idRange, ShardDirectory directory, Executor executor) {
+        this.shardCount = shardCount;
+        this.idRange = idRange;
+        this.directory = directory;
+        this.executor = executor;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * @param shard the index of the shard
+     * @return the first ID of the shard's range
+     */
+    public long idBase(int shard) {
+        return shard * idRange;
+    }
+
+    public long getIdRange() {
+        return idRange;
+    }
+
+    /**
+     * @param companyId the ID of the company
+     * @return the shard that holds the company
+     */
+    public int shardOf(Long companyId) {
+        Integer moved = directory.lookup(companyId);
+        return moved != null ? moved : homeShard(companyId);
+    }
+
+    /**
+     * @param companyId the ID of the company
+     * @return the shard whose ID range the company ID is in
+     */
+    public int homeShard(Long companyId) {
+        long shard = companyId / idRange;
+        // IDs no shard generates belong to no company, the default shard answers them with not found
+        return shard >= 0 && shard < shardCount ? (int) shard : 0;
+    }
+
+    /**
+     * Spreads new companies over the shards by name, so the same name always lands on the same shard.
+     * @param name the name of the new company
+     * @return the shard to create the company on
+     */
+    public int shardForNewCompany(String name) {
+        return Math.floorMod(Objects.hashCode(name), shardCount);
+    }
+
+    /**
+     * Runs the action on every shard in parallel.
+     * @param action the work to run, bound to one shard per call
+     * @return the results, in shard order
+     */
+    public <T> List<T> onEachShard(Supplier<T> action) {
+        List<CompletableFuture<T>> futures = new ArrayList<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            int target = shard;
+            futures.add(CompletableFuture.supplyAsync(() -> ShardContext.call(target, action), executor));
+        }
+
+        List<T> results = new ArrayList<>();
+        try {
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    /**
+     * Registers a write to a company, to be ended with {@link #endWrite(Long)}.
+     * @param companyId the ID of the company
+     * @throws CompanyMoving if the company is being moved to another shard
+     */
+    public void beginWrite(Long companyId) {
+        if (moving.contains(companyId) || !writeLock(companyId).readLock().tryLock()) {
+            throw new CompanyMoving("Company is being moved to another shard, retry shortly");
+        }
+    }
+
+    public void endWrite(Long companyId) {
+        writeLock(companyId).readLock().unlock();
+    }
+
+    /**
+     * Keeps new writes to a company out and waits for the writes in flight to finish.
+     * @param companyId the ID of the company
+     * @param timeoutMillis how long to wait for the writes in flight
+     * @throws CompanyMoving if the company is already being moved or the writes did not finish in time
+     */
+    public void lockForMove(Long companyId, long timeoutMillis) {
+        if (!moving.add(companyId)) {
+            throw new CompanyMoving("Company is already being moved");
+        }
+        boolean locked = false;
+        try {
+            locked = writeLock(companyId).writeLock().tryLock(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (!locked) {
+                moving.remove(companyId);
+            }
+        }
+        if (!locked) {
+            throw new CompanyMoving("Writes to the company did not finish within " + timeoutMillis + "ms");
+        }
+    }
+
+    public void unlockAfterMove(Long companyId) {
+        writeLock(companyId).writeLock().unlock();
+        moving.remove(companyId);
+    }
+
+    private ReentrantReadWriteLock writeLock(Long companyId) {
+        return writeLocks.computeIfAbsent(companyId, id -> new ReentrantReadWriteLock());
+    }
+}
@@ -0,0 +1,109 @@
+package com.telusko.MultProfilesApp.shard;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.flywaydb.core.Flyway;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.util.Set;
+
+/**
+ * Prepares the shards at startup. Flyway only migrates the default shard, so the same migrations are applied
+ * to the other shards as well; with Flyway disabled and a create ddl-auto the Hibernate schema is exported
+ * to them instead, otherwise they must already have it. Then every shard's identity columns and product sequence are moved to the start of its ID range,
+ * unless the shard already generated IDs in it.
+ */
+public class ShardSchemaInitializer implements InitializingBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardSchemaInitializer.class);
+    private static final Set<String> CREATE = Set.of("create", "create-drop");
+    // Product ids are handed out in blocks of 50 below each sequence value, see Product
+    private static final int PRODUCT_ID_BLOCK = 50;
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final Flyway flyway;
+    private final ShardRoutingDataSource shards;
+    private final ShardRouter shardRouter;
+    private final ShardDirectory directory;
+    private final String ddlAuto;
+
+    /**
+     * @param flyway the migrations of the default shard, null when Flyway is disabled
+     */
+    public ShardSchemaInitializer(EntityManagerFactory entityManagerFactory, Flyway flyway,
+                                  ShardRoutingDataSource shards, ShardRouter shardRouter,
+                                  ShardDirectory directory, String ddlAuto) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.flyway = flyway;
+        this.shards = shards;
+        this.shardRouter = shardRouter;
+        this.directory = directory;
+        this.ddlAuto = ddlAuto;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws MetaDataAccessException {
+        directory.initialize();
+        for (int shard = 1; shard < shards.getShardCount(); shard++) {
+            if (flyway != null) {
+                Flyway.configure()
+                        .configuration(flyway.getConfiguration())
+                        .dataSource(shards.getShard(shard))
+                        .load()
+                        .migrate();
+            } else if (CREATE.contains(ddlAuto)) {
+                ShardContext.call(shard, () -> {
+                    SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+                    sessionFactory.getSchemaManager().dropMappedObjects(true);
+                    sessionFactory.getSchemaManager().exportMappedObjects(true);
+                    return null;
+                });
+            }
+            moveIdsIntoRange(shard);
+        }
+    }
+
+    private void moveIdsIntoRange(int shard) throws MetaDataAccessException {
+        DataSource dataSource = shards.getShard(shard);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        String database = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+        long base = shardRouter.idBase(shard);
+
+        for (String table : new String[] {"company", "categories"}) {
+            if (usesRange(jdbcTemplate, table, "id", base)) {
+                continue;
+            }
+            switch (database) {
+                case "H2" -> jdbcTemplate.execute(
+                        "alter table " + table + " alter column id restart with " + (base + 1));
+                case "MySQL", "MariaDB" -> jdbcTemplate.execute(
+                        "alter table " + table + " auto_increment = " + (base + 1));
+                default -> log.warn("Shard {} keeps its {} IDs, {} is not supported", shard, table, database);
+            }
+        }
+
+        if (!usesRange(jdbcTemplate, "products", "product_code", base)) {
+            long next = base + PRODUCT_ID_BLOCK;
+            switch (database) {
+                case "H2" -> jdbcTemplate.execute("alter sequence product_seq restart with " + next);
+                // MySQL has no sequences, Hibernate keeps the next value in a table
+                case "MySQL", "MariaDB" -> jdbcTemplate.update("update product_seq set next_val = ?", next);
+                default -> log.warn("Shard {} keeps its product IDs, {} is not supported", shard, database);
+            }
+        }
+    }
+
+    private boolean usesRange(JdbcTemplate jdbcTemplate, String table, String column, long base) {
+        Long inRange = jdbcTemplate.queryForObject(
+                "select max(" + column + ") from " + table + " where " + column + " > ? and " + column + " < ?",
+                Long.class, base, base + shardRouter.getIdRange());
+        return inRange != null;
+    }
+}
@@ -0,0 +1,199 @@
+package com.telusko.MultProfilesApp.shard;
+
+import com.telusko.MultProfilesApp.dao.CompanyRepo;
+import com.telusko.MultProfilesApp.dto.CompanyDto;
+import com.telusko.MultProfilesApp.exceptions.company.CompanyExists;
+import com.telusko.MultProfilesApp.exceptions.company.CompanyNotFound;
+import com.telusko.MultProfilesApp.model.Company;
+import com.telusko.MultProfilesApp.model.CursorPage;
+import com.telusko.MultProfilesApp.model.UpsertOutcome;
+import com.telusko.MultProfilesApp.model.UpsertResult;
+import com.telusko.MultProfilesApp.service.CompanyService;
+import com.telusko.MultProfilesApp.service.impl.CompanyServiceImpl;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * Company operations of the sharded profile. Listings fan out to every shard in parallel and are merged by ID,
+ * new companies are placed on a shard by name, and the rest runs on the company's shard.
+ */
+@Service
+@Primary
+@Profile("sharded")
+public class ShardedCompanyService implements CompanyService {
+
+    private static final int UPSERT_CHUNK = 1000;
+
+    @Autowired
+    private CompanyServiceImpl companyService;
+    @Autowired
+    private CompanyRepo companyRepo;
+    @Autowired
+    private ShardRouter shardRouter;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Retrieves all companies of all shards, ordered by ID.
+     * @return List of Company objects
+     * @throws CompanyNotFound if there are no companies at all
+     */
+    @Override
+    public List<CompanyDto> getAllCompanies() {
+        List<CompanyDto> companies = merge(onEachShard(companyRepo::findAllDtos));
+
+        if(!companies.isEmpty()) {
+            return companies;
+        } else {
+            throw new CompanyNotFound("Company not found");
+        }
+    }
+
+    /**
+     * Retrieves one page of companies after the given ID across all shards. Every shard returns its own next page
+     * and the merge keeps the lowest IDs, which is the page a single database would have returned.
+     * @param after the last company ID of the previous page, or null for the first page
+     * @param limit the maximum number of companies in the page
+     * @return the page of companies and the cursor of the next page
+     * @throws CompanyNotFound if there are no companies at all
+     */
+    @Override
+    public CursorPage<CompanyDto> getCompanies(Long after, int limit) {
+        int pageSize = CursorPage.clampLimit(limit);
+        // Fetch one extra row per shard to know whether another page exists
+        List<CompanyDto> companies = merge(onEachShard(() -> companyRepo.findPage(
+                after == null ? 0L : after, Limit.of(pageSize + 1))));
+
+        if(companies.isEmpty() && after == null) {
+            throw new CompanyNotFound("Company not found");
+        }
+        return CursorPage.of(companies, pageSize, CompanyDto::getId);
+    }
+
+    /**
+     * Saves the company on its shard if no shard has a company with the same name.
+     * @param company the Company object to save
+     * @return a success message if saved
+     * @throws CompanyExists if the name is already taken
+     */
+    @Override
+    public String addCompany(Company company) {
+        boolean taken = shardRouter.onEachShard(() -> companyRepo.findByName(company.getName()) != null)
+                .contains(true);
+        if (taken) {
+            throw new CompanyExists("Name already exists! Please try another name");
+        }
+        return ShardContext.call(shardRouter.shardForNewCompany(company.getName()),
+                () -> companyService.addCompany(company));
+    }
+
+    @Override
+    public UpsertOutcome upsertCompany(String name, Company company) {
+        company.setName(name);
+        return upsertCompanies(List.of(company)).getRecords().get(0);
+    }
+
+    /**
+     * Upserts every company on the shard that holds its name, or for a new name on the shard it is placed on
+     * as by addCompany. Each shard's records are upserted in one transaction on that shard, so a failure on
+     * one shard leaves the records of the others stored.
+     * @param companies the companies, each name at most once
+     * @return the outcome of each record in request order, and their counts
+     */
+    @Override
+    public UpsertResult upsertCompanies(List<Company> companies) {
+        List<String> names = companies.stream()
+                .filter(company -> company != null && company.getName() != null)
+                .map(Company::getName)
+                .distinct()
+                .toList();
+        List<Set<String>> held = shardRouter.onEachShard(() -> {
+            Set<String> found = new HashSet<>();
+            for (int from = 0; from < names.size(); from += UPSERT_CHUNK) {
+                companyRepo.findDtosByNameIn(names.subList(from, Math.min(from + UPSERT_CHUNK, names.size())))
+                        .forEach(company -> found.add(company.getName()));
+            }
+            return found;
+        });
+
+        // Invalid records are rejected by whichever shard they go to
+        Map<Integer, List<Integer>> byShard = new TreeMap<>();
+        for (int i = 0; i < companies.size(); i++) {
+            Company company = companies.get(i);
+            int shard = 0;
+            if (company != null && company.getName() != null) {
+                shard = shardRouter.shardForNewCompany(company.getName());
+                for (int candidate = 0; candidate < held.size(); candidate++) {
+                    if (held.get(candidate).contains(company.getName())) {
+                        shard = candidate;
+                    }
+                }
+            }
+            byShard.computeIfAbsent(shard, key -> new ArrayList<>()).add(i);
+        }
+
+        UpsertOutcome[] outcomes = new UpsertOutcome[companies.size()];
+        byShard.forEach((shard, indexes) -> {
+            List<Company> part = indexes.stream().map(companies::get).toList();
+            List<UpsertOutcome> stored = ShardContext.call(shard, () -> companyService.upsertCompanies(part)).getRecords();
+            for (int i = 0; i < indexes.size(); i++) {
+                outcomes[indexes.get(i)] = stored.get(i);
+            }
+        });
+        return UpsertResult.of(Arrays.asList(outcomes));
+    }
+
+    @Override
+    public CompanyDto getCompanyById(Long id) {
+        return ShardContext.call(shardRouter.shardOf(id), () -> companyService.getCompanyById(id));
+    }
+
+    @Override
+    public Optional<Long> getCompanyVersion(Long id) {
+        return ShardContext.call(shardRouter.shardOf(id), () -> companyService.getCompanyVersion(id));
+    }
+
+    @Override
+    public boolean updateCompanyDetails(Company updatedCompany, Long id, Long version) {
+        return ShardContext.call(shardRouter.shardOf(id),
+                () -> companyService.updateCompanyDetails(updatedCompany, id, version));
+    }
+
+    @Override
+    public boolean deleteCompanyById(Long id, Long version) {
+        return ShardContext.call(shardRouter.shardOf(id), () -> companyService.deleteCompanyById(id, version));
+    }
+
+    /**
+     * Runs a read on every shard in its own read-only transaction, reading the categories of each company
+     * from the shard that holds it.
+     */
+    private List<List<CompanyDto>> onEachShard(Supplier<List<CompanyDto>> query) {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        return shardRouter.onEachShard(() -> readOnly.execute(status -> companyService.withCategories(query.get())));
+    }
+
+    private static List<CompanyDto> merge(List<List<CompanyDto>> shards) {
+        return shards.stream()
+                .flatMap(List::stream)
+                .sorted(Comparator.comparing(CompanyDto::getId))
+                .toList();
+    }
+}
@@ -0,0 +1,102 @@
+package com.telusko.MultProfilesApp.shard;
+
+import com.telusko.MultProfilesApp.cache.CatalogCache;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManagerFactory;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Horizontal sharding by company for the opt-in sharded profile. Each entry of app.sharding.shards is a database
+ * with its own HikariCP pool; the first one is the default shard and holds the shard directory.
+ */
+@Configuration
+@Profile("sharded")
+public class ShardingConfig implements WebMvcConfigurer {
+
+    private final ShardRouter shardRouter;
+    private final ShardDirectory shardDirectory;
+
+    public ShardingConfig(ShardRouter shardRouter, ShardDirectory shardDirectory) {
+        this.shardRouter = shardRouter;
+        this.shardDirectory = shardDirectory;
+    }
+
+    /**
+     * The DataSource used by JPA and JDBC, routing to the shard bound to the current thread.
+     */
+    @Bean
+    @Primary
+    public static ShardRoutingDataSource dataSource(Environment environment) {
+        List<HikariConfig> configs = Binder.get(environment)
+                .bind("app.sharding.shards", Bindable.listOf(HikariConfig.class))
+                .orElseThrow(() -> new IllegalStateException("The sharded profile needs app.sharding.shards"));
+
+        List<HikariDataSource> shards = new ArrayList<>();
+        for (int i = 0; i < configs.size(); i++) {
+            HikariConfig config = configs.get(i);
+            if (config.getPoolName() == null) {
+                config.setPoolName("shard-" + i);
+            }
+            shards.add(new HikariDataSource(config));
+        }
+        return new ShardRoutingDataSource(shards);
+    }
+
+    @Bean
+    public static ShardDirectory shardDirectory(ShardRoutingDataSource dataSource) {
+        return new ShardDirectory(dataSource.getShard(0));
+    }
+
+    @Bean
+    public static ShardRouter shardRouter(ShardRoutingDataSource dataSource, ShardDirectory shardDirectory,
+                                          @Value("${app.sharding.id-range}") long idRange,
+                                          @Qualifier("applicationTaskExecutor") Executor executor) {
+        return new ShardRouter(dataSource.getShardCount(), idRange, shardDirectory, executor);
+    }
+
+    @Bean
+    public ShardSchemaInitializer shardSchemaInitializer(EntityManagerFactory entityManagerFactory,
+                                                         ObjectProvider<Flyway> flyway,
+                                                         ShardRoutingDataSource dataSource,
+                                                         @Value("${spring.jpa.hibernate.ddl-auto:none}") String ddlAuto) {
+        return new ShardSchemaInitializer(entityManagerFactory, flyway.getIfAvailable(), dataSource, shardRouter,
+                shardDirectory, ddlAuto);
+    }
+
+    @Bean
+    public CompanyMover companyMover(ShardRoutingDataSource dataSource, CatalogCache catalogCache,
+                                     @Value("${app.sharding.move-lock-timeout-ms}") long lockTimeoutMillis) {
+        return new CompanyMover(dataSource, shardRouter, shardDirectory, catalogCache, lockTimeoutMillis);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new ShardInterceptor(shardRouter)).addPathPatterns("/company/**");
+    }
+
+    /**
+     * Picks up companies moved by other instances.
+     */
+    @Scheduled(fixedDelayString = "${app.sharding.directory-reload-ms}")
+    public void reloadDirectory() {
+        shardDirectory.reload();
+    }
+}
@@ -0,0 +1,23 @@
+-- The columns, tables and sequence the entities gained before the migrations existed.
+
+-- Optimistic locking and ETags, existing rows start at version 0
+alter table categories add column version bigint default 0 not null;
+alter table company add column version bigint default 0 not null;
+alter table products add column version bigint default 0 not null;
+
+-- Soft deleted companies, purged by DeletedCompanyPurgeJob
+alter table company add column deleted_at timestamp(6);
+
+-- Manufacturing dates were stored as text in the ISO format
+alter table products alter column mfg_date set data type date;
+
+-- Product codes come from this sequence, moved past the codes in use by V4. The identity of
+-- PRODUCT_CODE is left in place, it only applies to inserts without a code, which Hibernate never makes.
+create sequence product_seq start with 1 increment by 50;
+
+-- The per-category figures of CatalogStatsServiceImpl, filled in at startup
+create table category_stats (max_price float(53), min_price float(53), price_sum float(53) not null, category_id bigint not null, product_count bigint not null, primary key (category_id));
+
+-- The range filters of the product search
+create index IDX_PRODUCTS_EXPIRY_DATE on products (expiry_date);
+create index IDX_PRODUCTS_PRICE on products (price);
@@ -0,0 +1,14 @@
+-- The schema as Hibernate's ddl-auto created it for the entities before the migrations existed.
+-- Databases created that way are baselined at this version and only run the later migrations.
+
+create table categories (id bigint generated by default as identity, last_name varchar(255) not null, name varchar(255) not null, primary key (id));
+create table categories_products (category_id bigint not null, products_product_code bigint not null unique);
+create table company (id bigint generated by default as identity, city varchar(255) not null, name varchar(255) not null unique, state varchar(255) not null, primary key (id));
+create table company_categories_tbl (category_id bigint not null, company_id bigint not null);
+create table products (price float(53) not null, category_id bigint, product_code bigint generated by default as identity, expiry_date Date not null, mfg_date varchar(255) not null, name varchar(255) not null unique, primary key (product_code));
+
+alter table if exists categories_products add constraint FKce2s6ynpcg2ddpls685jg2gqn foreign key (products_product_code) references products;
+alter table if exists categories_products add constraint FK2a3u5mbtmtq3d4s5abajhhksf foreign key (category_id) references categories;
+alter table if exists company_categories_tbl add constraint FKd0g2opj3mgwvvjtf0wypw021l foreign key (category_id) references categories;
+alter table if exists company_categories_tbl add constraint FKfqjue2tahtucir2rnopf1kqyu foreign key (company_id) references company;
+alter table if exists products add constraint FKog2rp4qthbtt2lfyhfo32lsw9 foreign key (category_id) references categories;
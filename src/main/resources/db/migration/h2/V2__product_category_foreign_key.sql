@@ -0,0 +1,21 @@
+-- Category.products is mapped by PRODUCTS.CATEGORY_ID alone and a company's categories are a set.
+
+-- The one-off upgrade script that preceded this migration may have dropped the join table already;
+-- an empty stand-in lets the backfill below run either way
+create table if not exists categories_products (category_id bigint not null, products_product_code bigint not null);
+
+-- Products linked only through the join table take their category from it
+update products p
+set category_id = (select cp.category_id from categories_products cp where cp.products_product_code = p.product_code)
+where p.category_id is null;
+
+drop table categories_products;
+
+-- A set holds each pair once: drop duplicates the bag may have stored, then let the primary key enforce it
+create table company_categories_dedup as
+    select distinct company_id, category_id from company_categories_tbl;
+delete from company_categories_tbl;
+insert into company_categories_tbl (company_id, category_id)
+    select company_id, category_id from company_categories_dedup;
+drop table company_categories_dedup;
+alter table company_categories_tbl add primary key (category_id, company_id);
@@ -0,0 +1,17 @@
+-- Indexes for the lookups of CompanyRepo, CategoryRepo and ProductRepo. Company and product names are
+-- already unique, and categories and products are found by primary key once their parent is known.
+
+-- The categories of a company in category order, for every finder that joins Company.categories
+create index IDX_COMPANY_CATEGORIES_COMPANY on company_categories_tbl (company_id, category_id);
+
+-- The next deleted company for DeletedCompanyPurgeJob, CompanyRepo.findNextDeletedId
+create index IDX_COMPANY_DELETED_AT on company (deleted_at, id);
+
+-- CategoryRepo.findByName
+create index IDX_CATEGORIES_NAME on categories (name);
+
+-- The products of a category in code order: listings, pages, single lookups and the export stream
+create index IDX_PRODUCTS_CATEGORY_CODE on products (category_id, product_code);
+
+-- The stats per category: counts by expiry date range and the price aggregates, read from the index alone
+create index IDX_PRODUCTS_CATEGORY_EXPIRY on products (category_id, expiry_date, price);
@@ -0,0 +1,8 @@
+-- Product codes come from PRODUCT_SEQ in blocks of 50 instead of the database's identity column.
+-- Move the sequence past the highest code in use, so the next block starts above it.
+
+-- A fetched value v hands out the codes v - 49 to v
+alter sequence product_seq restart with (
+    select greatest(coalesce(max(product_code) + 50, 1),
+                    (select base_value from information_schema.sequences where sequence_name = 'PRODUCT_SEQ'))
+    from products);
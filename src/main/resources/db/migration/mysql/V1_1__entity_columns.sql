@@ -0,0 +1,24 @@
+-- The columns, tables and sequence the entities gained before the migrations existed.
+
+-- Optimistic locking and ETags, existing rows start at version 0
+alter table categories add column version bigint not null default 0;
+alter table company add column version bigint not null default 0;
+alter table products add column version bigint not null default 0;
+
+-- Soft deleted companies, purged by DeletedCompanyPurgeJob
+alter table company add column deleted_at datetime(6);
+
+-- Manufacturing dates were stored as text in the ISO format
+alter table products modify column mfg_date date not null;
+
+-- Product codes come from this sequence table, moved past the codes in use by V4. The auto increment of
+-- PRODUCT_CODE is left in place, it only applies to inserts without a code, which Hibernate never makes.
+create table product_seq (next_val bigint) engine=InnoDB;
+insert into product_seq values (1);
+
+-- The per-category figures of CatalogStatsServiceImpl, filled in at startup
+create table category_stats (max_price float(53), min_price float(53), price_sum float(53) not null, category_id bigint not null, product_count bigint not null, primary key (category_id)) engine=InnoDB;
+
+-- The range filters of the product search
+create index IDX_PRODUCTS_EXPIRY_DATE on products (expiry_date);
+create index IDX_PRODUCTS_PRICE on products (price);
@@ -0,0 +1,18 @@
+-- The schema as Hibernate's ddl-auto created it for the entities before the migrations existed.
+-- Databases created that way are baselined at this version and only run the later migrations.
+
+create table categories (id bigint not null auto_increment, last_name varchar(255) not null, name varchar(255) not null, primary key (id)) engine=InnoDB;
+create table categories_products (category_id bigint not null, products_product_code bigint not null) engine=InnoDB;
+create table company (id bigint not null auto_increment, city varchar(255) not null, name varchar(255) not null, state varchar(255) not null, primary key (id)) engine=InnoDB;
+create table company_categories_tbl (category_id bigint not null, company_id bigint not null) engine=InnoDB;
+create table products (price float(53) not null, category_id bigint, product_code bigint not null auto_increment, expiry_date Date not null, mfg_date varchar(255) not null, name varchar(255) not null, primary key (product_code)) engine=InnoDB;
+
+alter table categories_products add constraint UK_5mc3ph2m4f8dvo5g7ge7x2tf9 unique (products_product_code);
+alter table company add constraint UK_niu8sfil2gxywcru9ah3r4ec5 unique (name);
+alter table products add constraint UK_o61fmio5yukmmiqgnxf8pnavn unique (name);
+
+alter table categories_products add constraint FKce2s6ynpcg2ddpls685jg2gqn foreign key (products_product_code) references products (product_code);
+alter table categories_products add constraint FK2a3u5mbtmtq3d4s5abajhhksf foreign key (category_id) references categories (id);
+alter table company_categories_tbl add constraint FKd0g2opj3mgwvvjtf0wypw021l foreign key (category_id) references categories (id);
+alter table company_categories_tbl add constraint FKfqjue2tahtucir2rnopf1kqyu foreign key (company_id) references company (id);
+alter table products add constraint FKog2rp4qthbtt2lfyhfo32lsw9 foreign key (category_id) references categories (id);
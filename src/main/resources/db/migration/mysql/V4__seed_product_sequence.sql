@@ -0,0 +1,7 @@
+-- Product codes come from PRODUCT_SEQ in blocks of 50 instead of the database's auto increment.
+-- Move the sequence past the highest code in use, so the next block starts above it.
+
+-- A fetched value v hands out the codes v - 49 to v
+update product_seq
+set next_val = (select max(product_code) + 50 from products)
+where next_val - 50 < (select max(product_code) from products);
@@ -0,0 +1,164 @@
+package com.telusko.MultProfilesApp;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.configuration.FluentConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the H2 migrations on an empty in-memory database, or on one created before the migrations existed.
+ * The mappings are validated against the migrated schema by every Spring Boot test; these tests cover
+ * the data the migrations move and the indexes they add.
+ */
+class SchemaMigrationTest {
+    // What Hibernate's ddl-auto created for the entities before the migrations existed
+    private static final List<String> BASELINE_SCHEMA = List.of(
+            "create table categories (id bigint generated by default as identity, last_name varchar(255) not null, name varchar(255) not null, primary key (id))",
+            "create table categories_products (category_id bigint not null, products_product_code bigint not null unique)",
+            "create table company (id bigint generated by default as identity, city varchar(255) not null, name varchar(255) not null unique, state varchar(255) not null, primary key (id))",
+            "create table company_categories_tbl (category_id bigint not null, company_id bigint not null)",
+            "create table products (price float(53) not null, category_id bigint, product_code bigint generated by default as identity, expiry_date Date not null, mfg_date varchar(255) not null, name varchar(255) not null unique, primary key (product_code))",
+            "alter table if exists categories_products add constraint FKce2s6ynpcg2ddpls685jg2gqn foreign key (products_product_code) references products",
+            "alter table if exists categories_products add constraint FK2a3u5mbtmtq3d4s5abajhhksf foreign key (category_id) references categories",
+            "alter table if exists company_categories_tbl add constraint FKd0g2opj3mgwvvjtf0wypw021l foreign key (category_id) references categories",
+            "alter table if exists company_categories_tbl add constraint FKfqjue2tahtucir2rnopf1kqyu foreign key (company_id) references company",
+            "alter table if exists products add constraint FKog2rp4qthbtt2lfyhfo32lsw9 foreign key (category_id) references categories");
+
+    private final DataSource dataSource =
+            new DriverManagerDataSource("jdbc:h2:mem:migration;DB_CLOSE_DELAY=-1", "sa", "");
+    private final JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("drop all objects");
+    }
+
+    /**
+     * Test that rows stored through the join tables of the first schema keep their links after the upgrade.
+     */
+    @Test
+    void upgradesJoinTableRows() {
+        flyway("1").migrate();
+        jdbcTemplate.update("insert into company (id, name, city, state) values (1, 'Tata', 'Mumbai', 'Maharashtra')");
+        jdbcTemplate.update("insert into categories (id, name, last_name) values (10, 'Dairy', 'Food'), (11, 'Bakery', 'Food')");
+        // The bag could store a pair twice
+        jdbcTemplate.update("insert into company_categories_tbl (company_id, category_id) values (1, 10), (1, 10), (1, 11)");
+        jdbcTemplate.update("insert into products (product_code, name, price, mfg_date, expiry_date, category_id) values "
+                + "(100, 'Milk', 50.0, '2024-01-01', '2024-01-08', null), "
+                + "(101, 'Bread', 40.0, '2024-01-01', '2024-01-04', 11)");
+        jdbcTemplate.update("insert into categories_products (category_id, products_product_code) values (10, 100), (11, 101)");
+
+        flyway(null).migrate();
+
+        assertEquals(List.of(10L, 11L), jdbcTemplate.queryForList(
+                "select category_id from products order by product_code", Long.class));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "select count(*) from information_schema.tables where table_name = 'CATEGORIES_PRODUCTS'", Integer.class));
+        assertEquals(2, jdbcTemplate.queryForObject("select count(*) from company_categories_tbl", Integer.class));
+        assertThrows(DuplicateKeyException.class, () -> jdbcTemplate.update(
+                "insert into company_categories_tbl (company_id, category_id) values (1, 10)"));
+    }
+
+    /**
+     * Test that a database the one-off upgrade script already moved off the join table still migrates.
+     */
+    @Test
+    void upgradesWithoutJoinTable() {
+        flyway("1").migrate();
+        jdbcTemplate.update("insert into categories (id, name, last_name) values (10, 'Dairy', 'Food')");
+        jdbcTemplate.update("insert into products (product_code, name, price, mfg_date, expiry_date, category_id) values "
+                + "(100, 'Milk', 50.0, '2024-01-01', '2024-01-08', 10)");
+        jdbcTemplate.execute("drop table categories_products");
+
+        flyway(null).migrate();
+
+        assertEquals(List.of(10L), jdbcTemplate.queryForList("select category_id from products", Long.class));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "select count(*) from information_schema.tables where table_name = 'CATEGORIES_PRODUCTS'", Integer.class));
+    }
+
+    /**
+     * Test that a database Hibernate created for the original entities, without any migration history,
+     * is baselined and upgraded to the same schema a new database gets, keeping its rows.
+     */
+    @Test
+    void upgradesDatabaseCreatedBeforeMigrations() {
+        BASELINE_SCHEMA.forEach(jdbcTemplate::execute);
+        jdbcTemplate.update("insert into company (id, name, city, state) values (1, 'Tata', 'Mumbai', 'Maharashtra')");
+        jdbcTemplate.update("insert into categories (id, name, last_name) values (10, 'Dairy', 'Food')");
+        jdbcTemplate.update("insert into company_categories_tbl (company_id, category_id) values (1, 10)");
+        jdbcTemplate.update("insert into products (name, price, mfg_date, expiry_date) values ('Milk', 50.0, '2024-01-01', '2024-01-08')");
+        jdbcTemplate.update("insert into categories_products (category_id, products_product_code) values (10, 1)");
+
+        Flyway.configure().dataSource(dataSource).locations("classpath:db/migration/h2")
+                .baselineOnMigrate(true).load().migrate();
+
+        assertEquals(List.of(Map.of("CATEGORY_ID", 10L, "VERSION", 0L, "MFG_DATE", Date.valueOf("2024-01-01"))),
+                jdbcTemplate.queryForList("select category_id, version, mfg_date from products"));
+        assertEquals(0L, jdbcTemplate.queryForObject("select version from company where deleted_at is null", Long.class));
+        assertEquals(51L, jdbcTemplate.queryForObject("select next value for product_seq", Long.class));
+        List<Map<String, Object>> upgraded = columns();
+
+        jdbcTemplate.execute("drop all objects");
+        flyway(null).migrate();
+        assertEquals(columns(), upgraded);
+    }
+
+    /**
+     * Test that the product sequence is moved past the codes handed out before it existed,
+     * and left at its start on an empty database.
+     */
+    @Test
+    void seedsProductSequenceAboveExistingCodes() {
+        flyway("3").migrate();
+        jdbcTemplate.update("insert into categories (id, name, last_name, version) values (10, 'Dairy', 'Food', 0)");
+        jdbcTemplate.update("insert into products (product_code, name, price, mfg_date, expiry_date, category_id, version) values "
+                + "(7, 'Milk', 50.0, '2024-01-01', '2024-01-08', 10, 0), "
+                + "(120, 'Curd', 40.0, '2024-01-01', '2024-01-04', 10, 0)");
+
+        flyway(null).migrate();
+
+        // Hibernate hands out the block of 50 codes below the fetched value
+        assertEquals(170L, jdbcTemplate.queryForObject("select next value for product_seq", Long.class));
+        jdbcTemplate.execute("drop all objects");
+        flyway(null).migrate();
+        assertEquals(1L, jdbcTemplate.queryForObject("select next value for product_seq", Long.class));
+    }
+
+    /**
+     * Test that the lookups of the repositories have their indexes.
+     */
+    @Test
+    void createsLookupIndexes() {
+        flyway(null).migrate();
+
+        List<String> indexes = jdbcTemplate.queryForList("select index_name from information_schema.indexes", String.class);
+        assertTrue(indexes.containsAll(List.of("IDX_COMPANY_CATEGORIES_COMPANY", "IDX_COMPANY_DELETED_AT",
+                "IDX_CATEGORIES_NAME", "IDX_PRODUCTS_CATEGORY_CODE", "IDX_PRODUCTS_CATEGORY_EXPIRY")), indexes.toString());
+    }
+
+    private List<Map<String, Object>> columns() {
+        return jdbcTemplate.queryForList("select table_name, column_name, data_type, is_nullable "
+                + "from information_schema.columns where table_schema = 'PUBLIC' order by table_name, column_name");
+    }
+
+    private Flyway flyway(String target) {
+        FluentConfiguration configuration = Flyway.configure().dataSource(dataSource).locations("classpath:db/migration/h2");
+        if (target != null) {
+            configuration.target(target);
+        }
+        return configuration.load();
+    }
+}
@@ -0,0 +1,146 @@
+package com.telusko.MultProfilesApp.config;
+
+import com.telusko.MultProfilesApp.dao.CompanyRepo;
+import com.telusko.MultProfilesApp.dto.CompanyDto;
+import com.telusko.MultProfilesApp.model.Company;
+import com.telusko.MultProfilesApp.service.impl.CompanyServiceImpl;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasItem;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Two in-memory H2 databases stand in for the primary and the replica. Nothing replicates between them,
+ * so the rows a read returns tell which of the two served it.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:primary",
+        "app.datasource.replica.jdbc-url=jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1",
+        "app.datasource.routing.health-check-ms=3600000"})
+@AutoConfigureMockMvc
+@ActiveProfiles({"test", "replica"})
+class ReplicaRoutingTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private CompanyServiceImpl companyService;
+    @Autowired
+    private CompanyRepo companyRepo;
+    @Autowired
+    private ReplicaRoutingDataSource routing;
+    @Autowired
+    private ReadYourWrites readYourWrites;
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private DataSource primaryDataSource;
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private DataSource replicaDataSource;
+
+    private JdbcTemplate primary;
+    private JdbcTemplate replica;
+
+    @BeforeEach
+    void setUp() {
+        primary = new JdbcTemplate(primaryDataSource);
+        replica = new JdbcTemplate(replicaDataSource);
+
+        // Give the replica the schema Hibernate created on the primary
+        replica.execute("DROP ALL OBJECTS");
+        List<String> schema = primary.queryForList("SCRIPT NODATA", String.class);
+        schema.forEach(replica::execute);
+
+        primary.update("INSERT INTO COMPANY (ID, NAME, CITY, STATE, VERSION) VALUES (1000000, 'Primary Co', 'Pune', 'MH', 0)");
+        replica.update("INSERT INTO COMPANY (ID, NAME, CITY, STATE, VERSION) VALUES (1000000, 'Replica Co', 'Pune', 'MH', 0)");
+        readYourWrites.unpin();
+    }
+
+    @AfterEach
+    void tearDown() {
+        routing.setReplicaHealthy(true);
+        readYourWrites.unpin();
+        companyRepo.deleteAll();
+    }
+
+    /**
+     * Test that read-only service methods are served by the replica.
+     */
+    @Test
+    void testReadsGoToReplica() {
+        List<CompanyDto> companies = companyService.getAllCompanies();
+
+        assertEquals(List.of("Replica Co"), companies.stream().map(CompanyDto::getName).toList());
+    }
+
+    /**
+     * Test that reads of a caller that just wrote go to the primary and see the write.
+     */
+    @Test
+    void testReadAfterWriteGoesToPrimary() {
+        companyService.addCompany(company("Written Co"));
+
+        List<CompanyDto> companies = companyService.getAllCompanies();
+
+        assertEquals(List.of("Primary Co", "Written Co"), companies.stream().map(CompanyDto::getName).sorted().toList());
+    }
+
+    /**
+     * Test that reads fall back to the primary while the replica is down and move back once it recovers.
+     */
+    @Test
+    void testUnhealthyReplicaFallsBackToPrimary() {
+        routing.setReplicaHealthy(false);
+        assertEquals("Primary Co", companyService.getAllCompanies().get(0).getName());
+
+        routing.checkReplica(1);
+        assertEquals("Replica Co", companyService.getAllCompanies().get(0).getName());
+    }
+
+    /**
+     * Test that a write request hands out a cookie that pins the client's next requests to the primary.
+     */
+    @Test
+    void testWriteRequestPinsClientToPrimary() throws Exception {
+        Cookie pin = mockMvc.perform(post("/company")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Posted Co\",\"city\":\"Pune\",\"state\":\"MH\"}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getCookie(ReadYourWrites.COOKIE);
+        assertNotNull(pin);
+
+        mockMvc.perform(get("/company").cookie(pin))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].name", hasItem("Posted Co")));
+        mockMvc.perform(get("/company"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].name", contains("Replica Co")));
+    }
+
+    private static Company company(String name) {
+        Company company = new Company();
+        company.setName(name);
+        company.setCity("Pune");
+        company.setState("MH");
+        return company;
+    }
+}
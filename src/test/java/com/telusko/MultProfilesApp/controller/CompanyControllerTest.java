@@ -0,0 +1,260 @@
+package com.telusko.MultProfilesApp.controller;
+
+import com.telusko.MultProfilesApp.dao.CompanyRepo;
+import com.telusko.MultProfilesApp.metrics.SqlStatementMetricsFilter;
+import com.telusko.MultProfilesApp.model.Category;
+import com.telusko.MultProfilesApp.model.Company;
+import com.telusko.MultProfilesApp.service.ImportService;
+import com.telusko.MultProfilesApp.service.impl.ImportServiceImpl;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class CompanyControllerTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private CompanyRepo companyRepo;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private ImportServiceImpl importService;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @AfterEach
+    void tearDown() {
+        companyRepo.deleteAll();
+    }
+
+    /**
+     * Test that listing companies with their categories issues the same number of statements
+     * whether the page holds a few companies or many.
+     */
+    @Test
+    void getAllCompaniesUsesFixedNumberOfQueries() throws Exception {
+        saveCompanies(0, 3);
+        long fewCompanies = countStatementsForListing(3);
+
+        saveCompanies(3, 30);
+        long manyCompanies = countStatementsForListing(30);
+
+        // One query for the page of companies and one batch query for all of their categories
+        assertEquals(2, fewCompanies);
+        assertEquals(fewCompanies, manyCompanies);
+    }
+
+    /**
+     * Test that the export writes the categories and then the products in code order,
+     * and that it resumes after a product code and compresses on request.
+     */
+    @Test
+    void exportCatalogAsNdjson() throws Exception {
+        String file = """
+                {"company":"Export Co","city":"Pune","state":"MH","category":"Dairy","categoryType":"Food","product":"Export Milk","price":30,"mfgDate":"2024-01-01","expiryDate":"2024-01-08"}
+                {"company":"Export Co","category":"Bakery","categoryType":"Food","product":"Export Bread","price":40,"mfgDate":"2024-01-02","expiryDate":"2024-01-06"}
+                {"company":"Export Co","category":"Empty","categoryType":"None"}
+                """;
+        importService.importRecords(new ByteArrayInputStream(file.getBytes(StandardCharsets.UTF_8)), ImportService.Format.NDJSON);
+        Long id = companyRepo.findByName("Export Co").getId();
+
+        List<String> lines = export(get("/company/{id}/export", id));
+        assertEquals(5, lines.size());
+        assertTrue(lines.get(0).contains("\"category\":\"Dairy\"") && !lines.get(0).contains("product"));
+        assertTrue(lines.get(2).contains("\"category\":\"Empty\""));
+        assertTrue(lines.get(3).contains("\"product\":\"Export Milk\",\"price\":30.0,\"mfgDate\":\"2024-01-01\""));
+
+        String firstCode = lines.get(3).replaceAll(".*\"code\":(\\d+).*", "$1");
+        double statementsBefore = exportStatements();
+        List<String> resumed = export(get("/company/{id}/export", id).param("after", firstCode));
+        assertEquals(List.of(lines.get(4)), resumed);
+        // The company check is served from the cache now, the statements all ran on the streaming thread
+        assertTrue(exportStatements() > statementsBefore);
+
+        MvcResult result = mockMvc.perform(get("/company/{id}/export", id).header("Accept-Encoding", "gzip")).andReturn();
+        result = mockMvc.perform(asyncDispatch(result)).andExpect(header().string("Content-Encoding", "gzip")).andReturn();
+        try (GZIPInputStream unzipped = new GZIPInputStream(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()))) {
+            assertEquals(String.join("\n", lines) + "\n", new String(unzipped.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        mockMvc.perform(get("/company/{id}/export", 0)).andExpect(status().isNotFound());
+    }
+
+    /**
+     * Test that an unchanged company is answered with 304 from its version alone,
+     * and that an update is refused unless If-Match carries the current version.
+     */
+    @Test
+    void conditionalGetAndUpdate() throws Exception {
+        saveCompanies(0, 1);
+        Long id = companyRepo.findByName("Company 0").getId();
+
+        mockMvc.perform(get("/company/{id}", id))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"0\""));
+
+        statistics.clear();
+        mockMvc.perform(get("/company/{id}", id).header("If-None-Match", "\"0\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        // Only the version is read, neither the company row nor its categories
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        String update = "{\"name\":\"Company 0\",\"city\":\"Pune\",\"state\":\"Maharashtra\"}";
+        mockMvc.perform(put("/company/{id}", id).header("If-Match", "\"5\"")
+                        .contentType(MediaType.APPLICATION_JSON).content(update))
+                .andExpect(status().isPreconditionFailed());
+        mockMvc.perform(put("/company/{id}", id).header("If-Match", "\"0\"")
+                        .contentType(MediaType.APPLICATION_JSON).content(update))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/company/{id}", id).header("If-None-Match", "\"0\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1\""))
+                .andExpect(jsonPath("$.city").value("Pune"));
+    }
+
+    /**
+     * Test that renaming a category shared by two companies changes the entity tag and the cached
+     * categories of the company it was not renamed through as well.
+     */
+    @Test
+    void updateSharedCategory() throws Exception {
+        saveCompanies(0, 2);
+        Long ownerId = companyRepo.findByName("Company 0").getId();
+        Long otherId = companyRepo.findByName("Company 1").getId();
+        Long categoryId = jdbcTemplate.queryForObject(
+                "select min(category_id) from COMPANY_CATEGORIES_TBL where company_id = ?", Long.class, ownerId);
+        jdbcTemplate.update("insert into COMPANY_CATEGORIES_TBL (company_id, category_id) values (?, ?)", otherId, categoryId);
+
+        mockMvc.perform(get("/company/{id}", otherId))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"0\""));
+
+        mockMvc.perform(put("/company/{companyId}/category/{catId}", ownerId, categoryId)
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"name\":\"Appliances\",\"type\":\"Home\"}"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/company/{id}", otherId).header("If-None-Match", "\"0\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1\""))
+                .andExpect(jsonPath("$.categories[?(@.id == " + categoryId + ")].name").value("Appliances"));
+    }
+
+    /**
+     * Test that repeating an upsert leaves the company unchanged, and that only a real change
+     * moves its version on.
+     */
+    @Test
+    void upsertByName() throws Exception {
+        String body = "{\"city\":\"Mumbai\",\"state\":\"Maharashtra\"}";
+        mockMvc.perform(put("/company/by-name/{name}", "Tata").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.status").value("CREATED"));
+        mockMvc.perform(put("/company/by-name/{name}", "Tata").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("UNCHANGED"));
+        Long id = companyRepo.findByName("Tata").getId();
+        mockMvc.perform(get("/company/{id}", id))
+                .andExpect(header().string("ETag", "\"0\""));
+
+        String batch = "[{\"name\":\"Tata\",\"city\":\"Pune\",\"state\":\"Maharashtra\"}," +
+                "{\"name\":\"Infosys\",\"city\":\"Bengaluru\",\"state\":\"Karnataka\"}," +
+                "{\"name\":\"Wipro\"}]";
+        mockMvc.perform(put("/company/by-name").contentType(MediaType.APPLICATION_JSON).content(batch))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.updated").value(1))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.records[2].error").value("city and state are required"));
+        mockMvc.perform(put("/company/by-name").contentType(MediaType.APPLICATION_JSON).content(batch))
+                .andExpect(jsonPath("$.unchanged").value(2));
+
+        mockMvc.perform(get("/company/{id}", id))
+                .andExpect(header().string("ETag", "\"1\""))
+                .andExpect(jsonPath("$.city").value("Pune"));
+    }
+
+    private double exportStatements() {
+        DistributionSummary summary = meterRegistry.find(SqlStatementMetricsFilter.METRIC_NAME)
+                .tag("uri", "/company/{id}/export").summary();
+        return summary != null ? summary.totalAmount() : 0;
+    }
+
+    private List<String> export(MockHttpServletRequestBuilder request) throws Exception {
+        MvcResult result = mockMvc.perform(request).andReturn();
+        return mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString().lines().toList();
+    }
+
+    private long countStatementsForListing(int expectedCompanies) throws Exception {
+        statistics.clear();
+        mockMvc.perform(get("/company").param("limit", "100"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(expectedCompanies))
+                .andExpect(jsonPath("$.items[0].categories.length()").value(2));
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void saveCompanies(int from, int to) {
+        for (int i = from; i < to; i++) {
+            Company company = new Company();
+            company.setName("Company " + i);
+            company.setCity("Mumbai");
+            company.setState("Maharashtra");
+
+            Set<Category> categories = new LinkedHashSet<>();
+            for (String name : List.of("Electronics", "Grocery")) {
+                Category category = new Category();
+                category.setName(name);
+                category.setType(name);
+                categories.add(category);
+            }
+            company.setCategories(categories);
+            companyRepo.save(company);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.telusko.MultProfilesApp.controller;
+
+import com.telusko.MultProfilesApp.dao.CompanyRepo;
+import com.telusko.MultProfilesApp.dao.ProductRepo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "app.import.batch-size=2")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ImportControllerTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private CompanyRepo companyRepo;
+    @Autowired
+    private ProductRepo productRepo;
+
+    @AfterEach
+    void tearDown() {
+        companyRepo.deleteAll();
+    }
+
+    /**
+     * Test that companies and categories are created once and referenced by name across batches,
+     * and that invalid lines are reported by line number without stopping the import.
+     */
+    @Test
+    void importNdjson() throws Exception {
+        String file = """
+                {"company":"Acme","city":"Pune","state":"MH","category":"Dairy","categoryType":"Food","product":"Milk","price":30,"mfgDate":"2024-01-01","expiryDate":"2024-01-08"}
+                {"company":"Acme","category":"Dairy","product":"Curd","price":-1,"mfgDate":"2024-01-01","expiryDate":"2024-01-08"}
+                {"company":"Acme","category":"Dairy","product":"Milk","price":35,"mfgDate":"2024-01-01","expiryDate":"2024-01-08"}
+
+                {"company":"Acme","category":"Bakery","categoryType":"Food","product":"Bread","price":40,"mfgDate":"2024-01-02","expiryDate":"2024-01-06"}
+                not json
+                {"company":"Globex","category":"Dairy","product":"Butter","price":60,"mfgDate":"2024-01-03","expiryDate":"2024-03-01"}
+                {"company":"Acme","category":"Dairy","product":"Cheese","price":90,"mfgDate":"2024-01-03","expiryDate":"2024-06-01"}
+                """;
+
+        mockMvc.perform(post("/import").contentType(MediaType.APPLICATION_NDJSON).content(file))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.companies").value(1))
+                .andExpect(jsonPath("$.categories").value(2))
+                .andExpect(jsonPath("$.products").value(3))
+                .andExpect(jsonPath("$.rejected").value(4))
+                .andExpect(jsonPath("$.errors").value(contains(
+                        equalTo("line 2: price must be zero or more"),
+                        equalTo("line 3: product name already exists"),
+                        startsWith("line 6: malformed record"),
+                        equalTo("line 7: city and state are required for a new company"))));
+
+        assertEquals(1, companyRepo.count());
+        assertEquals(3, productRepo.count());
+    }
+
+    /**
+     * Test that CSV columns are matched by the header names, including quoted fields.
+     */
+    @Test
+    void importCsv() throws Exception {
+        String file = """
+                product,price,mfgDate,expiryDate,company,city,state,category,categoryType
+                "Tea, green",120,2024-01-01,2025-01-01,Initech,Austin,TX,Beverages,Food
+                "Coffee \"\"Arabica\"\"\",300,2024-01-01,2025-01-01,Initech,,,Beverages,
+                """;
+
+        mockMvc.perform(post("/import").contentType("text/csv").content(file))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.products").value(2))
+                .andExpect(jsonPath("$.rejected").value(0));
+
+        assertEquals("Coffee \"Arabica\"", productRepo.findByName("Coffee \"Arabica\"").getName());
+        assertEquals(120.0, productRepo.findByName("Tea, green").getPrice());
+    }
+}
@@ -0,0 +1,265 @@
+package com.telusko.MultProfilesApp.controller;
+
+import com.telusko.MultProfilesApp.dao.CompanyRepo;
+import com.telusko.MultProfilesApp.model.Category;
+import com.telusko.MultProfilesApp.model.Company;
+import com.telusko.MultProfilesApp.model.Product;
+import com.telusko.MultProfilesApp.service.impl.CategoryServiceImpl;
+import com.telusko.MultProfilesApp.service.impl.ProductServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.nullValue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ProductControllerTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private CompanyRepo companyRepo;
+    @Autowired
+    private ProductServiceImpl productService;
+    @Autowired
+    private CategoryServiceImpl categoryService;
+    private Long companyId;
+    private String path;
+
+    @BeforeEach
+    void setUp() {
+        Company company = new Company();
+        company.setName("Search Company");
+        company.setCity("Mumbai");
+        company.setState("Maharashtra");
+        Category category = new Category();
+        category.setName("Grocery");
+        category.setType("Grocery");
+        company.setCategories(new LinkedHashSet<>(List.of(category)));
+        companyRepo.save(company);
+        companyId = company.getId();
+        Long categoryId = company.getCategories().iterator().next().getId();
+
+        productService.addProducts(company.getId(), categoryId, List.of(
+                product("Milk", 30.0, "2024-01-01", "2024-01-08"),
+                product("Milk_Powder", 250.0, "2024-01-01", "2025-01-01"),
+                product("Bread", 40.0, "2024-01-02", "2024-01-06"),
+                product("Butter", 60.0, "2024-01-03", "2024-03-01")));
+        path = "/company/" + company.getId() + "/category/" + categoryId + "/product/search";
+    }
+
+    @AfterEach
+    void tearDown() {
+        companyRepo.deleteAll();
+    }
+
+    /**
+     * Test that the filters are combined and the dates are written as yyyy-MM-dd.
+     */
+    @Test
+    void searchByPriceRangeAndExpiryWindow() throws Exception {
+        mockMvc.perform(get(path)
+                        .param("minPrice", "35")
+                        .param("maxPrice", "100")
+                        .param("expiryTo", "2024-01-31"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].name").value(contains("Bread")))
+                .andExpect(jsonPath("$.items[0].expiryDate").value("2024-01-06"))
+                .andExpect(jsonPath("$.nextCursor").value(nullValue()));
+    }
+
+    /**
+     * Test that the name prefix is matched literally and that the results are paginated.
+     */
+    @Test
+    void searchByNamePrefixPageByPage() throws Exception {
+        mockMvc.perform(get(path).param("name", "Milk_"))
+                .andExpect(jsonPath("$.items[*].name").value(contains("Milk_Powder")));
+
+        String nextCursor = mockMvc.perform(get(path).param("mfgFrom", "2024-01-01").param("limit", "2"))
+                .andExpect(jsonPath("$.items[*].name").value(contains("Milk", "Milk_Powder")))
+                .andReturn().getResponse().getContentAsString().replaceAll(".*\"nextCursor\":(\\d+).*", "$1");
+        mockMvc.perform(get(path).param("mfgFrom", "2024-01-01").param("limit", "2").param("after", nextCursor))
+                .andExpect(jsonPath("$.items[*].name").value(contains("Bread", "Butter")));
+    }
+
+    /**
+     * Test that a search without matches returns an empty page, and a missing category a 404.
+     */
+    @Test
+    void searchWithoutMatches() throws Exception {
+        mockMvc.perform(get(path).param("minPrice", "1000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items").isEmpty());
+        mockMvc.perform(get(path.replaceAll("/category/\\d+", "/category/0")))
+                .andExpect(status().isNotFound());
+    }
+
+    /**
+     * Test that a product is served with the columns of its read model, including its category.
+     */
+    @Test
+    void getProductByIdServesReadModel() throws Exception {
+        String list = path.replace("/search", "");
+        String code = mockMvc.perform(get(path).param("name", "Butter"))
+                .andReturn().getResponse().getContentAsString().replaceAll(".*\"code\":(\\d+).*", "$1");
+
+        mockMvc.perform(get(list + "/" + code))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Butter"))
+                .andExpect(jsonPath("$.expiryDate").value("2024-03-01"))
+                .andExpect(jsonPath("$.version").value(0))
+                .andExpect(jsonPath("$.category.name").value("Grocery"))
+                .andExpect(jsonPath("$.category.products").doesNotExist());
+    }
+
+    /**
+     * Test that an unchanged page of products is answered with 304, and that a product write
+     * with an outdated If-Match is refused and changes the tag of the page.
+     */
+    @Test
+    void conditionalListingAndUpdate() throws Exception {
+        String list = path.replace("/search", "");
+        String pageTag = mockMvc.perform(get(list))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        mockMvc.perform(get(list).header("If-None-Match", pageTag))
+                .andExpect(status().isNotModified());
+
+        String code = mockMvc.perform(get(path).param("name", "Bread"))
+                .andReturn().getResponse().getContentAsString().replaceAll(".*\"code\":(\\d+).*", "$1");
+        String productTag = mockMvc.perform(get(list + "/" + code))
+                .andReturn().getResponse().getHeader("ETag");
+        String update = "{\"name\":\"Bread\",\"price\":45,\"mfgDate\":\"2024-01-02\",\"expiryDate\":\"2024-01-06\"}";
+        mockMvc.perform(put(list + "/" + code).header("If-Match", productTag)
+                        .contentType(MediaType.APPLICATION_JSON).content(update))
+                .andExpect(status().isOk());
+        mockMvc.perform(put(list + "/" + code).header("If-Match", productTag)
+                        .contentType(MediaType.APPLICATION_JSON).content(update))
+                .andExpect(status().isPreconditionFailed());
+
+        mockMvc.perform(get(list).header("If-None-Match", pageTag))
+                .andExpect(status().isOk());
+    }
+
+    /**
+     * Test that the stats of a category are aggregated over its products, and that a missing company is a 404.
+     */
+    @Test
+    void companyStatsPerCategory() throws Exception {
+        Long categoryId = Long.valueOf(path.replaceAll(".*/category/(\\d+)/.*", "$1"));
+        LocalDate today = LocalDate.now();
+        productService.addProduct(companyId, categoryId,
+                new Product("Curd", 20.0, today.minusDays(2), today.plusDays(3), null));
+
+        mockMvc.perform(get("/company/" + companyId + "/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.expiringWithinDays").value(7))
+                .andExpect(jsonPath("$.categories[0].name").value("Grocery"))
+                .andExpect(jsonPath("$.categories[0].productCount").value(5))
+                .andExpect(jsonPath("$.categories[0].minPrice").value(20.0))
+                .andExpect(jsonPath("$.categories[0].maxPrice").value(250.0))
+                .andExpect(jsonPath("$.categories[0].averagePrice").value(80.0))
+                .andExpect(jsonPath("$.categories[0].expiringSoon").value(1));
+        mockMvc.perform(get("/company/" + companyId + "/stats").param("expiringWithinDays", "2"))
+                .andExpect(jsonPath("$.categories[0].expiringSoon").value(0));
+        mockMvc.perform(get("/company/0/stats"))
+                .andExpect(status().isNotFound());
+    }
+
+    /**
+     * Test that a price change is applied to the filtered products only, in one request, and that
+     * the changed products are served with their new price and a new tag.
+     */
+    @Test
+    void repriceFilteredProducts() throws Exception {
+        String list = path.replace("/search", "");
+        String code = mockMvc.perform(get(path).param("name", "Butter"))
+                .andReturn().getResponse().getContentAsString().replaceAll(".*\"code\":(\\d+).*", "$1");
+        String productTag = mockMvc.perform(get(list + "/" + code))
+                .andExpect(jsonPath("$.price").value(60.0))
+                .andReturn().getResponse().getHeader("ETag");
+
+        // 10% off everything under 100 that expires by the end of March: Milk, Bread and Butter
+        mockMvc.perform(post(list + "/reprice").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"percent\":-10,\"maxPrice\":100,\"expiryTo\":\"2024-03-31\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.updated").value(3));
+        mockMvc.perform(get(list + "/" + code).header("If-None-Match", productTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.price").value(54.0));
+        mockMvc.perform(get(path).param("minPrice", "200"))
+                .andExpect(jsonPath("$.items[*].price").value(contains(250.0)));
+
+        // Prices are rounded to cents, and never brought below zero
+        mockMvc.perform(post(list + "/reprice").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"amount\":-29.996}"))
+                .andExpect(jsonPath("$.updated").value(3));
+        mockMvc.perform(get(list).param("limit", "10"))
+                .andExpect(jsonPath("$.items[*].price").value(contains(27.0, 220.0, 6.0, 24.0)));
+
+        mockMvc.perform(post(list + "/reprice").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"percent\":5,\"amount\":1}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post(list.replaceAll("/category/\\d+", "/category/0") + "/reprice")
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"percent\":5}"))
+                .andExpect(status().isNotFound());
+    }
+
+    /**
+     * Test that the product names of every category of a company are searched by word and word prefix,
+     * whole words and names starting with the query first, and that a renamed product is found by its new name.
+     */
+    @Test
+    void searchProductNamesAcrossCategories() throws Exception {
+        Category dairy = new Category();
+        dairy.setName("Dairy");
+        dairy.setType("Food");
+        categoryService.addCategory(dairy, companyId);
+        productService.addProduct(companyId, dairy.getId(), product("Almond Milk", 120.0, "2024-01-01", "2024-02-01"));
+        productService.addProduct(companyId, dairy.getId(), product("Milkshake", 80.0, "2024-01-01", "2024-01-05"));
+        String search = "/company/" + companyId + "/product/search";
+
+        mockMvc.perform(get(search).param("q", "milk"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].name").value(contains("Milk", "Milk_Powder", "Milkshake", "Almond Milk")));
+        mockMvc.perform(get(search).param("q", "MILK pow"))
+                .andExpect(jsonPath("$[*].name").value(contains("Milk_Powder")));
+        mockMvc.perform(get(search).param("q", "mil").param("limit", "1"))
+                .andExpect(jsonPath("$[*].name").value(contains("Milk")));
+
+        String code = mockMvc.perform(get(path).param("name", "Bread"))
+                .andReturn().getResponse().getContentAsString().replaceAll(".*\"code\":(\\d+).*", "$1");
+        mockMvc.perform(put(path.replace("/search", "/" + code)).contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Milk Bread\",\"price\":45,\"mfgDate\":\"2024-01-02\",\"expiryDate\":\"2024-01-06\"}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get(search).param("q", "bread"))
+                .andExpect(jsonPath("$[*].name").value(contains("Milk Bread")));
+        mockMvc.perform(get(search).param("q", "cheese"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").isEmpty());
+        mockMvc.perform(get("/company/0/product/search").param("q", "milk"))
+                .andExpect(status().isNotFound());
+    }
+
+    private static Product product(String name, double price, String mfgDate, String expiryDate) {
+        return new Product(name, price, LocalDate.parse(mfgDate), LocalDate.parse(expiryDate), null);
+    }
+}
@@ -0,0 +1,105 @@
+package com.telusko.MultProfilesApp.controller;
+
+import com.telusko.MultProfilesApp.dao.CompanyRepo;
+import com.telusko.MultProfilesApp.model.Category;
+import com.telusko.MultProfilesApp.model.Company;
+import com.telusko.MultProfilesApp.model.Product;
+import com.telusko.MultProfilesApp.service.impl.ProductServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ReactiveCatalogControllerTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private CompanyRepo companyRepo;
+    @Autowired
+    private ProductServiceImpl productService;
+
+    @AfterEach
+    void tearDown() {
+        companyRepo.deleteAll();
+    }
+
+    /**
+     * Test that the products of a category are streamed over R2DBC as one JSON document per line,
+     * and that the stream resumes after the given product code.
+     */
+    @Test
+    void streamProductsAsNdjson() throws Exception {
+        Company company = saveCompany("Reactive Company");
+        Long categoryId = company.getCategories().iterator().next().getId();
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            products.add(new Product("Reactive " + i, 10.0 + i, LocalDate.parse("2024-01-01"), LocalDate.parse("2026-01-01"), null));
+        }
+        productService.addProducts(company.getId(), categoryId, products);
+        String path = "/reactive/company/" + company.getId() + "/category/" + categoryId + "/product";
+
+        String[] lines = stream(path).split("\n");
+        assertEquals(5, lines.length);
+        assertTrue(lines[0].contains("\"name\":\"Reactive 0\""));
+        assertTrue(lines[0].contains("\"category\":{\"id\":" + categoryId));
+
+        Long secondCode = products.get(1).getCode();
+        assertEquals(3, stream(path + "?after=" + secondCode).split("\n").length);
+    }
+
+    /**
+     * Test that a missing company is reported with the usual error response before anything is streamed.
+     */
+    @Test
+    void streamCategoriesOfMissingCompany() throws Exception {
+        MvcResult result = mockMvc.perform(get("/reactive/company/{companyId}/category", 999)
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.errorMessage").value("Company Not Found"));
+    }
+
+    private String stream(String path) throws Exception {
+        MvcResult result = mockMvc.perform(get(path).accept(MediaType.APPLICATION_NDJSON)).andReturn();
+        // One dispatch for the path lookup and one for the stream itself
+        while (result.getRequest().isAsyncStarted()) {
+            result = mockMvc.perform(asyncDispatch(result)).andReturn();
+        }
+        assertEquals(200, result.getResponse().getStatus());
+        return result.getResponse().getContentAsString().trim();
+    }
+
+    private Company saveCompany(String name) {
+        Company company = new Company();
+        company.setName(name);
+        company.setCity("Mumbai");
+        company.setState("Maharashtra");
+
+        Category category = new Category();
+        category.setName("Electronics");
+        category.setType("Electronics");
+        company.setCategories(new LinkedHashSet<>(List.of(category)));
+        return companyRepo.save(company);
+    }
+}
@@ -0,0 +1,140 @@
+package com.telusko.MultProfilesApp.job;
+
+import com.telusko.MultProfilesApp.dao.CategoryRepo;
+import com.telusko.MultProfilesApp.dao.CompanyRepo;
+import com.telusko.MultProfilesApp.dao.ProductRepo;
+import com.telusko.MultProfilesApp.exceptions.company.CompanyNotFound;
+import com.telusko.MultProfilesApp.model.Category;
+import com.telusko.MultProfilesApp.model.Company;
+import com.telusko.MultProfilesApp.model.Product;
+import com.telusko.MultProfilesApp.service.CatalogStatsService;
+import com.telusko.MultProfilesApp.service.CompanyService;
+import com.telusko.MultProfilesApp.service.impl.ProductServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(properties = {"app.company-purge.chunk-size=2", "app.company-purge.pause-ms=0"})
+@ActiveProfiles("test")
+class DeletedCompanyPurgeJobTest {
+    @Autowired
+    private DeletedCompanyPurgeJob purgeJob;
+    @Autowired
+    private CompanyService companyService;
+    @Autowired
+    private CatalogStatsService catalogStatsService;
+    @Autowired
+    private ProductServiceImpl productService;
+    @Autowired
+    private CompanyRepo companyRepo;
+    @Autowired
+    private CategoryRepo categoryRepo;
+    @Autowired
+    private ProductRepo productRepo;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        companyRepo.deleteAll();
+    }
+
+    /**
+     * Test that a deleted company disappears from the reads and frees its name right away,
+     * and that the purge then removes its products, categories and row in chunks.
+     */
+    @Test
+    void deleteHidesCompanyAndPurgeRemovesItsRows() {
+        Company company = new Company();
+        company.setName("Big Tenant");
+        company.setCity("Mumbai");
+        company.setState("Maharashtra");
+        company.setCategories(new LinkedHashSet<>(List.of(category("Dairy"), category("Bakery"))));
+        companyRepo.save(company);
+        Long companyId = company.getId();
+        Long categoryId = company.getCategories().iterator().next().getId();
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            products.add(new Product("Product " + i, 10.0 * i, LocalDate.now(), LocalDate.now().plusDays(30), null));
+        }
+        productService.addProducts(companyId, categoryId, products);
+
+        companyService.deleteCompanyById(companyId, null);
+
+        assertThrows(CompanyNotFound.class, () -> companyService.getCompanyById(companyId));
+        assertThrows(CompanyNotFound.class, () -> productService.getAllProducts(companyId, categoryId));
+        assertThrows(CompanyNotFound.class, () -> catalogStatsService.getCompanyStats(companyId, null));
+        // The name can be taken again before the rows are gone
+        Company successor = new Company();
+        successor.setName("Big Tenant");
+        successor.setCity("Pune");
+        successor.setState("Maharashtra");
+        companyService.addCompany(successor);
+        assertEquals(5, productRepo.count());
+
+        PurgeProgress progress = purgeJob.purge();
+
+        assertEquals(PurgeProgress.State.COMPLETED, progress.getState());
+        // 5 products in chunks of 2, then 2 categories, then the company
+        assertEquals(8, progress.getPurged());
+        assertEquals(5, progress.getChunks());
+        assertEquals(0, productRepo.count());
+        assertEquals(0, categoryRepo.count());
+        assertEquals(1, jdbcTemplate.queryForObject("select count(*) from COMPANY", Integer.class));
+
+        // Nothing left to do, and the last run stays reported
+        purgeJob.purge();
+        assertEquals(8, purgeJob.getProgress().getPurged());
+    }
+
+    /**
+     * Test that a category also listed by a live company keeps its row, its products and its other link.
+     */
+    @Test
+    void purgeKeepsCategoriesSharedWithLiveCompanies() {
+        Company deleted = company("Old Tenant", category("Dairy"), category("Bakery"));
+        Company live = company("New Tenant");
+        Long sharedId = deleted.getCategories().stream()
+                .filter(category -> category.getName().equals("Dairy")).findFirst().orElseThrow().getId();
+        jdbcTemplate.update("insert into COMPANY_CATEGORIES_TBL (COMPANY_ID, CATEGORY_ID) values (?, ?)",
+                live.getId(), sharedId);
+        productService.addProducts(deleted.getId(), sharedId, new ArrayList<>(List.of(
+                new Product("Milk", 50.0, LocalDate.now(), LocalDate.now().plusDays(7), null))));
+
+        companyService.deleteCompanyById(deleted.getId(), null);
+        PurgeProgress progress = purgeJob.purge();
+
+        assertEquals(PurgeProgress.State.COMPLETED, progress.getState());
+        assertEquals(List.of(sharedId), categoryRepo.findAll().stream().map(Category::getId).toList());
+        assertEquals(1, productService.getAllProducts(live.getId(), sharedId).size());
+        assertEquals(List.of(live.getId()), jdbcTemplate.queryForList(
+                "select COMPANY_ID from COMPANY_CATEGORIES_TBL", Long.class));
+    }
+
+    private Company company(String name, Category... categories) {
+        Company company = new Company();
+        company.setName(name);
+        company.setCity("Mumbai");
+        company.setState("Maharashtra");
+        company.setCategories(new LinkedHashSet<>(List.of(categories)));
+        return companyRepo.save(company);
+    }
+
+    private static Category category(String name) {
+        Category category = new Category();
+        category.setName(name);
+        category.setType(name);
+        return category;
+    }
+}
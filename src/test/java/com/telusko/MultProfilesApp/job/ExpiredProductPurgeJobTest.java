@@ -0,0 +1,133 @@
+package com.telusko.MultProfilesApp.job;
+
+import com.telusko.MultProfilesApp.cache.CatalogCache;
+import com.telusko.MultProfilesApp.dao.CategoryRepo;
+import com.telusko.MultProfilesApp.dao.CompanyRepo;
+import com.telusko.MultProfilesApp.dao.ProductRepo;
+import com.telusko.MultProfilesApp.model.Category;
+import com.telusko.MultProfilesApp.model.Company;
+import com.telusko.MultProfilesApp.model.Product;
+import com.telusko.MultProfilesApp.service.impl.ProductServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+
+@SpringBootTest(properties = {"app.purge.chunk-size=2", "app.purge.pause-ms=0"})
+@ActiveProfiles("test")
+class ExpiredProductPurgeJobTest {
+    @Autowired
+    private ExpiredProductPurgeJob purgeJob;
+    @Autowired
+    private CompanyRepo companyRepo;
+    @Autowired
+    private CategoryRepo categoryRepo;
+    @Autowired
+    private ProductRepo productRepo;
+    @SpyBean
+    private CatalogCache catalogCache;
+    @Autowired
+    private ProductServiceImpl productService;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private NamedParameterJdbcTemplate jdbc;
+
+    @AfterEach
+    void tearDown() {
+        companyRepo.deleteAll();
+    }
+
+    /**
+     * Test that expired products are deleted in chunks together with their join rows,
+     * and that a second run finds nothing left to do.
+     */
+    @Test
+    void purgeDeletesExpiredProductsInChunks() {
+        Company company = company("Purge Company");
+        Long categoryId = company.getCategories().iterator().next().getId();
+
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            products.add(product("Expired " + i, "2024-01-0" + (i + 1)));
+        }
+        products.add(product("Fresh", "2024-02-01"));
+        productService.addProducts(company.getId(), categoryId, products);
+
+        PurgeProgress progress = purgeJob.purge(LocalDate.parse("2024-01-31"));
+
+        assertEquals(PurgeProgress.State.COMPLETED, progress.getState());
+        assertEquals(5, progress.getPurged());
+        assertEquals(3, progress.getChunks());
+        assertEquals(1, productRepo.count());
+        // The category's product list only holds the remaining product
+        assertEquals(List.of("Fresh"), transactionTemplate.execute(status ->
+                categoryRepo.findById(categoryId).orElseThrow().getProducts().stream().map(Product::getName).toList()));
+
+        assertEquals(0, purgeJob.purge(LocalDate.parse("2024-01-31")).getPurged());
+    }
+
+    /**
+     * Test that a chunk whose products all had their expiry extended before the delete
+     * does not end the run while later expired products remain.
+     */
+    @Test
+    void purgeContinuesPastChunkExtendedMeanwhile() {
+        Company company = company("Extending Company");
+        Long categoryId = company.getCategories().iterator().next().getId();
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            products.add(product("Expired " + i, "2024-01-0" + (i + 1)));
+        }
+        productService.addProducts(company.getId(), categoryId, products);
+
+        List<Long> firstChunk = jdbc.queryForList(
+                "select PRODUCT_CODE from PRODUCTS order by PRODUCT_CODE limit 2", Map.of(), Long.class);
+        AtomicBoolean extended = new AtomicBoolean();
+        doAnswer(invocation -> {
+            if (extended.compareAndSet(false, true)) {
+                // Another writer extends the whole first chunk between the find and the delete
+                jdbc.update("update PRODUCTS set EXPIRY_DATE = date '2024-03-01' where PRODUCT_CODE in (:codes)",
+                        Map.of("codes", firstChunk));
+            }
+            return invocation.callRealMethod();
+        }).when(catalogCache).evictProduct(anyLong(), anyLong(), anyLong());
+
+        PurgeProgress progress = purgeJob.purge(LocalDate.parse("2024-01-31"));
+
+        assertEquals(PurgeProgress.State.COMPLETED, progress.getState());
+        assertEquals(2, progress.getPurged());
+        assertEquals(2, productRepo.count());
+    }
+
+    private Company company(String name) {
+        Company company = new Company();
+        company.setName(name);
+        company.setCity("Mumbai");
+        company.setState("Maharashtra");
+        Category category = new Category();
+        category.setName("Dairy");
+        category.setType("Dairy");
+        company.setCategories(new LinkedHashSet<>(List.of(category)));
+        return companyRepo.save(company);
+    }
+
+    private static Product product(String name, String expiryDate) {
+        return new Product(name, 10.0, LocalDate.parse("2024-01-01"), LocalDate.parse(expiryDate), null);
+    }
+}
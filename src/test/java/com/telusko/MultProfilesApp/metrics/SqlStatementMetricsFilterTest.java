@@ -0,0 +1,88 @@
+package com.telusko.MultProfilesApp.metrics;
+
+import com.telusko.MultProfilesApp.dao.CompanyRepo;
+import com.telusko.MultProfilesApp.service.ImportService;
+import com.telusko.MultProfilesApp.service.impl.ImportServiceImpl;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checks the number of SQL statements recorded for a request against the statements Hibernate prepared.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class SqlStatementMetricsFilterTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private ImportServiceImpl importService;
+    @Autowired
+    private CompanyRepo companyRepo;
+
+    @AfterEach
+    void tearDown() {
+        companyRepo.deleteAll();
+    }
+
+    /**
+     * Test that a streamed export is recorded once, with the statements of the request thread
+     * and of the async work that writes the response.
+     */
+    @Test
+    void countsStatementsOfAsyncWork() throws Exception {
+        String file = """
+                {"company":"Metrics Co","city":"Pune","state":"MH","category":"Dairy","categoryType":"Food","product":"Metrics Milk","price":30,"mfgDate":"2024-01-01","expiryDate":"2024-01-08"}
+                """;
+        importService.importRecords(new ByteArrayInputStream(file.getBytes(StandardCharsets.UTF_8)), ImportService.Format.NDJSON);
+        Long id = companyRepo.findByName("Metrics Co").getId();
+
+        // The context is shared with other tests that export, only this request's share of the summary counts
+        long requestsBefore = exportSummary().count();
+        double statementsBefore = exportSummary().totalAmount();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        MvcResult result = mockMvc.perform(get("/company/{id}/export", id)).andReturn();
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+
+        assertEquals(1, exportSummary().count() - requestsBefore);
+        // The request thread checks the company and its categories, the export then reads them again
+        // and streams the products
+        assertEquals(5, statistics.getPrepareStatementCount());
+        assertEquals(5, exportSummary().totalAmount() - statementsBefore);
+    }
+
+    private DistributionSummary exportSummary() {
+        // Registered up front so it can be read before the first export
+        return DistributionSummary.builder(SqlStatementMetricsFilter.METRIC_NAME)
+                .tag("uri", "/company/{id}/export")
+                .tag("method", "GET")
+                .tag("outcome", "SUCCESS")
+                .tag("error", "none")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
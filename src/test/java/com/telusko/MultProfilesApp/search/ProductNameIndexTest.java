@@ -0,0 +1,145 @@
+package com.telusko.MultProfilesApp.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductNameIndexTest {
+    private static final long COMPANY = 1L;
+
+    @Test
+    void testSearchRanksWholeWordsBeforePrefixes() {
+        ProductNameIndex index = new ProductNameIndex(Long.MAX_VALUE);
+        index.add(COMPANY, 10L, 1L, "Almond Milk");
+        index.add(COMPANY, 10L, 2L, "Milkshake");
+        index.add(COMPANY, 11L, 3L, "Milk Powder");
+        index.add(COMPANY, 11L, 4L, "Milk");
+        index.add(COMPANY, 11L, 5L, "Bread");
+        index.add(COMPANY, 11L, 6L, "Milk Milkshake");
+
+        // Listed once, though two of its words start with the query
+        assertEquals(List.of(4L, 3L, 6L, 2L, 1L), index.search(COMPANY, "milk", 10));
+        assertEquals(List.of(4L, 3L), index.search(COMPANY, "milk", 2));
+        // Every word has to match, in any case and order
+        assertEquals(List.of(3L), index.search(COMPANY, "POW mil", 10));
+        assertEquals(List.of(), index.search(COMPANY, "milk bread", 10));
+        assertEquals(List.of(), index.search(COMPANY, "  ", 10));
+        assertEquals(List.of(), index.search(2L, "milk", 10));
+    }
+
+    @Test
+    void testAddReplacesAndRemoveDropsProducts() {
+        ProductNameIndex index = new ProductNameIndex(Long.MAX_VALUE);
+        index.add(COMPANY, 10L, 1L, "Brown Bread");
+        index.add(COMPANY, 10L, 2L, "Butter");
+        index.add(COMPANY, 11L, 3L, "Bread Crumbs");
+        index.add(2L, 20L, 4L, "Bread");
+
+        // Renamed
+        index.add(COMPANY, 10L, 1L, "Brown Rice");
+        assertEquals(List.of(3L), index.search(COMPANY, "bread", 10));
+        assertEquals(List.of(1L), index.search(COMPANY, "rice", 10));
+
+        index.remove(COMPANY, 2L);
+        assertEquals(List.of(1L, 3L), index.search(COMPANY, "b", 10));
+        index.removeCategory(COMPANY, 10L);
+        assertEquals(List.of(3L), index.search(COMPANY, "b", 10));
+        index.removeCompany(COMPANY);
+        assertEquals(List.of(), index.search(COMPANY, "bread", 10));
+        assertEquals(List.of(4L), index.search(2L, "bread", 10));
+        assertEquals(1, index.getProducts());
+    }
+
+    @Test
+    void testMemoryBoundLeavesIndexIncomplete() {
+        ProductNameIndex index = new ProductNameIndex(64 * 1024);
+        for (long code = 0; code < 10_000; code++) {
+            index.add(COMPANY, 10L, code, "Product " + code);
+        }
+
+        assertFalse(index.isComplete());
+        assertTrue(index.getEstimatedBytes() <= index.getMaxBytes());
+        assertTrue(index.getProducts() > 0 && index.getProducts() < 10_000);
+    }
+
+    @Test
+    void testCompactionKeepsLiveProducts() {
+        ProductNameIndex index = new ProductNameIndex(Long.MAX_VALUE);
+        for (long code = 0; code < 3000; code++) {
+            index.add(COMPANY, 10L, code, "Item " + code);
+        }
+        long full = index.getEstimatedBytes();
+        for (long code = 0; code < 2500; code++) {
+            index.remove(COMPANY, code);
+        }
+
+        assertEquals(500, index.getProducts());
+        assertTrue(index.getEstimatedBytes() < full);
+        assertEquals(List.of(2999L), index.search(COMPANY, "item 2999", 10));
+        assertEquals(List.of(), index.search(COMPANY, "item 42", 10));
+        assertEquals(List.of("milk", "2", "l"), ProductNameIndex.tokenize("Milk, 2 L; milk"));
+    }
+
+    @Test
+    void testRemoveCompanyDuringAddsKeepsSizeExact() throws Exception {
+        ProductNameIndex index = new ProductNameIndex(Long.MAX_VALUE);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int thread = 0; thread < 3; thread++) {
+                long first = thread * 20_000L;
+                tasks.add(executor.submit(() -> {
+                    for (long code = first; code < first + 20_000; code++) {
+                        index.add(COMPANY, 10L, code, "Product " + code);
+                    }
+                }));
+            }
+            tasks.add(executor.submit(() -> {
+                for (int i = 0; i < 2_000; i++) {
+                    index.removeCompany(COMPANY);
+                }
+            }));
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        index.removeCompany(COMPANY);
+
+        // Bytes added to a partition already removed would stay counted
+        assertEquals(0, index.getEstimatedBytes());
+        assertEquals(0, index.getProducts());
+        assertTrue(index.isComplete());
+    }
+
+    @Test
+    void testSearchFindsProductsAfterUpdates() {
+        ProductNameIndex index = new ProductNameIndex(Long.MAX_VALUE);
+        for (long code = 0; code < 3000; code++) {
+            index.add(COMPANY, 10L, code, "Milk " + code);
+        }
+        long bytes = index.getEstimatedBytes();
+        // Saved again unchanged, nothing is replaced
+        for (long code = 0; code < 3000; code++) {
+            index.add(COMPANY, 10L, code, "Milk " + code);
+        }
+        assertEquals(bytes, index.getEstimatedBytes());
+
+        // Renamed, each one leaves a dead slot too few to compact
+        for (long code = 0; code < 3000; code++) {
+            index.add(COMPANY, 10L, code, "Milk " + code + " Fresh");
+        }
+        assertEquals(3000, index.getProducts());
+        assertEquals(10, index.search(COMPANY, "milk", 10).size());
+        assertEquals(List.of(2999L), index.search(COMPANY, "milk 2999 fresh", 10));
+    }
+}
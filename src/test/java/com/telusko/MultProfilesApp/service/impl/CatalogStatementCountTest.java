@@ -0,0 +1,168 @@
+package com.telusko.MultProfilesApp.service.impl;
+
+import com.telusko.MultProfilesApp.dao.CompanyRepo;
+import com.telusko.MultProfilesApp.model.Category;
+import com.telusko.MultProfilesApp.model.Company;
+import com.telusko.MultProfilesApp.model.PriceChange;
+import com.telusko.MultProfilesApp.model.Product;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Pins the number of SQL statements each service mutation issues, so that a change
+ * reintroducing extra loads or saves on the write paths fails loudly.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+class CatalogStatementCountTest {
+    @Autowired
+    private CompanyServiceImpl companyService;
+    @Autowired
+    private CategoryServiceImpl categoryService;
+    @Autowired
+    private ProductServiceImpl productService;
+    @Autowired
+    private CompanyRepo companyRepo;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    private Statistics statistics;
+    private Long companyId;
+    private Long categoryId;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        companyService.addCompany(company("Tata"));
+        companyId = companyRepo.findByName("Tata").getId();
+        categoryService.addCategory(category("Electronics"), companyId);
+        categoryId = categoryIdOf("Electronics");
+        // Warm up the product id sequence so its allocation does not count against the operations
+        productService.addProduct(companyId, categoryId, product("Warm up"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        companyRepo.deleteAll();
+    }
+
+    @Test
+    void updateCompanyDetails() {
+        // select company, update company
+        assertEquals(2, count(() -> companyService.updateCompanyDetails(company("Tata Motors"), companyId, null)));
+    }
+
+    @Test
+    void addCategory() {
+        // select company, insert category, select its categories, insert the one join row,
+        // and the company's version is incremented since its categories are part of it
+        assertEquals(5, count(() -> categoryService.addCategory(category("Grocery"), companyId)));
+    }
+
+    @Test
+    void updateCategory() {
+        // select category within company, update category, select the companies listing it,
+        // increment the version of the one company
+        assertEquals(4, count(() -> categoryService.updateCategory(companyId, category("Gadgets"), categoryId, null)));
+    }
+
+    @Test
+    void deleteCategory() {
+        categoryService.addCategory(category("Grocery"), companyId);
+        Long groceryId = categoryIdOf("Grocery");
+        productService.addProduct(companyId, groceryId, product("Rice"));
+
+        // select company, select its categories, select the category's products, increment the company's
+        // version, delete the one join row, delete the product, delete the category
+        assertEquals(7, count(() -> categoryService.deleteCategoryById(companyId, groceryId, null)));
+    }
+
+    @Test
+    void addProducts() {
+        // select category within company, check the names, insert the products in one batch
+        assertEquals(3, count(() -> productService.addProducts(companyId, categoryId,
+                List.of(product("Tv"), product("Radio"), product("Phone")))));
+    }
+
+    @Test
+    void addProduct() {
+        // select category within company, insert product
+        assertEquals(2, count(() -> productService.addProduct(companyId, categoryId, product("Tv"))));
+    }
+
+    @Test
+    void updateProduct() {
+        productService.addProduct(companyId, categoryId, product("Tv"));
+        Long productId = productCodeOf("Tv");
+
+        // select product with its category, update product
+        assertEquals(2, count(() -> productService.updateProductById(companyId, categoryId, product("Smart Tv"), productId, null)));
+    }
+
+    @Test
+    void deleteProduct() {
+        productService.addProduct(companyId, categoryId, product("Tv"));
+        Long productId = productCodeOf("Tv");
+
+        // select product with its category, delete product
+        assertEquals(2, count(() -> productService.deleteProductById(companyId, categoryId, productId, null)));
+    }
+
+    @Test
+    void repriceProducts() {
+        productService.addProducts(companyId, categoryId, List.of(product("Tv"), product("Radio"), product("Phone")));
+        PriceChange discount = new PriceChange(-10.0, null, null, null, null, null);
+
+        // select category within company, one update whatever the number of products
+        assertEquals(2, count(() -> productService.repriceProducts(companyId, categoryId, discount)));
+    }
+
+    private long count(Runnable operation) {
+        statistics.clear();
+        operation.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private Long categoryIdOf(String name) {
+        return companyService.getCompanyById(companyId).getCategories().stream()
+                .filter(category -> category.getName().equals(name))
+                .findFirst().orElseThrow().getId();
+    }
+
+    private Long productCodeOf(String name) {
+        return productService.getAllProducts(companyId, categoryId).stream()
+                .filter(product -> product.getName().equals(name))
+                .findFirst().orElseThrow().getCode();
+    }
+
+    private static Company company(String name) {
+        Company company = new Company();
+        company.setName(name);
+        company.setCity("Mumbai");
+        company.setState("Maharashtra");
+        return company;
+    }
+
+    private static Category category(String name) {
+        Category category = new Category();
+        category.setName(name);
+        category.setType(name);
+        return category;
+    }
+
+    private static Product product(String name) {
+        return new Product(name, 100.0, LocalDate.parse("2024-01-01"), LocalDate.parse("2026-01-01"), null);
+    }
+}
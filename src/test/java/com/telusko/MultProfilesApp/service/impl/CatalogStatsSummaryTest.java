@@ -0,0 +1,156 @@
+package com.telusko.MultProfilesApp.service.impl;
+
+import com.telusko.MultProfilesApp.dao.CategorySummaryRepo;
+import com.telusko.MultProfilesApp.dao.CompanyRepo;
+import com.telusko.MultProfilesApp.dao.ProductRepo;
+import com.telusko.MultProfilesApp.dto.CategoryStats;
+import com.telusko.MultProfilesApp.model.Category;
+import com.telusko.MultProfilesApp.model.Company;
+import com.telusko.MultProfilesApp.model.PriceChange;
+import com.telusko.MultProfilesApp.model.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the summary table kept up by the product writes serves the same stats
+ * as aggregating the products themselves.
+ */
+@SpringBootTest(properties = "app.stats.summary-table=true")
+@ActiveProfiles("test")
+class CatalogStatsSummaryTest {
+    @Autowired
+    private CatalogStatsServiceImpl catalogStatsService;
+    @Autowired
+    private ProductServiceImpl productService;
+    @Autowired
+    private CategoryServiceImpl categoryService;
+    @Autowired
+    private CompanyRepo companyRepo;
+    @Autowired
+    private ProductRepo productRepo;
+    @Autowired
+    private CategorySummaryRepo categorySummaryRepo;
+    private Long companyId;
+    private Long groceryId;
+    private Long dairyId;
+
+    @BeforeEach
+    void setUp() {
+        Company company = new Company();
+        company.setName("Stats Company");
+        company.setCity("Pune");
+        company.setState("Maharashtra");
+        Category grocery = category("Grocery");
+        Category dairy = category("Dairy");
+        company.setCategories(new LinkedHashSet<>(List.of(grocery, dairy, category("Empty"))));
+        companyRepo.save(company);
+        companyId = company.getId();
+        groceryId = grocery.getId();
+        dairyId = dairy.getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        companyRepo.deleteAll();
+        categorySummaryRepo.deleteAll();
+    }
+
+    @Test
+    void summaryFollowsProductWrites() {
+        productService.addProducts(companyId, groceryId, List.of(
+                product("Rice", 60.0, 30), product("Sugar", 45.0, 3), product("Salt", 20.0, 400)));
+        productService.addProduct(companyId, dairyId, product("Milk", 30.0, 2));
+        assertSameAsGroupBy();
+
+        // Reprice the cheapest product above the most expensive one, so both bounds move
+        Product salt = productRepo.findByName("Salt");
+        productService.updateProductById(companyId, groceryId, product("Salt", 90.0, 400), salt.getCode(), null);
+        assertSameAsGroupBy();
+
+        // A bulk change, whose individual prices are not at hand
+        productService.repriceProducts(companyId, groceryId, new PriceChange(25.0, null, 50.0, null, null, null));
+        assertSameAsGroupBy();
+
+        // Delete the most expensive product, and the only one of a category
+        productService.deleteProductById(companyId, groceryId, productRepo.findByName("Salt").getCode(), null);
+        productService.deleteProductById(companyId, dairyId, productRepo.findByName("Milk").getCode(), null);
+        assertSameAsGroupBy();
+
+        categoryService.deleteCategoryById(companyId, groceryId, null);
+        assertSameAsGroupBy();
+        assertEquals(List.of(dairyId), categorySummaryRepo.findAll().stream()
+                .map(summary -> summary.getCategoryId()).toList());
+    }
+
+    @Test
+    void rebuildMatchesGroupBy() {
+        productService.addProducts(companyId, groceryId, List.of(product("Oats", 120.0, 5), product("Tea", 80.0, 90)));
+        categorySummaryRepo.deleteAll();
+
+        catalogStatsService.rebuild();
+        assertSameAsGroupBy();
+    }
+
+    @Test
+    void concurrentFirstProductsOfNewCategory() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 5; round++) {
+                Category category = category("New " + round);
+                categoryService.addCategory(category, companyId);
+                CyclicBarrier barrier = new CyclicBarrier(threads);
+                List<Future<Boolean>> results = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    Product product = product("Item " + round + "-" + i, 10.0 + i, 3);
+                    results.add(executor.submit(() -> {
+                        barrier.await();
+                        return productService.addProduct(companyId, category.getId(), product);
+                    }));
+                }
+                for (Future<Boolean> result : results) {
+                    assertTrue(result.get(30, TimeUnit.SECONDS));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertSameAsGroupBy();
+    }
+
+    private void assertSameAsGroupBy() {
+        LocalDate today = LocalDate.now();
+        List<CategoryStats> summary = catalogStatsService.getCompanyStats(companyId, 7).getCategories();
+        List<CategoryStats> groupBy = productRepo.findStatsByCompanyId(companyId, today, today.plusDays(7));
+        assertEquals(groupBy, summary);
+    }
+
+    private static Category category(String name) {
+        Category category = new Category();
+        category.setName(name);
+        category.setType(name);
+        return category;
+    }
+
+    private static Product product(String name, double price, int expiresInDays) {
+        LocalDate today = LocalDate.now();
+        return new Product(name, price, today.minusDays(10), today.plusDays(expiresInDays), null);
+    }
+}
@@ -1,6 +1,11 @@
 package com.telusko.MultProfilesApp.service.impl;
 
+import com.telusko.MultProfilesApp.cache.CatalogCache;
 import com.telusko.MultProfilesApp.dao.CategoryRepo;
+import com.telusko.MultProfilesApp.dto.CategoryDto;
+import com.telusko.MultProfilesApp.dto.CompanyDto;
+import com.telusko.MultProfilesApp.exceptions.category.CategoryNotFound;
+import com.telusko.MultProfilesApp.exceptions.company.CompanyNotFound;
 import com.telusko.MultProfilesApp.model.Category;
 import com.telusko.MultProfilesApp.model.Company;
 import org.junit.jupiter.api.AfterEach;
@@ -11,8 +16,10 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -25,6 +32,12 @@ class CategoryServiceImplTest {
     private CategoryRepo categoryRepo;
     @Mock
     private CompanyServiceImpl companyService;
+    @Mock
+    private CatalogCache catalogCache;
+    @Mock
+    private CatalogStatsServiceImpl catalogStats;
+    @Mock
+    private ProductSearchServiceImpl productSearch;
     Company company=null;
     Category category=null;
 
@@ -41,7 +54,7 @@ class CategoryServiceImplTest {
         category.setName("Electronics");
         category.setType("Electronics");
 
-        List<Category> categories = new ArrayList<>();
+        Set<Category> categories = new HashSet<>();
         categories.add(category);
         company.setCategories(categories);
     }
@@ -58,10 +71,11 @@ class CategoryServiceImplTest {
     @Test
     void testGetAllCategories() {
         // Given
-        when(companyService.getCompanyById(1L)).thenReturn(company);
+        CategoryDto electronics = new CategoryDto(1L, "Electronics", "Electronics", 0);
+        when(categoryRepo.findDtosByCompanyId(1L)).thenReturn(List.of(electronics));
 
         // Then
-        assertEquals(List.of(category), underTest.getAllCategories(1L));
+        assertEquals(List.of(electronics), underTest.getAllCategories(1L));
         assertEquals(1, underTest.getAllCategories(1L).size());
     }
 
@@ -76,7 +90,7 @@ class CategoryServiceImplTest {
     void addCategory() {
         // when
         // Mock the behaviour of the company service to return the company by its ID.
-        when(companyService.getCompanyById(1L)).thenReturn(company);
+        when(companyService.findCompany(1L)).thenReturn(company);
 
         // then
         boolean actualResult = underTest.addCategory(category, 1L);
@@ -86,8 +100,8 @@ class CategoryServiceImplTest {
         assertTrue(actualResult);
         // Verifying that the company contains category.
         assertTrue(company.getCategories().contains(category));
-        // Verify that the company service's updateCompanyDetails with company, ID
-        verify(companyService, times(1)).updateCompanyDetails(company, 1L);
+        // Verify that the company is not saved again through the company service
+        verify(companyService, never()).updateCompanyDetails(company, 1L, null);
         // Verify that the category repository save's the category
         verify(categoryRepo).save(category);
     }
@@ -101,21 +115,41 @@ class CategoryServiceImplTest {
     @Test
     void getCategoryById() {
         // when
-        // Mock the behaviour of company service to return the company.
-        when(companyService.getCompanyById(1L)).thenReturn(company);
+        // Mock the behaviour of category repository to return the category of the company.
+        CategoryDto electronics = new CategoryDto(1L, "Electronics", "Electronics", 0);
+        when(categoryRepo.findDtoByCompanyIdAndId(1L, 1L)).thenReturn(Optional.of(electronics));
 
         // then
         // Ensuring that the retrieved category is not null.
         assertNotNull(underTest.getCategoryById(1L, 1L));
 
-        // Verifying category ID.
-        assertEquals(1L, category.getId());
+        // Verifying that the correct category is returned
+        assertEquals(electronics, underTest.getCategoryById(1L, 1L));
+        assertEquals(1L, underTest.getCategoryById(1L, 1L).getId());
+    }
 
-        // Verifying that the correct category object is returned
-        assertEquals(category, underTest.getCategoryById(1L, 1L));
+    /**
+     * Test for retrieving a category that the company does not own.
+     */
+    @Test
+    void shouldThrowCategoryNotFoundWhenGetCategoryById() {
+        // Mock an existing company that does not own the requested category
+        when(categoryRepo.findDtoByCompanyIdAndId(1L, 2L)).thenReturn(Optional.empty());
+        when(companyService.getCompanyById(1L)).thenReturn(new CompanyDto(1L, "Tata", "Mumbai", "Maharashtra", 0));
 
-        // Verifying that the company's category contains category
-        assertTrue(company.getCategories().contains(category));
+        assertThrows(CategoryNotFound.class, () -> underTest.getCategoryById(1L, 2L));
+    }
+
+    /**
+     * Test for retrieving a category of a company that does not exist.
+     */
+    @Test
+    void shouldThrowCompanyNotFoundWhenGetCategoryById() {
+        // Mock a missing company
+        when(categoryRepo.findDtoByCompanyIdAndId(-1L, 1L)).thenReturn(Optional.empty());
+        when(companyService.getCompanyById(-1L)).thenThrow(new CompanyNotFound("Company not found"));
+
+        assertThrows(CompanyNotFound.class, () -> underTest.getCategoryById(-1L, 1L));
     }
 
     /**
@@ -127,17 +161,47 @@ class CategoryServiceImplTest {
      */
     @Test
     void updateCategory() {
-        // Mock the behaviour of the company service to return the company when its ID requested.
-        when(companyService.getCompanyById(company.getId())).thenReturn(company);
+        // Mock the behaviour of the category repository to return the category of the company.
+        when(categoryRepo.findByCompanyIdAndId(company.getId(), category.getId())).thenReturn(Optional.of(category));
+        when(categoryRepo.findCompanyIdsListing(category.getId())).thenReturn(List.of(company.getId()));
+
+        Category updatedCategory = new Category();
+        updatedCategory.setName("Home Appliances");
+        updatedCategory.setType("Appliances");
 
         // Call the updateCategory method and assert that it is true.
-        assertTrue(underTest.updateCategory(company.getId(), category, category.getId()));
+        assertTrue(underTest.updateCategory(company.getId(), updatedCategory, category.getId(), null));
 
-        // Verify that the category repository's save method was called with the correct category object
-        verify(categoryRepo).save(category);
+        // Verify that the loaded category carries the new details, written by dirty checking.
+        assertEquals("Home Appliances", category.getName());
+        assertEquals("Appliances", category.getType());
+        verify(categoryRepo, never()).save(category);
+
+        // Verify that the company is not saved again through the company service.
+        verify(companyService, never()).updateCompanyDetails(company, company.getId(), null);
 
-        // Verify that the company service's updateCompanyDetails method was called with the correct company object and ID.
-        verify(companyService).updateCompanyDetails(company, company.getId());
+        // Verify that the cached company, category and its products are evicted.
+        verify(catalogCache).evictCategory(company.getId(), category.getId());
+    }
+
+    /**
+     * Test that updating a category listed by several companies changes the version of each of them
+     * and evicts each of their cached entries.
+     */
+    @Test
+    void updateSharedCategoryEvictsEveryListingCompany() {
+        when(categoryRepo.findByCompanyIdAndId(company.getId(), category.getId())).thenReturn(Optional.of(category));
+        when(categoryRepo.findCompanyIdsListing(category.getId())).thenReturn(List.of(company.getId(), 2L));
+
+        Category updatedCategory = new Category();
+        updatedCategory.setName("Home Appliances");
+        updatedCategory.setType("Appliances");
+        assertTrue(underTest.updateCategory(company.getId(), updatedCategory, category.getId(), null));
+
+        for (Long companyId : List.of(company.getId(), 2L)) {
+            verify(companyService).incrementVersion(companyId);
+            verify(catalogCache).evictCategory(companyId, category.getId());
+        }
     }
 
     /**
@@ -150,18 +214,18 @@ class CategoryServiceImplTest {
     @Test
     void deleteCategoryById() {
         // Mock the behavior of the company service to return the company when its ID is requested.
-        when(companyService.getCompanyById(company.getId())).thenReturn(company);
+        when(companyService.findCompany(company.getId())).thenReturn(company);
 
         // Assert that the category is contained in the company's categories list.
         assertTrue(company.getCategories().contains(category));
 
         // Call the deleteCategoryById method and assert that it returns true.
-        assertTrue(underTest.deleteCategoryById(company.getId(), category.getId()));
+        assertTrue(underTest.deleteCategoryById(company.getId(), category.getId(), null));
 
-        // Verify that the category repository's deleteById method was called with the correct category ID.
-        verify(categoryRepo).deleteById(category.getId());
+        // Verify that the category repository's delete method was called with the loaded category.
+        verify(categoryRepo).delete(category);
 
-        // Verify that the company service's updateCompanyDetails method was called with the correct company and company ID.
-        verify(companyService).updateCompanyDetails(company, company.getId());
+        // Verify that the category was removed from the company's categories.
+        assertFalse(company.getCategories().contains(category));
     }
 }
\ No newline at end of file
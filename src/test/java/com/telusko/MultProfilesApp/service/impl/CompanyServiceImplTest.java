@@ -1,21 +1,33 @@
 package com.telusko.MultProfilesApp.service.impl;
 
+import com.telusko.MultProfilesApp.cache.CatalogCache;
 import com.telusko.MultProfilesApp.dao.CompanyRepo;
+import com.telusko.MultProfilesApp.dto.CompanyDto;
+import com.telusko.MultProfilesApp.exceptions.VersionMismatch;
 import com.telusko.MultProfilesApp.exceptions.company.CompanyExists;
 import com.telusko.MultProfilesApp.exceptions.company.CompanyNotFound;
 import com.telusko.MultProfilesApp.model.Company;
+import com.telusko.MultProfilesApp.model.CursorPage;
+import com.telusko.MultProfilesApp.model.UpsertOutcome;
+import com.telusko.MultProfilesApp.model.UpsertResult;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -24,6 +36,12 @@ class CompanyServiceImplTest {
     private CompanyServiceImpl companyService;
     @Mock
     private CompanyRepo companyRepo;
+    @Mock
+    private CatalogCache catalogCache;
+    @Mock
+    private ProductSearchServiceImpl productSearch;
+    @Mock
+    private CatalogStatsServiceImpl catalogStats;
     Company company = null;
 
     @BeforeEach
@@ -37,17 +55,46 @@ class CompanyServiceImplTest {
     @Test
     void test_getAllCompanies() {
         // when
-        when(companyRepo.findAll()).thenReturn(List.of(company));
+        when(companyRepo.findAllDtos()).thenReturn(List.of(dto(1L)));
        // then
        assertEquals(1, companyService.getAllCompanies().size());
     }
 
     @Test
     void shouldThrowCompanyNotFoundWhenGetAllCompanies() {
-        when(companyRepo.findAll()).thenReturn(new ArrayList<>());
+        when(companyRepo.findAllDtos()).thenReturn(new ArrayList<>());
         assertThrows(CompanyNotFound.class, () -> companyService.getAllCompanies());
     }
 
+    @Test
+    void test_getCompanies() {
+        CompanyDto first = dto(1L);
+        // one row more than the limit means another page exists
+        when(companyRepo.findPage(0L, Limit.of(2))).thenReturn(List.of(first, dto(2L)));
+
+        CursorPage<CompanyDto> page = companyService.getCompanies(null, 1);
+        assertEquals(List.of(first), page.getItems());
+        assertEquals(1L, page.getNextCursor());
+        // The categories are read for the served page only
+        verify(companyRepo).findCategories(List.of(1L));
+    }
+
+    @Test
+    void test_getCompaniesLastPage() {
+        CompanyDto last = dto(2L);
+        when(companyRepo.findPage(1L, Limit.of(2))).thenReturn(List.of(last));
+
+        CursorPage<CompanyDto> page = companyService.getCompanies(1L, 1);
+        assertEquals(List.of(last), page.getItems());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void shouldThrowCompanyNotFoundWhenGetCompaniesFirstPageIsEmpty() {
+        when(companyRepo.findPage(0L, Limit.of(51))).thenReturn(new ArrayList<>());
+        assertThrows(CompanyNotFound.class, () -> companyService.getCompanies(null, 50));
+    }
+
     @Test
     void test_addCompany() {
         when(companyRepo.save(company)).thenReturn(company);
@@ -62,39 +109,74 @@ class CompanyServiceImplTest {
 
     @Test
     void test_getCompanyById() {
-        when(companyRepo.findById(1L)).thenReturn(Optional.of(company));
-        assertEquals(company, companyService.getCompanyById(1L));
+        CompanyDto found = dto(1L);
+        when(companyRepo.findDtoById(1L)).thenReturn(Optional.of(found));
+        assertEquals(found, companyService.getCompanyById(1L));
+        assertEquals(List.of(), found.getCategories());
     }
 
     @Test
     void shouldThrowCompanyNotFoundWhenGetCompanyById() {
-        when(companyRepo.findById(1L)).thenReturn(Optional.empty());
+        when(companyRepo.findDtoById(1L)).thenReturn(Optional.empty());
         assertThrows(CompanyNotFound.class, () -> companyService.getCompanyById(1L));
     }
 
     @Test
     void test_updateCompanyDetails() {
         when(companyRepo.findById(1L)).thenReturn(Optional.of(company));
-        assertTrue(companyService.updateCompanyDetails(company, 1L));
+        assertTrue(companyService.updateCompanyDetails(company, 1L, null));
+        verify(catalogCache).evictCompanyDetails(1L);
     }
 
     @Test
     void shouldThrowCompanyNotFoundWhenUpdateCompanyDetails() {
         Long invalidId = -1L;
         when(companyRepo.findById(invalidId)).thenReturn(Optional.empty());
-        assertThrows(CompanyNotFound.class, () -> companyService.updateCompanyDetails(company, invalidId));
+        assertThrows(CompanyNotFound.class, () -> companyService.updateCompanyDetails(company, invalidId, null));
     }
 
     @Test
     void deleteCompanyById() {
-        when(companyRepo.findById(1L)).thenReturn(Optional.of(company));
-        assertTrue(companyService.deleteCompanyById(1L));
+        when(companyRepo.findVersionById(1L)).thenReturn(Optional.of(2L));
+        when(companyRepo.markDeleted(eq(1L), eq(2L), any())).thenReturn(1);
+        assertTrue(companyService.deleteCompanyById(1L, null));
+        verify(catalogCache).evictCompany(1L);
+        assertThrows(VersionMismatch.class, () -> companyService.deleteCompanyById(1L, 1L));
     }
 
     @Test
     void shouldThrowCompanyNotFoundWhenDeleteCompanyById() {
         Long invalidId = -1L;
-        when(companyRepo.findById(invalidId)).thenReturn(Optional.empty());
-        assertThrows(CompanyNotFound.class, () -> companyService.deleteCompanyById(invalidId));
+        when(companyRepo.findVersionById(invalidId)).thenReturn(Optional.empty());
+        assertThrows(CompanyNotFound.class, () -> companyService.deleteCompanyById(invalidId, null));
+    }
+
+    @Test
+    void upsertCompaniesReportsWhatTheUpsertDid() {
+        Company changed = new Company();
+        changed.setName("Infosys");
+        changed.setCity("Pune");
+        changed.setState("Maharashtra");
+        Company invalid = new Company();
+        invalid.setName("Wipro");
+        Company created = new Company();
+        created.setName("Reliance");
+        created.setCity("Mumbai");
+        created.setState("Maharashtra");
+        when(companyRepo.upsertByName(List.of(company, changed, created))).thenReturn(List.of(
+                UpsertOutcome.Status.UNCHANGED, UpsertOutcome.Status.UPDATED, UpsertOutcome.Status.CREATED));
+
+        UpsertResult result = companyService.upsertCompanies(List.of(company, changed, invalid, created, company));
+
+        assertEquals(List.of(UpsertOutcome.Status.UNCHANGED, UpsertOutcome.Status.UPDATED, UpsertOutcome.Status.REJECTED,
+                        UpsertOutcome.Status.CREATED, UpsertOutcome.Status.REJECTED),
+                result.getRecords().stream().map(UpsertOutcome::getStatus).toList());
+        assertEquals(2, result.getRejected());
+        verify(companyRepo, never()).findDtosByNameIn(any());
+        verify(catalogCache).evictCompaniesNamed(Set.of("Infosys"));
+    }
+
+    private static CompanyDto dto(Long id) {
+        return new CompanyDto(id, "Tata", "Mumbai", "Maharashtra", 0);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,95 @@
+package com.telusko.MultProfilesApp.service.impl;
+
+import com.telusko.MultProfilesApp.cache.CatalogCache;
+import com.telusko.MultProfilesApp.dao.ProductRepo;
+import com.telusko.MultProfilesApp.model.BatchResult;
+import com.telusko.MultProfilesApp.model.Category;
+import com.telusko.MultProfilesApp.model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ProductServiceImplTest {
+    @InjectMocks
+    private ProductServiceImpl underTest;
+    @Mock
+    private ProductRepo productRepo;
+    @Mock
+    private CompanyServiceImpl companyService;
+    @Mock
+    private CategoryServiceImpl categoryService;
+    @Mock
+    private CatalogCache catalogCache;
+    @Mock
+    private CatalogStatsServiceImpl catalogStats;
+    @Mock
+    private ProductSearchServiceImpl productSearch;
+    Category category = null;
+
+    @BeforeEach
+    void setUp() {
+        category = new Category();
+        category.setId(1L);
+        category.setName("Electronics");
+        category.setType("Electronics");
+    }
+
+    /**
+     * Test that a batch insert stores the valid products and reports the rejected ones.
+     */
+    @Test
+    void addProducts() {
+        when(categoryService.findCategory(1L, 1L)).thenReturn(category);
+        when(productRepo.findExistingNames(anyCollection())).thenReturn(List.of("Radio"));
+
+        Product valid = new Product("Tv", 100.0, LocalDate.parse("2024-01-01"), LocalDate.parse("2026-01-01"), null);
+        Product duplicateInBatch = new Product("Tv", 120.0, LocalDate.parse("2024-01-01"), LocalDate.parse("2026-01-01"), null);
+        Product existing = new Product("Radio", 50.0, LocalDate.parse("2024-01-01"), LocalDate.parse("2026-01-01"), null);
+        Product missingPrice = new Product("Fan", null, LocalDate.parse("2024-01-01"), LocalDate.parse("2026-01-01"), null);
+
+        BatchResult result = underTest.addProducts(1L, 1L,
+                List.of(valid, duplicateInBatch, existing, missingPrice));
+
+        assertEquals(1, result.getInserted());
+        assertEquals(3, result.getRejected());
+        assertEquals(List.of("#1: name already exists", "#2: name already exists",
+                "#3: price must be zero or more"), result.getErrors());
+        // Only the valid product is linked to the category and saved
+        assertEquals(category, valid.getCategory());
+        verify(productRepo).saveAll(List.of(valid));
+    }
+
+    /**
+     * Test that an update only re-indexes the product's name when it changed.
+     */
+    @Test
+    void updateProductReindexesRenamedProductsOnly() {
+        Product product = new Product("Tv", 100.0, LocalDate.parse("2024-01-01"), LocalDate.parse("2026-01-01"), category);
+        product.setCode(7L);
+        when(productRepo.findByCompanyIdAndCategoryIdAndCode(1L, 1L, 7L)).thenReturn(Optional.of(product));
+
+        underTest.updateProductById(1L, 1L,
+                new Product("Tv", 90.0, LocalDate.parse("2024-01-01"), LocalDate.parse("2026-01-01"), null), 7L, null);
+        verify(productSearch, never()).productsSaved(anyLong(), anyLong(), any());
+
+        underTest.updateProductById(1L, 1L,
+                new Product("Smart Tv", 90.0, LocalDate.parse("2024-01-01"), LocalDate.parse("2026-01-01"), null), 7L, null);
+        verify(productSearch).productsSaved(1L, 1L, List.of(product));
+    }
+}
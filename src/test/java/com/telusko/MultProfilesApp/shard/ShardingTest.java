@@ -0,0 +1,278 @@
+package com.telusko.MultProfilesApp.shard;
+
+import com.telusko.MultProfilesApp.controller.ReactiveCatalogController;
+import com.telusko.MultProfilesApp.dao.CompanyRepo;
+import com.telusko.MultProfilesApp.dto.CompanyDto;
+import com.telusko.MultProfilesApp.service.CompanyService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Three in-memory H2 databases stand in for the shards.
+ */
+@SpringBootTest(properties = {
+        "app.sharding.shards[0].jdbc-url=jdbc:h2:mem:shard0", "app.sharding.shards[0].username=sa",
+        "app.sharding.shards[1].jdbc-url=jdbc:h2:mem:shard1", "app.sharding.shards[1].username=sa",
+        "app.sharding.shards[2].jdbc-url=jdbc:h2:mem:shard2", "app.sharding.shards[2].username=sa",
+        "app.sharding.directory-reload-ms=3600000"})
+@AutoConfigureMockMvc
+@ActiveProfiles({"test", "sharded"})
+class ShardingTest {
+    private static final List<String> NAMES = List.of("Acme", "Globex", "Initech", "Umbrella", "Hooli", "Stark");
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ApplicationContext context;
+    @Autowired
+    private CompanyService companyService;
+    @Autowired
+    private CompanyRepo companyRepo;
+    @Autowired
+    private ShardRouter shardRouter;
+    @Autowired
+    private ShardRoutingDataSource shards;
+    @Autowired
+    private ShardDirectory directory;
+    @Autowired
+    private CompanyMover companyMover;
+
+    @AfterEach
+    void tearDown() {
+        shardRouter.onEachShard(() -> {
+            companyRepo.deleteAll();
+            return null;
+        });
+        new JdbcTemplate(shards.getShard(0)).update("delete from shard_directory");
+        directory.reload();
+    }
+
+    /**
+     * Test that new companies are created on the shard chosen by name with IDs of that shard's range,
+     * and that the company listing merges all shards in ID order page by page.
+     */
+    @Test
+    void testCompaniesSpreadOverShardsAndListedInIdOrder() throws Exception {
+        for (String name : NAMES) {
+            addCompany(name);
+        }
+
+        List<CompanyDto> companies = companyService.getAllCompanies();
+        assertEquals(NAMES.size(), companies.size());
+        for (CompanyDto company : companies) {
+            int shard = shardRouter.shardForNewCompany(company.getName());
+            assertEquals(shard, shardRouter.shardOf(company.getId()));
+            assertEquals(1, rows(shard, "company", company.getId()));
+        }
+        assertTrue(companies.stream().map(company -> shardRouter.shardOf(company.getId())).distinct().count() > 1);
+
+        // Already in ID order
+        List<String> names = companies.stream().map(CompanyDto::getName).toList();
+        Long cursor = companies.get(3).getId();
+        mockMvc.perform(get("/company").param("limit", "4"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].name", contains(names.subList(0, 4).toArray())))
+                .andExpect(jsonPath("$.nextCursor").value(cursor));
+        mockMvc.perform(get("/company").param("after", cursor.toString()).param("limit", "4"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].name", contains(names.subList(4, 6).toArray())))
+                .andExpect(jsonPath("$.nextCursor").value(nullValue()));
+        // One R2DBC pool would only see one shard
+        assertTrue(context.getBeansOfType(ReactiveCatalogController.class).isEmpty());
+    }
+
+    /**
+     * Test that a company's categories and products are stored on and read from its shard,
+     * and that they follow the company when it is moved.
+     */
+    @Test
+    void testCatalogFollowsCompanyToAnotherShard() throws Exception {
+        Long companyId = addCompany("Acme");
+        int source = shardRouter.shardOf(companyId);
+        int target = (source + 1) % shardRouter.getShardCount();
+
+        mockMvc.perform(post("/company/" + companyId + "/category")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Dairy\",\"type\":\"Food\"}"))
+                .andExpect(status().is2xxSuccessful());
+        Long categoryId = companyService.getCompanyById(companyId).getCategories().get(0).getId();
+        mockMvc.perform(post("/company/" + companyId + "/category/" + categoryId + "/product")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Milk\",\"price\":50.0,\"mfgDate\":\"2024-01-01\",\"expiryDate\":\"2030-01-01\"}"))
+                .andExpect(status().is2xxSuccessful());
+        assertEquals(1, rows(source, "categories", categoryId));
+
+        CompanyMove move = companyMover.move(companyId, target);
+
+        assertEquals(1, move.getCategories());
+        assertEquals(1, move.getProducts());
+        assertEquals(target, shardRouter.shardOf(companyId));
+        assertEquals(0, rows(source, "company", companyId));
+        assertEquals(1, rows(target, "categories", categoryId));
+        mockMvc.perform(get("/company/" + companyId + "/category/" + categoryId + "/product"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].name", contains("Milk")));
+
+        // Moving back home needs no directory entry
+        companyMover.move(companyId, source);
+        assertEquals(0, directory.size());
+        assertEquals(source, shardRouter.shardOf(companyId));
+    }
+
+    /**
+     * Test that a category another company of the old shard still lists is copied with the moved company
+     * and stays on the old shard with its products.
+     */
+    @Test
+    void testMoveKeepsCategoriesSharedOnOldShard() throws Exception {
+        Long companyId = addCompany("Acme");
+        int source = shardRouter.shardOf(companyId);
+        int target = (source + 1) % shardRouter.getShardCount();
+        String neighbourName = NAMES.stream()
+                .filter(name -> !name.equals("Acme") && shardRouter.shardForNewCompany(name) == source)
+                .findFirst().orElseThrow();
+        Long neighbourId = addCompany(neighbourName);
+        mockMvc.perform(post("/company/" + companyId + "/category")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Dairy\",\"type\":\"Food\"}"))
+                .andExpect(status().is2xxSuccessful());
+        Long categoryId = companyService.getCompanyById(companyId).getCategories().get(0).getId();
+        mockMvc.perform(post("/company/" + companyId + "/category/" + categoryId + "/product")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Milk\",\"price\":50.0,\"mfgDate\":\"2024-01-01\",\"expiryDate\":\"2030-01-01\"}"))
+                .andExpect(status().is2xxSuccessful());
+        new JdbcTemplate(shards.getShard(source)).update(
+                "insert into company_categories_tbl (company_id, category_id) values (?, ?)", neighbourId, categoryId);
+
+        companyMover.move(companyId, target);
+
+        assertEquals(0, rows(source, "company", companyId));
+        assertEquals(1, rows(source, "categories", categoryId));
+        assertEquals(1, rows(target, "categories", categoryId));
+        for (Long id : List.of(companyId, neighbourId)) {
+            mockMvc.perform(get("/company/" + id + "/category/" + categoryId + "/product"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.items[*].name", contains("Milk")));
+        }
+    }
+
+    /**
+     * Test that writes to a company are turned away while it is being moved.
+     */
+    @Test
+    void testWritesAreRejectedDuringMove() throws Exception {
+        Long companyId = addCompany("Acme");
+
+        shardRouter.lockForMove(companyId, 1000);
+        try {
+            mockMvc.perform(put("/company/" + companyId)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"name\":\"Acme\",\"city\":\"Delhi\",\"state\":\"DL\"}"))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string("Retry-After", "1"));
+            // Turned away before the shard was bound to the request thread
+            assertNull(ShardContext.current());
+            // Reads carry on
+            mockMvc.perform(get("/company/" + companyId)).andExpect(status().isOk());
+        } finally {
+            shardRouter.unlockAfterMove(companyId);
+        }
+    }
+
+    /**
+     * Test that an upsert by name updates a moved company on the shard that holds it
+     * instead of creating it again on the shard its name is placed on.
+     */
+    @Test
+    void testUpsertFindsMovedCompany() throws Exception {
+        Long companyId = addCompany("Acme");
+        int target = (shardRouter.shardOf(companyId) + 1) % shardRouter.getShardCount();
+        companyMover.move(companyId, target);
+
+        mockMvc.perform(put("/company/by-name")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"name\":\"Acme\",\"city\":\"Delhi\",\"state\":\"DL\"}," +
+                                "{\"name\":\"Globex\",\"city\":\"Pune\",\"state\":\"MH\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.records[*].status", contains("UPDATED", "CREATED")));
+
+        assertEquals(1, rows(target, "company", companyId));
+        assertEquals(2, companyService.getAllCompanies().size());
+        assertEquals("Delhi", companyService.getCompanyById(companyId).getCity());
+    }
+
+    /**
+     * Test that an import stores each line on the shard of its company, following a moved company
+     * instead of creating it again on the shard its name is placed on.
+     */
+    @Test
+    void testImportStoresLinesOnCompanyShard() throws Exception {
+        Long companyId = addCompany("Acme");
+        // Shards other than the default one, which unrouted writes would go to
+        int target = shardRouter.shardOf(companyId) == 1 ? 2 : 1;
+        companyMover.move(companyId, target);
+        String newName = NAMES.stream().filter(name -> shardRouter.shardForNewCompany(name) != 0)
+                .filter(name -> !name.equals("Acme")).findFirst().orElseThrow();
+
+        mockMvc.perform(post("/import")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("""
+                                {"company":"Acme","category":"Dairy","categoryType":"Food","product":"Milk","price":50.0,"mfgDate":"2024-01-01","expiryDate":"2024-01-08"}
+                                {"company":"%s","city":"Pune","state":"MH","category":"Bakery","categoryType":"Food","product":"Bread","price":40.0,"mfgDate":"2024-01-01","expiryDate":"2024-01-04"}
+                                """.formatted(newName)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.companies").value(1))
+                .andExpect(jsonPath("$.products").value(2))
+                .andExpect(jsonPath("$.rejected").value(0));
+
+        List<CompanyDto> companies = companyService.getAllCompanies();
+        assertEquals(List.of("Acme", newName), companies.stream().map(CompanyDto::getName).sorted().toList());
+        assertEquals(1, products(target, "Milk"));
+        Long newId = companies.stream().filter(company -> company.getName().equals(newName))
+                .findFirst().orElseThrow().getId();
+        assertEquals(shardRouter.shardForNewCompany(newName), shardRouter.shardOf(newId));
+        assertEquals(1, products(shardRouter.shardOf(newId), "Bread"));
+    }
+
+    private Long addCompany(String name) throws Exception {
+        mockMvc.perform(post("/company")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"" + name + "\",\"city\":\"Pune\",\"state\":\"MH\"}"))
+                .andExpect(status().isCreated());
+        return companyService.getAllCompanies().stream()
+                .filter(company -> company.getName().equals(name))
+                .findFirst().orElseThrow().getId();
+    }
+
+    private int products(int shard, String name) {
+        return new JdbcTemplate(shards.getShard(shard))
+                .queryForObject("select count(*) from products where name = ?", Integer.class, name);
+    }
+
+    private int rows(int shard, String table, Long id) {
+        return new JdbcTemplate(shards.getShard(shard))
+                .queryForObject("select count(*) from " + table + " where id = ?", Integer.class, id);
+    }
+}